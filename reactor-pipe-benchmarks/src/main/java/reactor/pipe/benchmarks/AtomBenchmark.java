@@ -0,0 +1,73 @@
+package reactor.pipe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.fn.UnaryOperator;
+import reactor.pipe.concurrent.Atom;
+import reactor.pipe.concurrent.SingleWriterAtom;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link Atom#update(UnaryOperator)} without contention and with several threads
+ * updating the same atom, compared to the {@link SingleWriterAtom} used by the sharded
+ * {@link reactor.pipe.Firehose}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AtomBenchmark {
+
+  private static final UnaryOperator<Long> INCREMENT = old -> old + 1;
+
+  private Atom<Long> atom;
+  private Atom<Long> singleWriterAtom;
+
+  @Setup
+  public void setup() {
+    atom = new Atom<>(0L);
+    singleWriterAtom = new SingleWriterAtom<>(0L);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Long update() {
+    return atom.update(INCREMENT);
+  }
+
+  @Benchmark
+  @Threads(2)
+  public Long updateTwoThreads() {
+    return atom.update(INCREMENT);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Long updateFourThreads() {
+    return atom.update(INCREMENT);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Long updateEightThreads() {
+    return atom.update(INCREMENT);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Long singleWriterUpdate() {
+    return singleWriterAtom.update(INCREMENT);
+  }
+}
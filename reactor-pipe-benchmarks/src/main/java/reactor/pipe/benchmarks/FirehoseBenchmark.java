@@ -0,0 +1,100 @@
+package reactor.pipe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.processor.RingBufferWorkProcessor;
+import reactor.pipe.Firehose;
+import reactor.pipe.key.Key;
+import reactor.pipe.registry.ConcurrentRegistry;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of {@link Firehose#notify(Object, Object)}, from one and from several producers,
+ * across ring buffer sizes and numbers of consumer threads. Producers are throttled by the
+ * backpressure, so the score is the sustained dispatch rate rather than the enqueue rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FirehoseBenchmark {
+
+  private static final int KEYS = 64;
+
+  @Param({"1024", "65536"})
+  public int ringBufferSize;
+
+  @Param({"1", "4"})
+  public int consumers;
+
+  @Param({"shared", "sharded"})
+  public String mode;
+
+  private Firehose<Key> firehose;
+  private Key[]         keys;
+  private LongAdder     dispatched;
+
+  @Setup
+  public void setup() {
+    if (mode.equals("sharded")) {
+      firehose = Firehose.sharded(consumers, ringBufferSize);
+    } else {
+      firehose = new Firehose<>(new ConcurrentRegistry<>(),
+                                RingBufferWorkProcessor.<Runnable>create(Executors.newFixedThreadPool(consumers),
+                                                                         ringBufferSize),
+                                consumers,
+                                throwable -> throwable.printStackTrace());
+    }
+
+    dispatched = new LongAdder();
+    keys = new Key[KEYS];
+    for (int i = 0; i < KEYS; i++) {
+      keys[i] = Key.wrap("key", i);
+      firehose.on(keys[i], (Long ev) -> dispatched.increment());
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    firehose.shutdown();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void notifySingleProducer(Producer producer) {
+    firehose.notify(producer.nextKey(keys), producer.ev);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void notifyFourProducers(Producer producer) {
+    firehose.notify(producer.nextKey(keys), producer.ev);
+  }
+
+  @State(Scope.Thread)
+  public static class Producer {
+    private final Long ev = 1L;
+    private       int  idx;
+
+    private Key nextKey(Key[] keys) {
+      idx = (idx + 1) & (keys.length - 1);
+      return keys[idx];
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package reactor.pipe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.pipe.key.Key;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link Key} operations done on every {@link reactor.pipe.Pipe} hop: forwarding the
+ * event key to the next stage and hashing it for the registry lookup, as well as deriving the
+ * stage keys on subscription.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyBenchmark {
+
+  private Key source;
+  private Key stage;
+  private Key event;
+
+  @Setup
+  public void setup() {
+    source = Key.wrap("source", "first");
+    stage = source.derive().derive().derive();
+    event = Key.wrap("source", "first");
+  }
+
+  @Benchmark
+  public Key derive() {
+    return source.derive();
+  }
+
+  @Benchmark
+  public Key forward() {
+    return stage.clone(event);
+  }
+
+  @Benchmark
+  public int hash() {
+    return stage.hashCode();
+  }
+}
@@ -0,0 +1,81 @@
+package reactor.pipe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.pipe.consumer.LongKeyedConsumer;
+import reactor.pipe.registry.LongRegistry;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link LongRegistry#select(long)}, for the same key spaces and hit ratios as
+ * {@link RegistryBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LongRegistryBenchmark {
+
+  private static final int LOOKUPS = 1 << 16;
+
+  @Param({"10000", "100000", "1000000"})
+  public int keys;
+
+  @Param({"1.0", "0.9", "0.5"})
+  public double hitRatio;
+
+  private LongRegistry consumerRegistry;
+  private long[]       lookups;
+
+  @Setup
+  public void setup() {
+    consumerRegistry = new LongRegistry(keys);
+    for (int i = 0; i < keys; i++) {
+      consumerRegistry.register(i, (key, value) -> {
+      });
+    }
+
+    Random random = new Random(42);
+    lookups = new long[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      long key = random.nextInt(keys);
+      lookups[i] = random.nextDouble() < hitRatio ? key : -key - 1;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public LongKeyedConsumer[] select(Lookup lookup) {
+    return consumerRegistry.select(lookup.next(lookups));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public LongKeyedConsumer[] selectFourThreads(Lookup lookup) {
+    return consumerRegistry.select(lookup.next(lookups));
+  }
+
+  @State(Scope.Thread)
+  public static class Lookup {
+    private int idx = new Random().nextInt(LOOKUPS);
+
+    private long next(long[] lookups) {
+      idx = (idx + 1) & (LOOKUPS - 1);
+      return lookups[idx];
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package reactor.pipe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.pipe.Firehose;
+import reactor.pipe.IPipe;
+import reactor.pipe.Pipe;
+import reactor.pipe.key.Key;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end cost of an event passing through a {@link Pipe}, from the notification of the
+ * source key until the event reaches the consumer at the end of the pipe. {@code stages} is
+ * the number of stages of the {@code map} chain, which gives the cost of a single stage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipeBenchmark {
+
+  private static final int BATCH = 1024;
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public long map(MapChain chain) {
+    return chain.run(BATCH);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public long mapFilterScan(MapFilterScan chain) {
+    // Every other event is filtered out
+    return chain.run(BATCH / 2);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public long slide(SlidingWindow window) {
+    return window.run(BATCH);
+  }
+
+  @State(Scope.Benchmark)
+  public static class MapChain extends PipeState {
+    @Param({"1", "3", "5"})
+    public int stages;
+
+    @Override
+    protected IPipe.PipeEnd<Integer, ?> pipe(AtomicLong received) {
+      IPipe<Integer, Integer> pipe = Pipe.<Integer>build();
+      for (int i = 0; i < stages; i++) {
+        pipe = pipe.map(v -> v + 1);
+      }
+      return pipe.consume(v -> received.incrementAndGet());
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class MapFilterScan extends PipeState {
+    @Override
+    protected IPipe.PipeEnd<Integer, ?> pipe(AtomicLong received) {
+      return Pipe.<Integer>build()
+                 .map(v -> v + 1)
+                 .filter(v -> v % 2 == 0)
+                 .scan((Long acc, Integer v) -> acc + v, 0L)
+                 .consume(v -> received.incrementAndGet());
+    }
+  }
+
+  /**
+   * Count-based window of {@code size} events: the drop function over a persistent vector, the
+   * array-backed count window emitting the whole window and the incremental sum.
+   */
+  @State(Scope.Benchmark)
+  public static class SlidingWindow extends PipeState {
+    @Param({"drop", "count", "sum"})
+    public String window;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    @Override
+    protected IPipe.PipeEnd<Integer, ?> pipe(AtomicLong received) {
+      IPipe<Integer, Integer> pipe = Pipe.<Integer>build();
+      switch (window) {
+        case "drop":
+          return pipe.slide(l -> l.size() > size ? l.subList(l.size() - size, l.size()) : l)
+                     .consume(v -> received.incrementAndGet());
+        case "count":
+          return pipe.slide(size)
+                     .consume(v -> received.incrementAndGet());
+        default:
+          return pipe.slidingSum(size, (Integer v) -> v)
+                     .consume(v -> received.incrementAndGet());
+      }
+    }
+  }
+
+  public abstract static class PipeState {
+    private final Key        source   = Key.wrap("source");
+    private final AtomicLong received = new AtomicLong();
+    private final Integer[]  events   = new Integer[BATCH];
+    private Firehose<Key>    firehose;
+
+    protected abstract IPipe.PipeEnd<Integer, ?> pipe(AtomicLong received);
+
+    @Setup
+    public void setup() {
+      firehose = new Firehose<>();
+      pipe(received).subscribe(source, firehose);
+      for (int i = 0; i < BATCH; i++) {
+        events[i] = i;
+      }
+    }
+
+    @TearDown
+    public void tearDown() {
+      firehose.shutdown();
+    }
+
+    long run(int expected) {
+      long target = received.get() + expected;
+      for (Integer ev : events) {
+        firehose.notify(source, ev);
+      }
+
+      long current;
+      while ((current = received.get()) < target) {
+        Thread.yield();
+      }
+      return current;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package reactor.pipe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.pipe.DoublePipe;
+import reactor.pipe.Firehose;
+import reactor.pipe.Pipe;
+import reactor.pipe.key.Key;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies going through map, filter, scan and a sliding maximum, as boxed {@code Double}s
+ * through a {@link Pipe} against primitives through a {@link DoublePipe}. Run with
+ * {@code -prof gc} to compare the allocation per event.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrimitivePipeBenchmark {
+
+  private static final int BATCH = 1024;
+
+  @Param({"boxed", "primitive"})
+  public String pipe;
+
+  private final Key        source   = Key.wrap("source");
+  private final AtomicLong received = new AtomicLong();
+  private Firehose<Key>    firehose;
+
+  @Setup
+  public void setup() {
+    firehose = new Firehose<>();
+    if (pipe.equals("boxed")) {
+      Pipe.<Double>build()
+          .map(d -> d / 1000)
+          .filter(d -> d >= 0)
+          .scan((Double acc, Double d) -> acc + d, 0.0)
+          .slidingMax(100, Comparator.<Double>naturalOrder())
+          .consume(d -> received.incrementAndGet())
+          .subscribe(source, firehose);
+    } else {
+      DoublePipe.build()
+                .map(d -> d / 1000)
+                .filter(d -> d >= 0)
+                .scan((acc, d) -> acc + d, 0)
+                .slidingMax(100)
+                .consume(d -> received.incrementAndGet())
+                .subscribe(source, firehose);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    firehose.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public long latencies() {
+    long target = received.get() + BATCH;
+    boolean boxed = pipe.equals("boxed");
+    for (int i = 0; i < BATCH; i++) {
+      double latency = i * 1.5;
+      if (boxed) {
+        firehose.notify(source, latency);
+      } else {
+        firehose.notifyDouble(source, latency);
+      }
+    }
+
+    long current;
+    while ((current = received.get()) < target) {
+      Thread.yield();
+    }
+    return current;
+  }
+}
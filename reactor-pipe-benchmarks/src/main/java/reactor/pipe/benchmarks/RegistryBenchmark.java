@@ -0,0 +1,95 @@
+package reactor.pipe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.pipe.key.Key;
+import reactor.pipe.registry.ConcurrentRegistry;
+import reactor.pipe.registry.DefaultingRegistry;
+import reactor.pipe.registry.Registration;
+import reactor.pipe.registry.StripedRegistry;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link DefaultingRegistry#select(Object)} on {@link ConcurrentRegistry} and
+ * {@link StripedRegistry} for key spaces of different sizes and different ratios of the
+ * selects that hit a registered key. Lookups use keys equal to, but not the same instances as
+ * the registered ones, like the keys of the notified events.
+ *
+ * The cost of updating the registries is measured by {@link RegistryUpdateBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistryBenchmark {
+
+  private static final int LOOKUPS = 1 << 16;
+
+  @Param({"concurrent", "striped"})
+  public String registry;
+
+  @Param({"10000", "100000", "1000000"})
+  public int keys;
+
+  @Param({"1.0", "0.9", "0.5"})
+  public double hitRatio;
+
+  private DefaultingRegistry<Key> consumerRegistry;
+  private Key[]                   lookups;
+
+  @Setup
+  public void setup() {
+    consumerRegistry = registry.equals("striped") ? new StripedRegistry<>() : new ConcurrentRegistry<>();
+    for (int i = 0; i < keys; i++) {
+      consumerRegistry.register(Key.wrap("key", i), (key, value) -> {
+      });
+    }
+
+    Random random = new Random(42);
+    lookups = new Key[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      if (random.nextDouble() < hitRatio) {
+        lookups[i] = Key.wrap("key", random.nextInt(keys));
+      } else {
+        lookups[i] = Key.wrap("missing", random.nextInt(keys));
+      }
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public List<Registration<Key>> select(Lookup lookup) {
+    return consumerRegistry.select(lookup.next(lookups));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public List<Registration<Key>> selectFourThreads(Lookup lookup) {
+    return consumerRegistry.select(lookup.next(lookups));
+  }
+
+  @State(Scope.Thread)
+  public static class Lookup {
+    private int idx = new Random().nextInt(LOOKUPS);
+
+    private Key next(Key[] lookups) {
+      idx = (idx + 1) & (LOOKUPS - 1);
+      return lookups[idx];
+    }
+  }
+}
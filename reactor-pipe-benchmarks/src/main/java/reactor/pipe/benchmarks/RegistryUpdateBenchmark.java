@@ -0,0 +1,155 @@
+package reactor.pipe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.registry.ConcurrentRegistry;
+import reactor.pipe.registry.DefaultingRegistry;
+import reactor.pipe.registry.Registration;
+import reactor.pipe.registry.StripedRegistry;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link DefaultingRegistry#register(Object, KeyedConsumer)},
+ * {@link DefaultingRegistry#unregister(Object)} and of materializing the registrations
+ * of a key on a key miss, on {@link ConcurrentRegistry} and {@link StripedRegistry} holding
+ * {@code keys} keys.
+ *
+ * Every iteration runs a single batch of {@link #BATCH} operations against the same registry,
+ * the batch is undone after the iteration, so the registry doesn't grow or shrink over the run.
+ * The scores are in microseconds per batch, which is the same number as nanoseconds per operation.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 200, batchSize = RegistryUpdateBenchmark.BATCH)
+@Measurement(iterations = 50, batchSize = RegistryUpdateBenchmark.BATCH)
+@Fork(1)
+public class RegistryUpdateBenchmark {
+
+  static final int BATCH = 1000;
+
+  private static final KeyedConsumer<Key, Object> CONSUMER = (key, value) -> {
+  };
+
+  @Benchmark
+  public Registration<Key> register(Registering state) {
+    return state.consumerRegistry.register(state.next(), CONSUMER);
+  }
+
+  @Benchmark
+  public boolean unregister(Unregistering state) {
+    return state.consumerRegistry.unregister(state.next());
+  }
+
+  @Benchmark
+  public List<Registration<Key>> materialize(Materializing state) {
+    return state.consumerRegistry.select(state.next());
+  }
+
+  @State(Scope.Benchmark)
+  public abstract static class Registry {
+
+    @Param({"concurrent", "striped"})
+    public String registry;
+
+    @Param({"10000", "100000", "1000000"})
+    public int keys;
+
+    protected DefaultingRegistry<Key> consumerRegistry;
+    // Keys the batch operates on, in turn
+    protected Key[]                   batch;
+    protected int                     idx;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      consumerRegistry = registry.equals("striped") ? new StripedRegistry<>() : new ConcurrentRegistry<>();
+      consumerRegistry.addKeyMissMatcher(key -> key.getPart(0).equals("entity"),
+                                         key -> Collections.singletonMap(key, CONSUMER));
+
+      // Half of the keys are registered explicitly, the other half materialized
+      for (int i = 0; i < keys / 2; i++) {
+        consumerRegistry.register(Key.wrap("key", i), CONSUMER);
+        consumerRegistry.select(Key.wrap("entity", i));
+      }
+
+      batch = new Key[BATCH];
+      for (int i = 0; i < BATCH; i++) {
+        batch[i] = key(i);
+      }
+    }
+
+    @Setup(Level.Iteration)
+    public void rewind() {
+      idx = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void undo() {
+      for (int i = 0; i < idx; i++) {
+        undo(batch[i]);
+      }
+    }
+
+    protected Key next() {
+      return batch[idx++];
+    }
+
+    protected abstract Key key(int i);
+
+    protected abstract void undo(Key key);
+  }
+
+  @State(Scope.Benchmark)
+  public static class Registering extends Registry {
+    @Override
+    protected Key key(int i) {
+      return Key.wrap("key", keys + i);
+    }
+
+    @Override
+    protected void undo(Key key) {
+      consumerRegistry.unregister(key);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Unregistering extends Registry {
+    @Override
+    protected Key key(int i) {
+      return Key.wrap("key", i * (keys / 2 / BATCH));
+    }
+
+    @Override
+    protected void undo(Key key) {
+      consumerRegistry.register(key, CONSUMER);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Materializing extends Registry {
+    @Override
+    protected Key key(int i) {
+      return Key.wrap("entity", keys + i);
+    }
+
+    @Override
+    protected void undo(Key key) {
+      consumerRegistry.unregister(key);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package reactor.pipe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.support.wait.SleepingWaitStrategy;
+import reactor.fn.Consumer;
+import reactor.fn.Pausable;
+import reactor.fn.timer.HashWheelTimer;
+import reactor.pipe.timer.Timeout;
+import reactor.pipe.timer.TimingWheel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of pushing back the timer of a throttled key on an event, with {@code keys} timers
+ * pending: cancel and resubmit on {@link HashWheelTimer} against
+ * {@link Timeout#reschedule(long, TimeUnit)} on {@link TimingWheel}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+
+  private static final Consumer<Long> NOOP = (now) -> {
+  };
+
+  @Param({"10000", "1000000"})
+  public int keys;
+
+  private HashWheelTimer hashWheelTimer;
+  private Pausable[]     pausables;
+  private TimingWheel    timingWheel;
+  private Timeout[]      timeouts;
+  private int            idx;
+
+  @Setup
+  public void setup() {
+    hashWheelTimer = new HashWheelTimer(10, 512, new SleepingWaitStrategy());
+    hashWheelTimer.start();
+    timingWheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 512).start();
+
+    pausables = new Pausable[keys];
+    timeouts = new Timeout[keys];
+    for (int i = 0; i < keys; i++) {
+      pausables[i] = hashWheelTimer.submit(NOOP, 1, TimeUnit.HOURS);
+      timeouts[i] = timingWheel.schedule(NOOP, 1, TimeUnit.HOURS);
+    }
+  }
+
+  @TearDown
+  public void teardown() {
+    hashWheelTimer.cancel();
+    timingWheel.shutdown();
+  }
+
+  @Benchmark
+  public Pausable cancelAndResubmit() {
+    int i = next();
+    pausables[i].cancel();
+    pausables[i] = hashWheelTimer.submit(NOOP, 1, TimeUnit.HOURS);
+    return pausables[i];
+  }
+
+  @Benchmark
+  public boolean reschedule() {
+    return timeouts[next()].reschedule(1, TimeUnit.HOURS);
+  }
+
+  private int next() {
+    if (++idx == keys) {
+      idx = 0;
+    }
+    return idx;
+  }
+}
@@ -0,0 +1,129 @@
+package reactor.pipe;
+
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.consumer.KeyedDoubleConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.operation.DoubleSlidingWindow;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleToLongFunction;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Pipe of primitive {@code double} values, such as latencies, that never boxes them. Values are
+ * notified with {@link Firehose#notifyDouble(Object, double)}, boxed {@link Number}s notified the
+ * usual way are unboxed once, on entry.
+ *
+ * Unlike the stages of a {@link Pipe}, which notify each other through the {@link Firehose}, all
+ * the stages of a primitive pipe are fused into a single consumer, registered under the subscribed
+ * key, which hands the values from stage to stage as primitives. State of the stages is kept per
+ * subscribed key, in primitive fields and arrays.
+ */
+public final class DoublePipe {
+
+  private final Function<ObjDoubleConsumer<Key>, KeyedConsumer<Key, Number>> source;
+  private final PVector<UnaryOperator<ObjDoubleConsumer<Key>>>               stages;
+
+  DoublePipe(Function<ObjDoubleConsumer<Key>, KeyedConsumer<Key, Number>> source) {
+    this(source, TreePVector.empty());
+  }
+
+  private DoublePipe(Function<ObjDoubleConsumer<Key>, KeyedConsumer<Key, Number>> source,
+                     PVector<UnaryOperator<ObjDoubleConsumer<Key>>> stages) {
+    this.source = source;
+    this.stages = stages;
+  }
+
+  public static DoublePipe build() {
+    return new DoublePipe(head -> (KeyedDoubleConsumer<Key>) head::accept);
+  }
+
+  public DoublePipe map(DoubleUnaryOperator mapper) {
+    return next(downstream -> (key, value) -> downstream.accept(key, mapper.applyAsDouble(value)));
+  }
+
+  public LongPipe mapToLong(DoubleToLongFunction mapper) {
+    return new LongPipe(downstream -> compile((key, value) -> downstream.accept(key, mapper.applyAsLong(value))));
+  }
+
+  public DoublePipe filter(DoublePredicate predicate) {
+    return next(downstream -> (key, value) -> {
+      if (predicate.test(value)) {
+        downstream.accept(key, value);
+      }
+    });
+  }
+
+  /**
+   * Emits the running accumulation of the values, updated with a compare-and-set of the bits
+   * of the accumulator, so the accumulator has to be free of side effects.
+   */
+  public DoublePipe scan(DoubleBinaryOperator accumulator, double init) {
+    return next(downstream -> {
+      AtomicLong acc = new AtomicLong(Double.doubleToRawLongBits(init));
+      return (key, value) -> {
+        long prev;
+        double next;
+        do {
+          prev = acc.get();
+          next = accumulator.applyAsDouble(Double.longBitsToDouble(prev), value);
+        } while (!acc.compareAndSet(prev, Double.doubleToRawLongBits(next)));
+        downstream.accept(key, next);
+      };
+    });
+  }
+
+  /**
+   * Emits the sum of the last {@code size} values, see {@link DoubleSlidingWindow}.
+   */
+  public DoublePipe slidingSum(int size) {
+    return window(size, DoubleSlidingWindow::sum);
+  }
+
+  public DoublePipe slidingMin(int size) {
+    return window(size, DoubleSlidingWindow::min);
+  }
+
+  public DoublePipe slidingMax(int size) {
+    return window(size, DoubleSlidingWindow::max);
+  }
+
+  public IPipe.PipeEnd<Double, Double> consume(DoubleConsumer consumer) {
+    return consume((key, value) -> consumer.accept(value));
+  }
+
+  public IPipe.PipeEnd<Double, Double> consume(ObjDoubleConsumer<Key> consumer) {
+    return new PrimitivePipeEnd<>(() -> compile(consumer));
+  }
+
+  private DoublePipe window(int size, IntFunction<DoubleSlidingWindow> window) {
+    return next(downstream -> {
+      DoubleSlidingWindow values = window.apply(size);
+      return (key, value) -> downstream.accept(key, values.add(value));
+    });
+  }
+
+  private DoublePipe next(UnaryOperator<ObjDoubleConsumer<Key>> stage) {
+    return new DoublePipe(source, stages.plus(stage));
+  }
+
+  /**
+   * Wraps the sink into the stages, last stage goes first, each stage getting its own state.
+   */
+  private KeyedConsumer<Key, Number> compile(ObjDoubleConsumer<Key> sink) {
+    ObjDoubleConsumer<Key> downstream = sink;
+    for (int i = stages.size() - 1; i >= 0; i--) {
+      downstream = stages.get(i).apply(downstream);
+    }
+    return source.apply(downstream);
+  }
+}
@@ -1,12 +1,12 @@
 package reactor.pipe;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import org.reactivestreams.Processor;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
-import reactor.Subscribers;
 import reactor.core.processor.RingBufferWorkProcessor;
-import reactor.core.subscription.SubscriptionWithContext;
 import reactor.core.support.Assert;
 import reactor.core.support.wait.SleepingWaitStrategy;
 import reactor.fn.Consumer;
@@ -18,14 +18,25 @@ import reactor.fn.tuple.Tuple;
 import reactor.fn.tuple.Tuple2;
 import reactor.pipe.concurrent.LazyVar;
 import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.consumer.KeyedDoubleConsumer;
+import reactor.pipe.consumer.KeyedLongConsumer;
+import reactor.pipe.metrics.FirehoseMetrics;
 import reactor.pipe.registry.*;
 import reactor.pipe.selector.Selector;
-import reactor.pipe.stream.FirehoseSubscription;
+import reactor.pipe.stream.BackpressureStrategy;
+import reactor.pipe.timer.TimingWheel;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 import java.util.function.LongBinaryOperator;
@@ -33,9 +44,18 @@ import java.util.function.LongBinaryOperator;
 
 public class Firehose<K> {
 
-  private final static int                 DEFAULT_THREAD_POOL_SIZE   = 4;
-  private final static int                 DEFAULT_RING_BUFFER_SIZE   = 65536;
-  private final static Consumer<Throwable> DEFAULT_THROWABLE_CONSUMER = new Consumer<Throwable>() {
+  private final static int                  DEFAULT_THREAD_POOL_SIZE      = 4;
+  private final static int                  DEFAULT_RING_BUFFER_SIZE      = 65536;
+  private final static int                  DEFAULT_DISPATCH_SLOTS        = 1024;
+  private final static BackpressureStrategy DEFAULT_BACKPRESSURE_STRATEGY = BackpressureStrategy.parking(
+    1000, TimeUnit.MILLISECONDS.toNanos(1));
+  private final static long                 DEFAULT_TIMER_RESOLUTION      = TimeUnit.MILLISECONDS.toNanos(10);
+  private final static int                  DEFAULT_TIMER_WHEEL_SIZE      = 512;
+  // Kinds of the events held by the dispatch slots, primitives are held as their long bits
+  private final static byte                 OBJECT_EVENT                  = Lanes.OBJECT_EVENT;
+  private final static byte                 LONG_EVENT                    = 1;
+  private final static byte                 DOUBLE_EVENT                  = 2;
+  private final static Consumer<Throwable>  DEFAULT_THROWABLE_CONSUMER    = new Consumer<Throwable>() {
     @Override
     public void accept(Throwable throwable) {
       System.out.printf("Exception caught while dispatching: %s\n", throwable.getMessage());
@@ -43,29 +63,43 @@ public class Firehose<K> {
     }
   };
 
-  private final DefaultingRegistry<K>         consumerRegistry;
-  private final Consumer<Throwable>           errorHandler;
-  private final LazyVar<HashWheelTimer>       timer;
-  private final Processor<Runnable, Runnable> processor;
-  private final ThreadLocal<Boolean>          inDispatcherContext;
-  private final FirehoseSubscription          firehoseSubscription;
+  private final DefaultingRegistry<K>   consumerRegistry;
+  private final Consumer<Throwable>     errorHandler;
+  private final LazyVar<HashWheelTimer> timer;
+  private final BackpressureStrategy    backpressureStrategy;
+  private final Lanes                   lanes;
+  private volatile long                 timerResolution;
+  private volatile int                  timerWheelSize;
+  private volatile boolean              timersStarted;
+  private final AtomicBoolean           idleEvictionScheduled;
+  // Names of the error counters of the consumers, by their registration key, all the errors are counted together when null
+  private volatile Function<K, String>  errorNames;
 
   public Firehose() {
-    this(new ConcurrentRegistry<K>(),
-         RingBufferWorkProcessor.<Runnable>create(Executors.newFixedThreadPool(DEFAULT_THREAD_POOL_SIZE),
-                                                  DEFAULT_RING_BUFFER_SIZE),
-         DEFAULT_THREAD_POOL_SIZE,
-         DEFAULT_THROWABLE_CONSUMER);
+    this(DEFAULT_THROWABLE_CONSUMER);
   }
 
   public Firehose(Consumer<Throwable> errorHandler) {
     this(new ConcurrentRegistry<K>(),
-         RingBufferWorkProcessor.<Runnable>create(Executors.newFixedThreadPool(DEFAULT_THREAD_POOL_SIZE),
-                                                  DEFAULT_RING_BUFFER_SIZE),
-         DEFAULT_THREAD_POOL_SIZE,
          errorHandler);
   }
 
+  /**
+   * Creates a Firehose with the default processor on top of the given registry, for example
+   * {@link StripedRegistry} for large key spaces.
+   */
+  public Firehose(DefaultingRegistry<K> registry,
+                  Consumer<Throwable> errorHandler) {
+    this(registry,
+         Collections.singletonList(
+           RingBufferWorkProcessor.<Runnable>create(Executors.newFixedThreadPool(DEFAULT_THREAD_POOL_SIZE),
+                                                    DEFAULT_RING_BUFFER_SIZE)),
+         DEFAULT_THREAD_POOL_SIZE,
+         errorHandler,
+         DEFAULT_BACKPRESSURE_STRATEGY,
+         DEFAULT_DISPATCH_SLOTS);
+  }
+
   public Firehose(Processor<Runnable, Runnable> processor,
                   int concurrency) {
     this(new ConcurrentRegistry<>(),
@@ -78,97 +112,378 @@ public class Firehose<K> {
                   Processor<Runnable, Runnable> processor,
                   int concurrency,
                   Consumer<Throwable> dispatchErrorHandler) {
+    this(registry,
+         processor,
+         concurrency,
+         dispatchErrorHandler,
+         DEFAULT_BACKPRESSURE_STRATEGY);
+  }
+
+  public Firehose(DefaultingRegistry<K> registry,
+                  Processor<Runnable, Runnable> processor,
+                  int concurrency,
+                  Consumer<Throwable> dispatchErrorHandler,
+                  BackpressureStrategy backpressureStrategy) {
+    this(registry,
+         Collections.singletonList(processor),
+         concurrency,
+         dispatchErrorHandler,
+         backpressureStrategy,
+         DEFAULT_DISPATCH_SLOTS);
+  }
+
+  /**
+   * Creates a sharded Firehose. Every processor becomes a lane with a single consumer and
+   * events are routed to the lanes by the key hash, so all the events for the same key are
+   * dispatched in order, by the same thread.
+   */
+  public Firehose(DefaultingRegistry<K> registry,
+                  List<? extends Processor<Runnable, Runnable>> lanes,
+                  Consumer<Throwable> dispatchErrorHandler,
+                  BackpressureStrategy backpressureStrategy) {
+    this(registry,
+         lanes,
+         1,
+         dispatchErrorHandler,
+         backpressureStrategy,
+         DEFAULT_DISPATCH_SLOTS);
+  }
+
+  /**
+   * @param dispatchSlots number of pre-allocated dispatch slots per processor, the events in flight
+   *                      beyond them fall back to a task allocated for the event
+   */
+  private Firehose(DefaultingRegistry<K> registry,
+                   List<? extends Processor<Runnable, Runnable>> processors,
+                   int concurrency,
+                   Consumer<Throwable> dispatchErrorHandler,
+                   BackpressureStrategy backpressureStrategy,
+                   int dispatchSlots) {
     this.consumerRegistry = registry;
     this.errorHandler = dispatchErrorHandler;
-    this.processor = processor;
-    this.inDispatcherContext = new ThreadLocal<>();
-
-    {
-      for (int i = 0; i < concurrency; i++) {
-        this.processor.subscribe(Subscribers.unbounded((Runnable runnable,
-                                                        SubscriptionWithContext<Void> voidSubscriptionWithContext) -> {
-                                                         runnable.run();
-                                                       },
-                                                       dispatchErrorHandler));
-      }
-      this.firehoseSubscription = new FirehoseSubscription();
-      this.processor.onSubscribe(firehoseSubscription);
-    }
-
+    this.backpressureStrategy = backpressureStrategy;
+    this.timerResolution = DEFAULT_TIMER_RESOLUTION;
+    this.timerWheelSize = DEFAULT_TIMER_WHEEL_SIZE;
+    this.idleEvictionScheduled = new AtomicBoolean(false);
+    this.lanes = new Lanes(processors,
+                           concurrency,
+                           dispatchErrorHandler,
+                           backpressureStrategy,
+                           dispatchSlots,
+                           this::dispatch,
+                           this::createTimingWheel);
 
     this.timer = new LazyVar<>(new Supplier<HashWheelTimer>() {
       @Override
       public HashWheelTimer get() {
-        HashWheelTimer timer = new HashWheelTimer(10,
-                                                  512,
+        timersStarted = true;
+        HashWheelTimer timer = new HashWheelTimer((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(timerResolution)),
+                                                  timerWheelSize,
                                                   new SleepingWaitStrategy());
         timer.start();
         return timer;
-        // TODO: configurable hash wheel size!
       }
     });
   }
 
+  /**
+   * Creates a sharded Firehose with {@code lanes} single-threaded lanes.
+   */
+  public static <K> Firehose<K> sharded(int lanes,
+                                        int ringBufferSize) {
+    List<Processor<Runnable, Runnable>> processors = new ArrayList<>(lanes);
+    for (int i = 0; i < lanes; i++) {
+      processors.add(RingBufferWorkProcessor.<Runnable>create(Executors.newSingleThreadExecutor(),
+                                                              ringBufferSize));
+    }
+    return new Firehose<K>(new ConcurrentRegistry<K>(),
+                           processors,
+                           1,
+                           DEFAULT_THROWABLE_CONSUMER,
+                           DEFAULT_BACKPRESSURE_STRATEGY,
+                           ringBufferSize);
+  }
+
   public Firehose<K> fork(ExecutorService executorService,
                           int concurrency,
                           int ringBufferSize) {
     return new Firehose<K>(this.consumerRegistry,
-                           RingBufferWorkProcessor.<Runnable>create(executorService, ringBufferSize),
+                           Collections.singletonList(
+                             RingBufferWorkProcessor.<Runnable>create(executorService, ringBufferSize)),
                            concurrency,
-                           this.errorHandler);
+                           this.errorHandler,
+                           this.backpressureStrategy,
+                           ringBufferSize);
   }
 
   public <V> Firehose notify(final K key, final V ev) {
+    checkNotNull(key, ev);
+
+    Lanes.Lane lane = lane(key);
+    lanes.awaitSlot(lane, key, 0);
+    lanes.enqueue(lane, key, 0, ev, OBJECT_EVENT, 0);
+    return this;
+  }
+
+  /**
+   * Notifies the consumers of the {@code key} about a primitive {@code long} event without boxing it.
+   * {@link KeyedLongConsumer}s and {@link KeyedDoubleConsumer}s get the primitive, the rest
+   * of the consumers get it boxed, boxed only once for all of them.
+   */
+  public Firehose<K> notifyLong(final K key, final long ev) {
+    notifyPrimitive(key, LONG_EVENT, ev);
+    return this;
+  }
+
+  /**
+   * Notifies the consumers of the {@code key} about a primitive {@code double} event without boxing it.
+   * {@link KeyedDoubleConsumer}s get the primitive, the rest of the consumers get it boxed,
+   * boxed only once for all of them.
+   */
+  public Firehose<K> notifyDouble(final K key, final double ev) {
+    notifyPrimitive(key, DOUBLE_EVENT, Double.doubleToRawLongBits(ev));
+    return this;
+  }
+
+  private void notifyPrimitive(final K key, final byte kind, final long bits) {
+    if (key == null) {
+      throw new IllegalArgumentException("Key cannot be null.");
+    }
+
+    Lanes.Lane lane = lane(key);
+    lanes.awaitSlot(lane, key, 0);
+    lanes.enqueue(lane, key, 0, null, kind, bits);
+  }
+
+  /**
+   * Notifies the consumers of the {@code key} about all the given events. The whole batch
+   * takes a single slot and is dispatched by a single task, consumers are looked up once.
+   */
+  public <V> Firehose<K> notifyAll(final K key, final List<V> evs) {
     Assert.notNull(key, "Key cannot be null.");
-    Assert.notNull(ev, "Event cannot be null for key " + key.toString());
+    Assert.notNull(evs, "Events cannot be null for key " + key.toString());
+    if (evs.isEmpty()) {
+      return this;
+    }
 
-    // Backpressure
-    while ((inDispatcherContext.get() == null || !inDispatcherContext.get()) &&
-           !this.firehoseSubscription.maybeClaimSlot()) {
-      try {
-        //LockSupport.parkNanos(10000);
-        Thread.sleep(500); // TODO: Obviously this is stupid use parknanos instead.
-      } catch (InterruptedException e) {
-        e.printStackTrace();
+    Lanes.Lane lane = lane(key);
+    lanes.awaitSlot(lane, key, 0);
+    lanes.enqueueBatch(lane, evs.size(), () -> {
+      List<Registration<K>> registrations = consumerRegistry.select(key);
+      for (V ev : evs) {
+        dispatch(registrations, key, ev);
       }
+    });
+    return this;
+  }
+
+  /**
+   * Notifies the consumers about all the given key/event pairs. The whole batch takes a
+   * single slot and is dispatched by a single task, consumers are looked up once per distinct key.
+   *
+   * When the Firehose is sharded, the batch is split into one batch per lane.
+   */
+  public <V> Firehose<K> notifyAll(final Collection<Tuple2<K, V>> evs) {
+    Assert.notNull(evs, "Events cannot be null.");
+    for (Tuple2<K, V> tuple : evs) {
+      checkNotNull(tuple.getT1(), tuple.getT2());
+    }
+    if (evs.isEmpty()) {
+      return this;
     }
 
-    Boolean inContext = inDispatcherContext.get();
-    if (inContext != null && inContext) {
-      // Since we're already in the context, we can dispatch syncronously
-      try {
-        dispatch(key, ev);
-      } catch (Throwable outer) {
-        errorHandler.accept(outer);
-      }
+    if (lanes.size() == 1) {
+      notifyAll(lanes.get(0), evs);
     } else {
-
-      processor.onNext(() -> {
-        try {
-          inDispatcherContext.set(true);
-          dispatch(key, ev);
-        } catch (Throwable outer) {
-          errorHandler.accept(new RuntimeException("Exception in key: " + key.toString(), outer));
-        } finally {
-          inDispatcherContext.set(false);
+      Map<Lanes.Lane, List<Tuple2<K, V>>> perLane = new LinkedHashMap<>();
+      for (Tuple2<K, V> tuple : evs) {
+        Lanes.Lane lane = lane(tuple.getT1());
+        List<Tuple2<K, V>> laneEvs = perLane.get(lane);
+        if (laneEvs == null) {
+          laneEvs = new ArrayList<>();
+          perLane.put(lane, laneEvs);
         }
-      });
+        laneEvs.add(tuple);
+      }
+      for (Map.Entry<Lanes.Lane, List<Tuple2<K, V>>> entry : perLane.entrySet()) {
+        notifyAll(entry.getKey(), entry.getValue());
+      }
     }
+    return this;
+  }
+
+  private <V> void notifyAll(final Lanes.Lane lane, final Collection<Tuple2<K, V>> evs) {
+    lanes.awaitSlot(lane, evs.iterator().next().getT1(), 0);
+    lanes.enqueueBatch(lane, evs.size(), () -> {
+      Map<K, List<Registration<K>>> selected = new HashMap<>();
+      for (Tuple2<K, V> tuple : evs) {
+        List<Registration<K>> registrations = selected.get(tuple.getT1());
+        if (registrations == null) {
+          registrations = consumerRegistry.select(tuple.getT1());
+          selected.put(tuple.getT1(), registrations);
+        }
+        dispatch(registrations, tuple.getT1(), tuple.getT2());
+      }
+    });
+  }
 
+  /**
+   * Notifies the consumers of the {@code key} on the lane of the key, even when called from
+   * a consumer on that same lane, which otherwise dispatches the event synchronously on the
+   * current worker. The events a consumer notifies this way are dispatched after the current
+   * event, in the order they were notified in.
+   */
+  public <V> Firehose<K> notifyOnLane(final K key, final V ev) {
+    checkNotNull(key, ev);
 
+    lanes.handOver(lane(key), key, 0, ev, OBJECT_EVENT, 0);
     return this;
   }
 
-  private <V> void dispatch(final K key, final V ev) {
-    for (Registration<K> reg : consumerRegistry.select(key)) {
+  /**
+   * Notifies the consumers of the {@code key} only if the event can be accepted without waiting.
+   *
+   * @return {@code false} if there's no free slot for the event, {@code true} otherwise
+   */
+  public <V> boolean tryNotify(final K key, final V ev) {
+    checkNotNull(key, ev);
+
+    Lanes.Lane lane = lane(key);
+    if (!lanes.tryClaimSlot(lane)) {
+      return false;
+    }
+
+    lanes.enqueue(lane, key, 0, ev, OBJECT_EVENT, 0);
+    return true;
+  }
+
+  /**
+   * Notifies the consumers of the {@code key}, waiting up to the given time for a free slot.
+   *
+   * @return {@code false} if the timeout has elapsed before the slot became available, {@code true} otherwise
+   */
+  public <V> boolean notify(final K key, final V ev, long timeout, TimeUnit unit) throws InterruptedException {
+    checkNotNull(key, ev);
+
+    Lanes.Lane lane = lane(key);
+    if (!lanes.claimSlot(lane, timeout, unit)) {
+      return false;
+    }
+
+    lanes.enqueue(lane, key, 0, ev, OBJECT_EVENT, 0);
+    return true;
+  }
+
+  private Lanes.Lane lane(final K key) {
+    return lanes.lane(key.hashCode());
+  }
+
+  private TimingWheel createTimingWheel(int laneIdx) {
+    timersStarted = true;
+    return new TimingWheel(timerResolution,
+                           TimeUnit.NANOSECONDS,
+                           timerWheelSize,
+                           "firehose-timer-" + laneIdx,
+                           errorHandler).start();
+  }
+
+  private static void checkNotNull(final Object key, final Object ev) {
+    // Not using Assert here, the message would be built on every call
+    if (key == null) {
+      throw new IllegalArgumentException("Key cannot be null.");
+    }
+    if (ev == null) {
+      throw new IllegalArgumentException("Event cannot be null for key " + key.toString());
+    }
+  }
+
+  @SuppressWarnings(value = {"unchecked"})
+  private void dispatch(final Object k, final long longKey, final Object ev, final byte kind, final long bits) {
+    K key = (K) k;
+    if (kind == OBJECT_EVENT) {
+      dispatch(consumerRegistry.select(key), key, ev);
+    } else {
+      dispatchPrimitive(consumerRegistry.select(key), key, kind, bits);
+    }
+  }
+
+  private <V> void dispatch(final List<Registration<K>> registrations, final K key, final V ev) {
+    int size = registrations.size();
+    if (size == 0) {
+      FirehoseMetrics metrics = lanes.metrics();
+      if (metrics != null) {
+        metrics.keyMiss();
+      }
+      return;
+    }
+
+    // Indexed loop, since iterating over a persistent vector allocates an iterator
+    for (int i = 0; i < size; i++) {
+      Registration<K> registration = registrations.get(i);
+      KeyedConsumer<K, V> consumer = registration.getObject();
       try {
-        reg.getObject().accept(key, ev);
+        consumer.accept(key, ev);
       } catch (Throwable inner) {
+        FirehoseMetrics metrics = lanes.metrics();
+        if (metrics != null) {
+          error(metrics, registration);
+        }
         errorHandler.accept(inner);
       }
     }
   }
 
+  @SuppressWarnings(value = {"unchecked"})
+  private void dispatchPrimitive(final List<Registration<K>> registrations,
+                                 final K key,
+                                 final byte kind,
+                                 final long bits) {
+    int size = registrations.size();
+    if (size == 0) {
+      FirehoseMetrics metrics = lanes.metrics();
+      if (metrics != null) {
+        metrics.keyMiss();
+      }
+      return;
+    }
+
+    Object boxed = null;
+    for (int i = 0; i < size; i++) {
+      Registration<K> registration = registrations.get(i);
+      KeyedConsumer consumer = registration.getObject();
+      try {
+        if (consumer instanceof KeyedDoubleConsumer) {
+          ((KeyedDoubleConsumer<K>) consumer).acceptDouble(key,
+                                                           kind == DOUBLE_EVENT ?
+                                                           Double.longBitsToDouble(bits) :
+                                                           (double) bits);
+        } else if (consumer instanceof KeyedLongConsumer && kind == LONG_EVENT) {
+          ((KeyedLongConsumer<K>) consumer).acceptLong(key, bits);
+        } else {
+          if (boxed == null) {
+            boxed = kind == DOUBLE_EVENT ? Double.valueOf(Double.longBitsToDouble(bits)) : Long.valueOf(bits);
+          }
+          consumer.accept(key, boxed);
+        }
+      } catch (Throwable inner) {
+        FirehoseMetrics metrics = lanes.metrics();
+        if (metrics != null) {
+          error(metrics, registration);
+        }
+        errorHandler.accept(inner);
+      }
+    }
+  }
+
+  private void error(FirehoseMetrics metrics, Registration<K> registration) {
+    Function<K, String> names = errorNames;
+    if (names == null) {
+      metrics.error();
+    } else {
+      metrics.error(names.apply(registration.getSelector()));
+    }
+  }
+
   public <V> Firehose on(final K key, final KeyedConsumer<K, V> consumer) {
     consumerRegistry.register(key, consumer);
     return this;
@@ -186,6 +501,7 @@ public class Firehose<K> {
 
   public <V> Firehose<K> on(final Selector<K> matcher,
                             Consumer<V> consumer) {
+    scheduleIdleEviction();
     consumerRegistry.addKeyMissMatcher(matcher, new Function<K, Map<K, KeyedConsumer>>() {
       @Override
       public Map<K, KeyedConsumer> apply(K k) {
@@ -202,10 +518,38 @@ public class Firehose<K> {
 
   public Firehose<K> on(final Selector<K> matcher,
                         Function<K, Map<K, KeyedConsumer>> supplier) {
+    scheduleIdleEviction();
     consumerRegistry.addKeyMissMatcher(matcher, supplier);
     return this;
   }
 
+  /**
+   * Sweeps the idle keys materialized by the {@link ConcurrentRegistry} every half of its idle
+   * timeout, on the timing wheel of the first lane, so that the keys are evicted even when no
+   * new keys are materialized. Started with the first key miss matcher, the only source of
+   * materialized keys.
+   */
+  private void scheduleIdleEviction() {
+    if (!(consumerRegistry instanceof ConcurrentRegistry) || !idleEvictionScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    ConcurrentRegistry<K> registry = (ConcurrentRegistry<K>) consumerRegistry;
+    long idleTimeout = registry.getIdleTimeout(TimeUnit.NANOSECONDS);
+    if (idleTimeout <= 0) {
+      return;
+    }
+
+    TimingWheel timingWheel = lanes.get(0).getTimingWheel();
+    long period = Math.max(idleTimeout / 2, timingWheel.getResolution(TimeUnit.NANOSECONDS));
+    timingWheel.schedule(new Consumer<Long>() {
+      @Override
+      public void accept(Long now) {
+        registry.evictIdle();
+        timingWheel.schedule(this, period, TimeUnit.NANOSECONDS);
+      }
+    }, period, TimeUnit.NANOSECONDS);
+  }
+
   public boolean unregister(K key) {
     return consumerRegistry.unregister(key);
   }
@@ -218,12 +562,76 @@ public class Firehose<K> {
     return this.consumerRegistry;
   }
 
+  /**
+   * Returns the handler of the errors of the dispatch, for the errors that happen outside of it,
+   * such as the failures of asynchronous stages.
+   */
+  public Consumer<Throwable> getErrorHandler() {
+    return this.errorHandler;
+  }
+
+  /**
+   * Exports the Firehose metrics to the given registry under the given name,
+   * see {@link FirehoseMetrics} for the list of metrics. The errors of all the consumers
+   * are counted together.
+   */
+  public Firehose<K> instrument(MetricRegistry metricRegistry, String name) {
+    return instrument(metricRegistry, name, null);
+  }
+
+  /**
+   * Exports the Firehose metrics to the given registry under the given name, also counting
+   * the errors of the consumers by the name the given function gives their registration key.
+   * Every name gets a counter that stays in the registry, so the names should be few, for
+   * example the first part of the key, rather than the key itself: the keys derived by the
+   * pipes are unique to every subscription.
+   */
+  public Firehose<K> instrument(MetricRegistry metricRegistry,
+                                String name,
+                                Function<K, String> errorNames) {
+    this.errorNames = errorNames;
+    FirehoseMetrics metrics = new FirehoseMetrics(metricRegistry, name);
+    metrics.gauge("capacity", (Gauge<Long>) lanes::capacity);
+    metrics.gauge("registry.size", (Gauge<Long>) consumerRegistry::size);
+    if (consumerRegistry instanceof ConcurrentRegistry) {
+      ConcurrentRegistry<K> registry = (ConcurrentRegistry<K>) consumerRegistry;
+      metrics.gauge("registry.evictions", (Gauge<Long>) registry::getEvictions);
+      metrics.gauge("registry.rematerializations", (Gauge<Long>) registry::getRematerializations);
+    }
+    lanes.instrument(metrics);
+    return this;
+  }
+
+  /**
+   * Sets the resolution and the number of buckets of the timers, see {@link TimingWheel}.
+   * Has to be called before any of the timers is used, the idle eviction of a registry is
+   * one of them, started with the first key miss matcher.
+   */
+  public Firehose<K> configureTimers(long resolution, TimeUnit unit, int wheelSize) {
+    Assert.isTrue(resolution > 0, "Resolution has to be positive.");
+    Assert.isTrue(wheelSize > 1, "Wheel has to have at least two buckets.");
+    if (timersStarted) {
+      throw new IllegalStateException("Timers are already started.");
+    }
+    this.timerResolution = unit.toNanos(resolution);
+    this.timerWheelSize = wheelSize;
+    return this;
+  }
+
   public HashWheelTimer getTimer() {
     return this.timer.get();
   }
 
+  /**
+   * Returns the timing wheel of the lane the key is dispatched on. Each lane has its own
+   * wheel, so the per-key timers of the different lanes don't contend on a single timer.
+   */
+  public TimingWheel getTimingWheel(K key) {
+    return lane(key).getTimingWheel();
+  }
+
   public void shutdown() {
-    processor.onComplete();
+    lanes.shutdown();
   }
 
   /**
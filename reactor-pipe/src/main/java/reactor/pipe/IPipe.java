@@ -1,13 +1,19 @@
 package reactor.pipe;
 
 import reactor.fn.*;
+import reactor.fn.tuple.Tuple2;
 import reactor.pipe.concurrent.Atom;
 import reactor.pipe.consumer.KeyedConsumer;
 import reactor.pipe.key.Key;
 import reactor.pipe.selector.Selector;
+import reactor.pipe.sketch.TDigest;
+import reactor.pipe.stream.EventTime;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Pipe represents a streaming transformation from `INIT` type,
@@ -22,6 +28,17 @@ public interface IPipe<INIT, CURRENT> {
   <ST, NEXT> IPipe<INIT, NEXT> map(BiFunction<Atom<ST>, CURRENT, NEXT> mapper,
                                    ST init);
 
+  /**
+   * Maps the events with an asynchronous call, such as a lookup in a remote service, without
+   * blocking the worker while the call is in flight. Results are notified through the
+   * {@link Firehose} once the calls complete. At most {@code maxInFlight} calls are in flight
+   * per stage, the rest of the events wait for a free slot. When {@code ordered}, results are
+   * emitted in the order of the events, otherwise in the order of completion.
+   */
+  <NEXT> IPipe<INIT, NEXT> mapAsync(Function<CURRENT, ? extends CompletionStage<NEXT>> mapper,
+                                    int maxInFlight,
+                                    boolean ordered);
+
   <ST> IPipe<INIT, ST> scan(BiFunction<ST, CURRENT, ST> mapper,
                             ST init);
 
@@ -31,16 +48,224 @@ public interface IPipe<INIT, CURRENT> {
 
   IPipe<INIT, CURRENT> filter(Predicate<CURRENT> predicate);
 
+  /**
+   * Contiguous stateless stages, such as {@link #map(Function)} and {@link #filter(Predicate)},
+   * are fused with the stage that follows them and run on the same thread. Async boundary
+   * re-dispatches the events through the {@link Firehose}, so that the following stages
+   * may run on another thread.
+   */
+  IPipe<INIT, CURRENT> async();
+
   IPipe<INIT, List<CURRENT>> slide(UnaryOperator<List<CURRENT>> drop);
 
+  /**
+   * Count-based sliding window, emits the last {@code size} values on every event. Unlike
+   * {@link #slide(UnaryOperator)}, updating the window is constant time.
+   */
+  IPipe<INIT, List<CURRENT>> slide(int size);
+
+  /**
+   * Emits an aggregate of the last {@code size} values on every event. The aggregate has to
+   * be invertible: {@code remove} takes out the value that drops out of the window.
+   */
+  <A> IPipe<INIT, A> slide(int size,
+                           A init,
+                           BiFunction<A, CURRENT, A> add,
+                           BiFunction<A, CURRENT, A> remove);
+
+  IPipe<INIT, Double> slidingSum(int size, ToDoubleFunction<CURRENT> value);
+
+  IPipe<INIT, Long> slidingCount(int size, Predicate<CURRENT> predicate);
+
+  IPipe<INIT, CURRENT> slidingMin(int size, Comparator<? super CURRENT> comparator);
+
+  IPipe<INIT, CURRENT> slidingMax(int size, Comparator<? super CURRENT> comparator);
+
+  /**
+   * Emits the estimated number of distinct values so far, counted by a
+   * {@link reactor.pipe.sketch.HyperLogLog} of {@code 2^precision} registers.
+   */
+  IPipe<INIT, Long> distinctCount(int precision);
+
+  /**
+   * Emits the {@code k} most frequent values so far every {@code every} values, the most
+   * frequent first, with their estimated frequencies, see {@link reactor.pipe.sketch.TopK}.
+   * With probability {@code 1 - delta}, frequencies are overestimated by at most
+   * {@code epsilon} times the number of events.
+   */
+  IPipe<INIT, List<Tuple2<CURRENT, Long>>> topK(int k, double epsilon, double delta, int every);
+
+  /**
+   * Emits the estimates of the given quantiles of the values so far, in the same order,
+   * summarized by a {@link TDigest} of the given compression. The estimates
+   * are refreshed as the digest grows, at the latest every {@code compression} values, and the
+   * last ones are emitted in between.
+   */
+  IPipe<INIT, double[]> quantiles(ToDoubleFunction<CURRENT> value, double compression, double... quantiles);
+
+  /**
+   * Emits a copy of the {@link TDigest} of the values so far every {@code every} values, for
+   * example to {@link TDigest#merge merge} the digests of the shards of a key. The digests are
+   * cumulative, so a merge combines the latest digest of each shard.
+   */
+  IPipe<INIT, TDigest> digest(ToDoubleFunction<CURRENT> value, double compression, int every);
+
+  /**
+   * Tumbling time windows of the given size, aligned to the epoch. Events are folded into the
+   * accumulator of their window as they arrive, the accumulator is emitted once the window
+   * closes, on the {@link Firehose} timer.
+   */
+  <A> IPipe<INIT, A> window(long size,
+                            TimeUnit unit,
+                            A init,
+                            BiFunction<A, CURRENT, A> reducer);
+
+  /**
+   * Hopping time windows of the given size, starting every {@code slide}. Events are folded
+   * into each of the overlapping windows they belong to.
+   */
+  <A> IPipe<INIT, A> window(long size,
+                            long slide,
+                            TimeUnit unit,
+                            A init,
+                            BiFunction<A, CURRENT, A> reducer);
+
+  /**
+   * Hopping time windows of the given size, starting every {@code slide}. Events are folded
+   * into panes shared by the overlapping windows, which are combined with the {@code combiner}
+   * when the window closes, so each event is folded once.
+   */
+  <A> IPipe<INIT, A> window(long size,
+                            long slide,
+                            TimeUnit unit,
+                            A init,
+                            BiFunction<A, CURRENT, A> reducer,
+                            BiFunction<A, A, A> combiner);
+
+  /**
+   * Tumbling event-time windows of the given size, fired as the watermark of the key passes
+   * their end, see {@link EventTime}.
+   */
+  <A> IPipe<INIT, A> window(EventTime<CURRENT> eventTime,
+                            long size,
+                            TimeUnit unit,
+                            A init,
+                            BiFunction<A, CURRENT, A> reducer);
+
+  /**
+   * Hopping event-time windows of the given size, starting every {@code slide}.
+   */
+  <A> IPipe<INIT, A> window(EventTime<CURRENT> eventTime,
+                            long size,
+                            long slide,
+                            TimeUnit unit,
+                            A init,
+                            BiFunction<A, CURRENT, A> reducer);
+
+  /**
+   * Session windows, closed once no event arrived for the given gap. Events are folded into
+   * the accumulator of the session as they arrive, the accumulator is emitted when the
+   * session closes.
+   */
+  <A> IPipe<INIT, A> session(long gap,
+                             TimeUnit unit,
+                             BiFunction<A, CURRENT, A> reducer,
+                             A init);
+
+  /**
+   * Groups the events by the given key, to aggregate them per group within a single stage.
+   */
+  <G> GroupedPipe<INIT, G, CURRENT> groupBy(Function<CURRENT, G> keyFn);
+
+  /**
+   * Spreads the events of each key round-robin across {@code n} sub-keys, so that the stateless
+   * stages that follow run on up to {@code n} lanes of a sharded {@link Firehose} at once,
+   * until they are merged back by {@link ParallelPipe#sequential(boolean)}.
+   */
+  ParallelPipe<INIT, CURRENT> parallel(int n);
+
+  /**
+   * Joins the events with the events notified on the {@code other} key: events of both streams
+   * with equal join keys that arrived within the window of each other are combined by the
+   * {@code joiner}. Each side buffers at most {@code maxBuffered} events, the oldest go first.
+   */
+  <R, J, O> IPipe<INIT, O> join(Key other,
+                                Function<CURRENT, J> joinKey,
+                                Function<R, J> otherJoinKey,
+                                long window,
+                                TimeUnit unit,
+                                int maxBuffered,
+                                BiFunction<CURRENT, R, O> joiner);
+
   IPipe<INIT, List<CURRENT>> partition(Predicate<List<CURRENT>> emit);
 
+  /**
+   * Buffers the events into batches, emitted once they hold {@code maxSize} events or once
+   * {@code maxDelay} has passed since their first event, whichever comes first.
+   */
+  IPipe<INIT, List<CURRENT>> buffer(int maxSize, long maxDelay, TimeUnit unit);
+
   <SRC extends Key> PipeEnd<INIT, CURRENT> consume(KeyedConsumer<SRC, CURRENT> consumer);
 
   <SRC extends Key> PipeEnd<INIT, CURRENT> consume(Supplier<KeyedConsumer<SRC, CURRENT>> supplier);
 
   PipeEnd<INIT, CURRENT> consume(Consumer<CURRENT> consumer);
 
+  /**
+   * Consumes the events in batches, see {@link #buffer(int, long, TimeUnit)}, for the sinks
+   * that can write a whole batch in a single round-trip.
+   */
+  PipeEnd<INIT, List<CURRENT>> consumeBatch(int maxSize,
+                                            long maxDelay,
+                                            TimeUnit unit,
+                                            Consumer<List<CURRENT>> consumer);
+
+
+  /**
+   * Events grouped by a key, see {@link IPipe#groupBy(Function)}. The state of all the groups
+   * is kept by a single stage, so there are no registrations per group.
+   */
+  public interface GroupedPipe<INIT, G, CURRENT> {
+
+    /**
+     * Evicts the groups that got no events for the given duration, their aggregates start
+     * over with the next event.
+     */
+    GroupedPipe<INIT, G, CURRENT> evictIdle(long duration, TimeUnit unit);
+
+    /**
+     * Emits the group and the reduction of all its events so far on every event.
+     */
+    IPipe<INIT, Tuple2<G, CURRENT>> reduce(BiFunction<CURRENT, CURRENT, CURRENT> reducer);
+
+    /**
+     * Emits the group and its aggregate on every event.
+     */
+    <A> IPipe<INIT, Tuple2<G, A>> aggregate(BiFunction<A, CURRENT, A> aggregator,
+                                            A init);
+  }
+
+  /**
+   * Events spread across sub-keys, see {@link IPipe#parallel(int)}. Only the stateless stages
+   * can run in parallel, they are fused into a single consumer registered on all the sub-keys.
+   */
+  public interface ParallelPipe<INIT, CURRENT> {
+
+    <NEXT> ParallelPipe<INIT, NEXT> map(Function<CURRENT, NEXT> mapper);
+
+    ParallelPipe<INIT, CURRENT> filter(Predicate<CURRENT> predicate);
+
+    /**
+     * Merges the events back into a single key, in the order they complete.
+     */
+    IPipe<INIT, CURRENT> sequential();
+
+    /**
+     * Merges the events back into a single key. When {@code ordered}, the events are restored
+     * to the order they were spread in, waiting for the slower sub-keys.
+     */
+    IPipe<INIT, CURRENT> sequential(boolean ordered);
+  }
 
   public interface PipeEnd<INIT, CURRENT> {
     void subscribe(Key key, Firehose<Key> firehose);
@@ -0,0 +1,119 @@
+package reactor.pipe;
+
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.consumer.KeyedLongConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.operation.LongSlidingWindow;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ObjIntConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Pipe of primitive {@code int} values that never boxes them. The Firehose carries the
+ * primitives as {@code long}s, so values are notified with {@link Firehose#notifyLong(Object, long)}
+ * and narrowed on entry, see {@link DoublePipe} for the details.
+ */
+public final class IntPipe {
+
+  private final Function<ObjIntConsumer<Key>, KeyedConsumer<Key, Number>> source;
+  private final PVector<UnaryOperator<ObjIntConsumer<Key>>>               stages;
+
+  private IntPipe(Function<ObjIntConsumer<Key>, KeyedConsumer<Key, Number>> source,
+                  PVector<UnaryOperator<ObjIntConsumer<Key>>> stages) {
+    this.source = source;
+    this.stages = stages;
+  }
+
+  public static IntPipe build() {
+    return new IntPipe(head -> (KeyedLongConsumer<Key>) (key, value) -> head.accept(key, (int) value),
+                       TreePVector.empty());
+  }
+
+  public IntPipe map(IntUnaryOperator mapper) {
+    return next(downstream -> (key, value) -> downstream.accept(key, mapper.applyAsInt(value)));
+  }
+
+  public LongPipe mapToLong(IntToLongFunction mapper) {
+    return new LongPipe(downstream -> compile((key, value) -> downstream.accept(key, mapper.applyAsLong(value))));
+  }
+
+  public DoublePipe mapToDouble(IntToDoubleFunction mapper) {
+    return new DoublePipe(downstream -> compile((key, value) -> downstream.accept(key, mapper.applyAsDouble(value))));
+  }
+
+  public IntPipe filter(IntPredicate predicate) {
+    return next(downstream -> (key, value) -> {
+      if (predicate.test(value)) {
+        downstream.accept(key, value);
+      }
+    });
+  }
+
+  /**
+   * Emits the running accumulation of the values, updated with a compare-and-set, so the
+   * accumulator has to be free of side effects.
+   */
+  public IntPipe scan(IntBinaryOperator accumulator, int init) {
+    return next(downstream -> {
+      AtomicInteger acc = new AtomicInteger(init);
+      return (key, value) -> downstream.accept(key, acc.accumulateAndGet(value, accumulator));
+    });
+  }
+
+  /**
+   * Emits the sum of the last {@code size} values, overflowing the way {@code int} arithmetic
+   * does, see {@link LongSlidingWindow}.
+   */
+  public IntPipe slidingSum(int size) {
+    return window(size, LongSlidingWindow::sum);
+  }
+
+  public IntPipe slidingMin(int size) {
+    return window(size, LongSlidingWindow::min);
+  }
+
+  public IntPipe slidingMax(int size) {
+    return window(size, LongSlidingWindow::max);
+  }
+
+  public IPipe.PipeEnd<Integer, Integer> consume(IntConsumer consumer) {
+    return consume((key, value) -> consumer.accept(value));
+  }
+
+  public IPipe.PipeEnd<Integer, Integer> consume(ObjIntConsumer<Key> consumer) {
+    return new PrimitivePipeEnd<>(() -> compile(consumer));
+  }
+
+  private IntPipe window(int size, IntFunction<LongSlidingWindow> window) {
+    return next(downstream -> {
+      LongSlidingWindow values = window.apply(size);
+      return (key, value) -> downstream.accept(key, (int) values.add(value));
+    });
+  }
+
+  private IntPipe next(UnaryOperator<ObjIntConsumer<Key>> stage) {
+    return new IntPipe(source, stages.plus(stage));
+  }
+
+  /**
+   * Wraps the sink into the stages, last stage goes first, each stage getting its own state.
+   */
+  private KeyedConsumer<Key, Number> compile(ObjIntConsumer<Key> sink) {
+    ObjIntConsumer<Key> downstream = sink;
+    for (int i = stages.size() - 1; i >= 0; i--) {
+      downstream = stages.get(i).apply(downstream);
+    }
+    return source.apply(downstream);
+  }
+}
@@ -0,0 +1,480 @@
+package reactor.pipe;
+
+import org.reactivestreams.Processor;
+import reactor.Subscribers;
+import reactor.core.subscription.SubscriptionWithContext;
+import reactor.core.support.Assert;
+import reactor.fn.Consumer;
+import reactor.pipe.concurrent.LazyVar;
+import reactor.pipe.metrics.FirehoseMetrics;
+import reactor.pipe.stream.BackpressureStrategy;
+import reactor.pipe.stream.FirehoseSubscription;
+import reactor.pipe.timer.TimingWheel;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Lanes the events of a {@link Firehose} or a {@link LongFirehose} are dispatched on: the
+ * processors with their backpressure subscriptions, pre-allocated dispatch slots and timers,
+ * and the metrics hooks of the enqueue and the dispatch. The Firehoses only route the keys
+ * to the lanes and look up their consumers, through the {@link Dispatcher}.
+ *
+ * The keys are held either as objects or as primitive longs, so that the {@link LongFirehose}
+ * never boxes them, the events either as objects or as the long bits of a primitive.
+ *
+ * The consumers of a key only ever run on the workers of its lane. Events a consumer notifies
+ * for a key of its own lane are dispatched synchronously, events for the other lanes are posted
+ * to the inbox of the lane instead of its processor, so that a worker never waits for a slot of
+ * another lane, and the workers of two lanes notifying each other can't deadlock. The workers
+ * drain the inbox of their lane after every task they run, an idle lane is woken up by a no-op
+ * task. The inbox is unbounded, consumers aren't held back by the backpressure strategy.
+ */
+final class Lanes {
+
+  private final static long NOT_MEASURED = Long.MIN_VALUE;
+  // Kind of the events held as objects, the kinds of the primitives are up to the Firehose
+  final static byte         OBJECT_EVENT = 0;
+
+  /**
+   * Dispatches the event to the consumers of the key, {@code key} is {@code null} when the
+   * key is a primitive.
+   */
+  interface Dispatcher {
+    void dispatch(Object key, long longKey, Object ev, byte kind, long bits);
+  }
+
+  private final Dispatcher           dispatcher;
+  private final Consumer<Throwable>  errorHandler;
+  // Lane the current thread dispatches the events of, if it's a worker
+  private final ThreadLocal<Lane>    currentLane;
+  private final Lane[]               lanes;
+  // Null unless instrumented, so that metrics cost nothing but a read when they're off
+  private volatile FirehoseMetrics   metrics;
+
+  /**
+   * @param dispatchSlots number of pre-allocated dispatch slots per processor, the events in flight
+   *                      beyond them fall back to a task allocated for the event
+   * @param timingWheels  creates the timing wheel of the lane with the given index, when first used
+   */
+  Lanes(List<? extends Processor<Runnable, Runnable>> processors,
+        int concurrency,
+        Consumer<Throwable> errorHandler,
+        BackpressureStrategy backpressureStrategy,
+        int dispatchSlots,
+        Dispatcher dispatcher,
+        IntFunction<TimingWheel> timingWheels) {
+    Assert.isTrue(!processors.isEmpty(), "At least one processor is required.");
+    this.dispatcher = dispatcher;
+    this.errorHandler = errorHandler;
+    this.currentLane = new ThreadLocal<>();
+    this.lanes = new Lane[processors.size()];
+
+    for (int laneIdx = 0; laneIdx < lanes.length; laneIdx++) {
+      Processor<Runnable, Runnable> processor = processors.get(laneIdx);
+      int idx = laneIdx;
+      Lane lane = new Lane(this,
+                           processor,
+                           backpressureStrategy,
+                           dispatchSlots + concurrency,
+                           new LazyVar<>(() -> timingWheels.apply(idx)));
+      this.lanes[laneIdx] = lane;
+      for (int i = 0; i < concurrency; i++) {
+        processor.subscribe(Subscribers.unbounded((Runnable runnable,
+                                                   SubscriptionWithContext<Void> voidSubscriptionWithContext) -> {
+                                                    runnable.run();
+                                                    lane.drainInbox();
+                                                  },
+                                                  errorHandler));
+      }
+      processor.onSubscribe(lane.subscription);
+    }
+  }
+
+  int size() {
+    return lanes.length;
+  }
+
+  Lane get(int idx) {
+    return lanes[idx];
+  }
+
+  Lane lane(int hash) {
+    if (lanes.length == 1) {
+      return lanes[0];
+    }
+    hash ^= (hash >>> 16);
+    return lanes[(hash & Integer.MAX_VALUE) % lanes.length];
+  }
+
+  FirehoseMetrics metrics() {
+    return metrics;
+  }
+
+  void instrument(FirehoseMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return number of events that can be enqueued without waiting
+   */
+  long capacity() {
+    long capacity = 0;
+    for (Lane lane : lanes) {
+      capacity += lane.subscription.getFreeSlots();
+    }
+    return capacity;
+  }
+
+  /**
+   * Claims a slot of the lane, waiting for it according to the backpressure strategy.
+   */
+  void awaitSlot(final Lane lane, final Object key, final long longKey) {
+    if (!isDispatching() && !lane.subscription.maybeClaimSlot()) {
+      long start = System.nanoTime();
+      try {
+        lane.subscription.claimSlot(-1, TimeUnit.NANOSECONDS);
+        blocked(start);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while waiting for a free slot for key " + describe(key, longKey), e);
+      }
+    }
+  }
+
+  /**
+   * @return {@code false} if there's no free slot for the event, {@code true} otherwise
+   */
+  boolean tryClaimSlot(final Lane lane) {
+    return isDispatching() || lane.subscription.maybeClaimSlot();
+  }
+
+  /**
+   * @return {@code false} if the timeout has elapsed before the slot became available, {@code true} otherwise
+   */
+  boolean claimSlot(final Lane lane, long timeout, TimeUnit unit) throws InterruptedException {
+    if (!isDispatching() && !lane.subscription.maybeClaimSlot()) {
+      long start = System.nanoTime();
+      boolean claimed = lane.subscription.claimSlot(timeout, unit);
+      blocked(start);
+      return claimed;
+    }
+    return true;
+  }
+
+  /**
+   * Consumers never take a slot, their events are either dispatched synchronously or posted
+   * to the inbox of the lane.
+   *
+   * @return {@code true} if called from a consumer
+   */
+  private boolean isDispatching() {
+    return currentLane.get() != null;
+  }
+
+  void enqueue(final Lane lane,
+               final Object key,
+               final long longKey,
+               final Object ev,
+               final byte kind,
+               final long bits) {
+    long enqueuedAt = enqueued(1);
+    if (currentLane.get() == lane) {
+      // Since we're already on the lane of the key, we can dispatch syncronously. Events for
+      // the other lanes are always enqueued, their keys may be dispatched by their workers
+      // at the same time.
+      try {
+        dispatcher.dispatch(key, longKey, ev, kind, bits);
+      } catch (Throwable outer) {
+        errorHandler.accept(outer);
+      }
+      dispatched(enqueuedAt);
+    } else {
+      enqueueOnLane(lane, key, longKey, ev, kind, bits, enqueuedAt);
+    }
+  }
+
+  /**
+   * Hands the event over to the workers of the lane, even when called from a consumer on the
+   * same lane, so that the events handed over by a consumer are dispatched in the order they
+   * were handed over in, after the current event.
+   */
+  void handOver(final Lane lane,
+                final Object key,
+                final long longKey,
+                final Object ev,
+                final byte kind,
+                final long bits) {
+    awaitSlot(lane, key, longKey);
+    enqueueOnLane(lane, key, longKey, ev, kind, bits, enqueued(1));
+  }
+
+  private void enqueueOnLane(final Lane lane,
+                             final Object key,
+                             final long longKey,
+                             final Object ev,
+                             final byte kind,
+                             final long bits,
+                             final long enqueuedAt) {
+    DispatchSlot slot = lane.claimDispatchSlot();
+    if (slot != null) {
+      slot.key = key;
+      slot.longKey = longKey;
+      slot.ev = ev;
+      slot.kind = kind;
+      slot.bits = bits;
+      slot.enqueuedAt = enqueuedAt;
+      submit(lane, slot);
+    } else {
+      // All the slots are in flight, fall back to the capturing runnable
+      submit(lane, () -> dispatchInContext(lane, key, longKey, ev, kind, bits, enqueuedAt));
+    }
+  }
+
+  private void submit(final Lane lane, final Runnable task) {
+    Lane current = currentLane.get();
+    if (current == null) {
+      lane.processor.onNext(task);
+    } else {
+      lane.post(task, current == lane);
+    }
+  }
+
+  private void dispatchInContext(final Lane lane,
+                                 final Object key,
+                                 final long longKey,
+                                 final Object ev,
+                                 final byte kind,
+                                 final long bits,
+                                 final long enqueuedAt) {
+    try {
+      currentLane.set(lane);
+      dispatcher.dispatch(key, longKey, ev, kind, bits);
+    } catch (Throwable outer) {
+      errorHandler.accept(new RuntimeException("Exception in key: " + describe(key, longKey), outer));
+    } finally {
+      currentLane.set(null);
+    }
+    dispatched(enqueuedAt);
+  }
+
+  /**
+   * Enqueues a batch of {@code events} events, that takes a single slot.
+   */
+  void enqueueBatch(final Lane lane, final int events, final Runnable batch) {
+    long enqueuedAt = enqueued(events);
+    if (currentLane.get() == lane) {
+      try {
+        batch.run();
+      } catch (Throwable outer) {
+        errorHandler.accept(outer);
+      }
+      dispatched(enqueuedAt);
+    } else {
+      submit(lane, () -> {
+        try {
+          currentLane.set(lane);
+          batch.run();
+        } catch (Throwable outer) {
+          errorHandler.accept(new RuntimeException("Exception in batch", outer));
+        } finally {
+          currentLane.set(null);
+        }
+        dispatched(enqueuedAt);
+      });
+    }
+  }
+
+  void shutdown() {
+    for (Lane lane : lanes) {
+      lane.processor.onComplete();
+      if (lane.timingWheel.isSet()) {
+        lane.timingWheel.get().shutdown();
+      }
+    }
+  }
+
+  private void blocked(long start) {
+    FirehoseMetrics metrics = this.metrics;
+    if (metrics != null) {
+      metrics.blocked(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * @return enqueue timestamp for the dispatch latency, or {@link #NOT_MEASURED} when metrics are off
+   */
+  private long enqueued(int events) {
+    FirehoseMetrics metrics = this.metrics;
+    if (metrics == null) {
+      return NOT_MEASURED;
+    }
+    metrics.notified(events);
+    return System.nanoTime();
+  }
+
+  private void dispatched(long enqueuedAt) {
+    FirehoseMetrics metrics = this.metrics;
+    if (metrics != null && enqueuedAt != NOT_MEASURED) {
+      metrics.dispatched(System.nanoTime() - enqueuedAt);
+    }
+  }
+
+  private static String describe(Object key, long longKey) {
+    return key != null ? key.toString() : Long.toString(longKey);
+  }
+
+  static final class Lane {
+    private static final int      MAX_CLAIM_ATTEMPTS = 8;
+    // Wakes up an idle lane, the worker drains the inbox after running it
+    private static final Runnable WAKE_UP            = () -> {
+    };
+
+    private final Processor<Runnable, Runnable> processor;
+    private final FirehoseSubscription          subscription;
+    private final DispatchSlot[]                dispatchSlots;
+    private final int                           mask;
+    private final AtomicLong                    cursor;
+    private final LazyVar<TimingWheel>          timingWheel;
+    private final Queue<Runnable>               inbox;
+    // Set while the inbox has tasks a worker is yet to drain
+    private final AtomicBoolean                 inboxScheduled;
+    // Set while a wake-up waits for a slot
+    private final AtomicBoolean                 wakeUpPending;
+
+    private Lane(Lanes lanes,
+                 Processor<Runnable, Runnable> processor,
+                 BackpressureStrategy backpressureStrategy,
+                 int dispatchSlots,
+                 LazyVar<TimingWheel> timingWheel) {
+      this.processor = processor;
+      this.subscription = new FirehoseSubscription(backpressureStrategy) {
+        @Override
+        public void request(long l) {
+          super.request(l);
+          wakeUpIfPending();
+        }
+      };
+      this.timingWheel = timingWheel;
+      this.dispatchSlots = new DispatchSlot[Integer.highestOneBit(dispatchSlots - 1) << 1];
+      this.mask = this.dispatchSlots.length - 1;
+      this.cursor = new AtomicLong();
+      this.inbox = new ConcurrentLinkedQueue<>();
+      this.inboxScheduled = new AtomicBoolean(false);
+      this.wakeUpPending = new AtomicBoolean(false);
+      for (int i = 0; i < this.dispatchSlots.length; i++) {
+        this.dispatchSlots[i] = new DispatchSlot(lanes, this);
+      }
+    }
+
+    TimingWheel getTimingWheel() {
+      return timingWheel.get();
+    }
+
+    /**
+     * Posts a task to the inbox, a worker of the lane drains it once done with its current
+     * task. Unless posted by a worker of this lane, the first task since the last drain wakes
+     * the lane up, in case it's idle.
+     *
+     * @param own whether the task is posted by a worker of this lane
+     */
+    private void post(Runnable task, boolean own) {
+      inbox.offer(task);
+      if (inboxScheduled.compareAndSet(false, true) && !own) {
+        wakeUpPending.set(true);
+        wakeUpIfPending();
+      }
+    }
+
+    /**
+     * The wake-up takes a slot like any other task, so that posting never waits for the
+     * processor, the poster may hold a lock the worker of the lane is waiting for. Without
+     * a free slot, the lane has tasks to run and drains the inbox after them anyway, the
+     * wake-up is only deferred until the processor returns a slot, in case they're done
+     * before the task was posted.
+     */
+    private void wakeUpIfPending() {
+      while (wakeUpPending.compareAndSet(true, false)) {
+        if (subscription.maybeClaimSlot()) {
+          processor.onNext(WAKE_UP);
+          return;
+        }
+        wakeUpPending.set(true);
+        if (!subscription.hasFreeSlots()) {
+          // The next returned slot takes it over
+          return;
+        }
+      }
+    }
+
+    /**
+     * Runs the tasks of the inbox, including the ones posted by the tasks it runs.
+     */
+    private void drainInbox() {
+      while (inboxScheduled.compareAndSet(true, false)) {
+        Runnable task;
+        while ((task = inbox.poll()) != null) {
+          task.run();
+        }
+      }
+    }
+
+    /**
+     * Slots are claimed in order and usually released in the same order, so the next
+     * slot is free unless more events than there are slots are in flight.
+     *
+     * @return claimed slot or {@code null} if no free slot was found
+     */
+    private DispatchSlot claimDispatchSlot() {
+      for (int i = 0; i < MAX_CLAIM_ATTEMPTS; i++) {
+        DispatchSlot slot = dispatchSlots[(int) cursor.getAndIncrement() & mask];
+        if (slot.claimed.compareAndSet(false, true)) {
+          return slot;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Pre-allocated, reusable event holder, so that dispatching an event doesn't allocate
+   * a capturing runnable. The slot is released as soon as the worker picks up the event.
+   */
+  private static final class DispatchSlot implements Runnable {
+    private final Lanes         lanes;
+    private final Lane          lane;
+    private final AtomicBoolean claimed;
+    private       Object        key;
+    private       long          longKey;
+    private       Object        ev;
+    private       byte          kind;
+    private       long          bits;
+    private       long          enqueuedAt;
+
+    private DispatchSlot(Lanes lanes, Lane lane) {
+      this.lanes = lanes;
+      this.lane = lane;
+      this.claimed = new AtomicBoolean(false);
+    }
+
+    @Override
+    public void run() {
+      Object key = this.key;
+      long longKey = this.longKey;
+      Object ev = this.ev;
+      byte kind = this.kind;
+      long bits = this.bits;
+      long enqueuedAt = this.enqueuedAt;
+      this.key = null;
+      this.ev = null;
+      claimed.set(false);
+
+      lanes.dispatchInContext(lane, key, longKey, ev, kind, bits, enqueuedAt);
+    }
+  }
+}
@@ -0,0 +1,295 @@
+package reactor.pipe;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.reactivestreams.Processor;
+import reactor.core.processor.RingBufferWorkProcessor;
+import reactor.core.support.Assert;
+import reactor.fn.Consumer;
+import reactor.pipe.consumer.LongKeyedConsumer;
+import reactor.pipe.metrics.FirehoseMetrics;
+import reactor.pipe.registry.LongRegistry;
+import reactor.pipe.stream.BackpressureStrategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * {@link Firehose} specialized for the events keyed by a primitive {@code long}, such as
+ * numeric entity ids. Keys are never boxed or wrapped: they're routed, stored in the
+ * pre-allocated dispatch slots and looked up in the {@link LongRegistry} as they are, so
+ * millions of keys take a fraction of the memory and the dispatch skips the
+ * {@code hashCode} and {@code equals} calls on the key.
+ *
+ * Backpressure, sharding and metrics work the same way they do in {@link Firehose}, the lanes
+ * the events are dispatched on are shared with it, only the routing and the lookup differ.
+ */
+public class LongFirehose {
+
+  private final static int                  DEFAULT_THREAD_POOL_SIZE      = 4;
+  private final static int                  DEFAULT_RING_BUFFER_SIZE      = 65536;
+  private final static int                  DEFAULT_DISPATCH_SLOTS        = 1024;
+  private final static BackpressureStrategy DEFAULT_BACKPRESSURE_STRATEGY = BackpressureStrategy.parking(
+    1000, TimeUnit.MILLISECONDS.toNanos(1));
+  private final static Consumer<Throwable>  DEFAULT_THROWABLE_CONSUMER    = new Consumer<Throwable>() {
+    @Override
+    public void accept(Throwable throwable) {
+      System.out.printf("Exception caught while dispatching: %s\n", throwable.getMessage());
+      throwable.printStackTrace();
+    }
+  };
+
+  private final LongRegistry            consumerRegistry;
+  private final Consumer<Throwable>     errorHandler;
+  private final Lanes                   lanes;
+  // Names of the error counters of the consumers, by their key, all the errors are counted together when null
+  private volatile LongFunction<String> errorNames;
+
+  public LongFirehose() {
+    this(DEFAULT_THROWABLE_CONSUMER);
+  }
+
+  public LongFirehose(Consumer<Throwable> errorHandler) {
+    this(new LongRegistry(),
+         Collections.singletonList(
+           RingBufferWorkProcessor.<Runnable>create(Executors.newFixedThreadPool(DEFAULT_THREAD_POOL_SIZE),
+                                                    DEFAULT_RING_BUFFER_SIZE)),
+         DEFAULT_THREAD_POOL_SIZE,
+         errorHandler,
+         DEFAULT_BACKPRESSURE_STRATEGY,
+         DEFAULT_DISPATCH_SLOTS);
+  }
+
+  public LongFirehose(LongRegistry registry,
+                      Processor<Runnable, Runnable> processor,
+                      int concurrency,
+                      Consumer<Throwable> dispatchErrorHandler,
+                      BackpressureStrategy backpressureStrategy) {
+    this(registry,
+         Collections.singletonList(processor),
+         concurrency,
+         dispatchErrorHandler,
+         backpressureStrategy,
+         DEFAULT_DISPATCH_SLOTS);
+  }
+
+  /**
+   * Creates a sharded LongFirehose. Every processor becomes a lane with a single consumer and
+   * events are routed to the lanes by the key, so all the events for the same key are
+   * dispatched in order, by the same thread.
+   */
+  public LongFirehose(LongRegistry registry,
+                      List<? extends Processor<Runnable, Runnable>> lanes,
+                      Consumer<Throwable> dispatchErrorHandler,
+                      BackpressureStrategy backpressureStrategy) {
+    this(registry,
+         lanes,
+         1,
+         dispatchErrorHandler,
+         backpressureStrategy,
+         DEFAULT_DISPATCH_SLOTS);
+  }
+
+  private LongFirehose(LongRegistry registry,
+                       List<? extends Processor<Runnable, Runnable>> processors,
+                       int concurrency,
+                       Consumer<Throwable> dispatchErrorHandler,
+                       BackpressureStrategy backpressureStrategy,
+                       int dispatchSlots) {
+    this.consumerRegistry = registry;
+    this.errorHandler = dispatchErrorHandler;
+    this.lanes = new Lanes(processors,
+                           concurrency,
+                           dispatchErrorHandler,
+                           backpressureStrategy,
+                           dispatchSlots,
+                           this::dispatch,
+                           (laneIdx) -> {
+                             throw new UnsupportedOperationException("LongFirehose has no timers.");
+                           });
+  }
+
+  /**
+   * Creates a sharded LongFirehose with {@code lanes} single-threaded lanes.
+   */
+  public static LongFirehose sharded(int lanes,
+                                     int ringBufferSize) {
+    List<Processor<Runnable, Runnable>> processors = new ArrayList<>(lanes);
+    for (int i = 0; i < lanes; i++) {
+      processors.add(RingBufferWorkProcessor.<Runnable>create(Executors.newSingleThreadExecutor(),
+                                                              ringBufferSize));
+    }
+    return new LongFirehose(new LongRegistry(),
+                            processors,
+                            1,
+                            DEFAULT_THROWABLE_CONSUMER,
+                            DEFAULT_BACKPRESSURE_STRATEGY,
+                            ringBufferSize);
+  }
+
+  public <V> LongFirehose notify(final long key, final V ev) {
+    checkNotNull(key, ev);
+
+    Lanes.Lane lane = lane(key);
+    lanes.awaitSlot(lane, null, key);
+    lanes.enqueue(lane, null, key, ev, Lanes.OBJECT_EVENT, 0);
+    return this;
+  }
+
+  /**
+   * Notifies the consumers of the {@code key} about all the given events. The whole batch
+   * takes a single slot and is dispatched by a single task, consumers are looked up once.
+   */
+  public <V> LongFirehose notifyAll(final long key, final List<V> evs) {
+    Assert.notNull(evs, "Events cannot be null for key " + key);
+    if (evs.isEmpty()) {
+      return this;
+    }
+
+    Lanes.Lane lane = lane(key);
+    lanes.awaitSlot(lane, null, key);
+    lanes.enqueueBatch(lane, evs.size(), () -> {
+      LongKeyedConsumer[] consumers = consumerRegistry.select(key);
+      for (V ev : evs) {
+        dispatch(consumers, key, ev);
+      }
+    });
+    return this;
+  }
+
+  /**
+   * Notifies the consumers of the {@code key} only if the event can be accepted without waiting.
+   *
+   * @return {@code false} if there's no free slot for the event, {@code true} otherwise
+   */
+  public <V> boolean tryNotify(final long key, final V ev) {
+    checkNotNull(key, ev);
+
+    Lanes.Lane lane = lane(key);
+    if (!lanes.tryClaimSlot(lane)) {
+      return false;
+    }
+
+    lanes.enqueue(lane, null, key, ev, Lanes.OBJECT_EVENT, 0);
+    return true;
+  }
+
+  /**
+   * Notifies the consumers of the {@code key}, waiting up to the given time for a free slot.
+   *
+   * @return {@code false} if the timeout has elapsed before the slot became available, {@code true} otherwise
+   */
+  public <V> boolean notify(final long key, final V ev, long timeout, TimeUnit unit) throws InterruptedException {
+    checkNotNull(key, ev);
+
+    Lanes.Lane lane = lane(key);
+    if (!lanes.claimSlot(lane, timeout, unit)) {
+      return false;
+    }
+
+    lanes.enqueue(lane, null, key, ev, Lanes.OBJECT_EVENT, 0);
+    return true;
+  }
+
+  public <V> LongFirehose on(final long key, final LongKeyedConsumer<V> consumer) {
+    consumerRegistry.register(key, consumer);
+    return this;
+  }
+
+  public <V> LongFirehose on(final long key, final Consumer<V> consumer) {
+    consumerRegistry.register(key, new LongKeyedConsumer<V>() {
+      @Override
+      public void accept(long key, V value) {
+        consumer.accept(value);
+      }
+    });
+    return this;
+  }
+
+  public boolean unregister(long key) {
+    return consumerRegistry.unregister(key);
+  }
+
+  public LongRegistry getConsumerRegistry() {
+    return this.consumerRegistry;
+  }
+
+  /**
+   * Exports the LongFirehose metrics to the given registry under the given name,
+   * see {@link FirehoseMetrics} for the list of metrics. The errors of all the consumers
+   * are counted together.
+   */
+  public LongFirehose instrument(MetricRegistry metricRegistry, String name) {
+    return instrument(metricRegistry, name, null);
+  }
+
+  /**
+   * Exports the LongFirehose metrics to the given registry under the given name, also counting
+   * the errors of the consumers by the name the given function gives their key. Every name
+   * gets a counter that stays in the registry, so the names should be few, such as the type
+   * of the entity the key stands for.
+   */
+  public LongFirehose instrument(MetricRegistry metricRegistry,
+                                 String name,
+                                 LongFunction<String> errorNames) {
+    this.errorNames = errorNames;
+    FirehoseMetrics metrics = new FirehoseMetrics(metricRegistry, name);
+    metrics.gauge("capacity", (Gauge<Long>) lanes::capacity);
+    metrics.gauge("registry.size", (Gauge<Long>) () -> (long) consumerRegistry.size());
+    lanes.instrument(metrics);
+    return this;
+  }
+
+  public void shutdown() {
+    lanes.shutdown();
+  }
+
+  /**
+   * Routes the key the same way {@link Firehose} routes the boxed key.
+   */
+  private Lanes.Lane lane(final long key) {
+    return lanes.lane((int) (key ^ (key >>> 32)));
+  }
+
+  private void dispatch(final Object key, final long longKey, final Object ev, final byte kind, final long bits) {
+    dispatch(consumerRegistry.select(longKey), longKey, ev);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void dispatch(final LongKeyedConsumer[] consumers, final long key, final Object ev) {
+    if (consumers.length == 0) {
+      FirehoseMetrics metrics = lanes.metrics();
+      if (metrics != null) {
+        metrics.keyMiss();
+      }
+      return;
+    }
+
+    for (LongKeyedConsumer consumer : consumers) {
+      try {
+        consumer.accept(key, ev);
+      } catch (Throwable inner) {
+        FirehoseMetrics metrics = lanes.metrics();
+        if (metrics != null) {
+          LongFunction<String> names = errorNames;
+          if (names == null) {
+            metrics.error();
+          } else {
+            metrics.error(names.apply(key));
+          }
+        }
+        errorHandler.accept(inner);
+      }
+    }
+  }
+
+  private static void checkNotNull(final long key, final Object ev) {
+    if (ev == null) {
+      throw new IllegalArgumentException("Event cannot be null for key " + key);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package reactor.pipe;
+
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.consumer.KeyedLongConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.operation.LongSlidingWindow;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongUnaryOperator;
+import java.util.function.ObjLongConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Pipe of primitive {@code long} values, such as counters, that never boxes them. Values are
+ * notified with {@link Firehose#notifyLong(Object, long)}, see {@link DoublePipe} for the details.
+ */
+public final class LongPipe {
+
+  private final Function<ObjLongConsumer<Key>, KeyedConsumer<Key, Number>> source;
+  private final PVector<UnaryOperator<ObjLongConsumer<Key>>>               stages;
+
+  LongPipe(Function<ObjLongConsumer<Key>, KeyedConsumer<Key, Number>> source) {
+    this(source, TreePVector.empty());
+  }
+
+  private LongPipe(Function<ObjLongConsumer<Key>, KeyedConsumer<Key, Number>> source,
+                   PVector<UnaryOperator<ObjLongConsumer<Key>>> stages) {
+    this.source = source;
+    this.stages = stages;
+  }
+
+  public static LongPipe build() {
+    return new LongPipe(head -> (KeyedLongConsumer<Key>) head::accept);
+  }
+
+  public LongPipe map(LongUnaryOperator mapper) {
+    return next(downstream -> (key, value) -> downstream.accept(key, mapper.applyAsLong(value)));
+  }
+
+  public DoublePipe mapToDouble(LongToDoubleFunction mapper) {
+    return new DoublePipe(downstream -> compile((key, value) -> downstream.accept(key, mapper.applyAsDouble(value))));
+  }
+
+  public LongPipe filter(LongPredicate predicate) {
+    return next(downstream -> (key, value) -> {
+      if (predicate.test(value)) {
+        downstream.accept(key, value);
+      }
+    });
+  }
+
+  /**
+   * Emits the running accumulation of the values, updated with a compare-and-set, so the
+   * accumulator has to be free of side effects.
+   */
+  public LongPipe scan(LongBinaryOperator accumulator, long init) {
+    return next(downstream -> {
+      AtomicLong acc = new AtomicLong(init);
+      return (key, value) -> downstream.accept(key, acc.accumulateAndGet(value, accumulator));
+    });
+  }
+
+  /**
+   * Emits the sum of the last {@code size} values, see {@link LongSlidingWindow}.
+   */
+  public LongPipe slidingSum(int size) {
+    return window(size, LongSlidingWindow::sum);
+  }
+
+  public LongPipe slidingMin(int size) {
+    return window(size, LongSlidingWindow::min);
+  }
+
+  public LongPipe slidingMax(int size) {
+    return window(size, LongSlidingWindow::max);
+  }
+
+  public IPipe.PipeEnd<Long, Long> consume(LongConsumer consumer) {
+    return consume((key, value) -> consumer.accept(value));
+  }
+
+  public IPipe.PipeEnd<Long, Long> consume(ObjLongConsumer<Key> consumer) {
+    return new PrimitivePipeEnd<>(() -> compile(consumer));
+  }
+
+  private LongPipe window(int size, IntFunction<LongSlidingWindow> window) {
+    return next(downstream -> {
+      LongSlidingWindow values = window.apply(size);
+      return (key, value) -> downstream.accept(key, values.add(value));
+    });
+  }
+
+  private LongPipe next(UnaryOperator<ObjLongConsumer<Key>> stage) {
+    return new LongPipe(source, stages.plus(stage));
+  }
+
+  /**
+   * Wraps the sink into the stages, last stage goes first, each stage getting its own state.
+   */
+  private KeyedConsumer<Key, Number> compile(ObjLongConsumer<Key> sink) {
+    ObjLongConsumer<Key> downstream = sink;
+    for (int i = stages.size() - 1; i >= 0; i--) {
+      downstream = stages.get(i).apply(downstream);
+    }
+    return source.apply(downstream);
+  }
+}
@@ -3,18 +3,43 @@ package reactor.pipe;
 import org.pcollections.PVector;
 import org.pcollections.TreePVector;
 import reactor.fn.*;
+import reactor.fn.tuple.Tuple2;
 import reactor.pipe.concurrent.Atom;
 import reactor.pipe.consumer.KeyedConsumer;
 import reactor.pipe.key.Key;
+import reactor.pipe.operation.BufferOperation;
+import reactor.pipe.operation.CountWindowOperation;
+import reactor.pipe.operation.EventTimeWindowOperation;
+import reactor.pipe.operation.GroupByOperation;
+import reactor.pipe.operation.JoinOperation;
+import reactor.pipe.operation.MapAsyncOperation;
+import reactor.pipe.operation.ParallelOperation;
 import reactor.pipe.operation.PartitionOperation;
+import reactor.pipe.operation.SessionWindowOperation;
+import reactor.pipe.operation.SketchOperation;
+import reactor.pipe.operation.SlidingAggregateOperation;
+import reactor.pipe.operation.SlidingExtremumOperation;
+import reactor.pipe.operation.TimeWindowOperation;
 import reactor.pipe.operation.SlidingWindowOperation;
+import reactor.pipe.sketch.CountMinSketch;
+import reactor.pipe.sketch.HyperLogLog;
+import reactor.pipe.sketch.TDigest;
+import reactor.pipe.sketch.TopK;
 import reactor.pipe.state.DefaultStateProvider;
 import reactor.pipe.state.StateProvider;
+import reactor.pipe.stream.EventTime;
+import reactor.pipe.stream.FusableStreamSupplier;
 import reactor.pipe.stream.StreamSupplier;
+import reactor.pipe.timer.Timeout;
+import reactor.pipe.timer.TimingWheel;
 
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToDoubleFunction;
 
 public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
 
@@ -33,13 +58,12 @@ public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
 
   @SuppressWarnings(value = {"unchecked"})
   public <NEXT> IPipe<INIT, NEXT> map(Function<CURRENT, NEXT> mapper) {
-    return next(new StreamSupplier<Key, CURRENT>() {
+    return next(new FusableStreamSupplier<Key, CURRENT>() {
       @Override
-      public KeyedConsumer<Key, CURRENT> get(Key src,
-                                             Key dst,
-                                             Firehose firehose) {
+      public KeyedConsumer<Key, CURRENT> fuse(Key src,
+                                              KeyedConsumer<Key, Object> downstream) {
         return (key, value) -> {
-          firehose.notify(dst.clone(key), mapper.apply(value));
+          downstream.accept(key, mapper.apply(value));
         };
       }
     });
@@ -47,14 +71,13 @@ public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
 
   @SuppressWarnings(value = {"unchecked"})
   public <NEXT> IPipe<INIT, NEXT> map(Supplier<Function<CURRENT, NEXT>> supplier) {
-    return next(new StreamSupplier<Key, CURRENT>() {
+    return next(new FusableStreamSupplier<Key, CURRENT>() {
       @Override
-      public KeyedConsumer<Key, CURRENT> get(Key src,
-                                             Key dst,
-                                             Firehose firehose) {
+      public KeyedConsumer<Key, CURRENT> fuse(Key src,
+                                              KeyedConsumer<Key, Object> downstream) {
         Function<CURRENT, NEXT> mapper = supplier.get();
         return (key, value) -> {
-          firehose.notify(dst.clone(key), mapper.apply(value));
+          downstream.accept(key, mapper.apply(value));
         };
       }
     });
@@ -77,6 +100,24 @@ public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
     });
   }
 
+  @Override
+  public <NEXT> IPipe<INIT, NEXT> mapAsync(Function<CURRENT, ? extends CompletionStage<NEXT>> mapper,
+                                           int maxInFlight,
+                                           boolean ordered) {
+    return next(new StreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> get(Key src,
+                                             Key dst,
+                                             Firehose firehose) {
+        return new MapAsyncOperation<>(firehose,
+                                       mapper,
+                                       maxInFlight,
+                                       ordered,
+                                       dst);
+      }
+    });
+  }
+
   @SuppressWarnings(value = {"unchecked"})
   public <ST> IPipe<INIT, ST> scan(BiFunction<ST, CURRENT, ST> mapper,
                                    ST init) {
@@ -101,20 +142,19 @@ public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
       @Override
       public KeyedConsumer<Key, CURRENT> get(Key src, Key dst, Firehose firehose) {
         final Atom<CURRENT> debounced = stateProvider.makeAtom(src, null);
-        final AtomicReference<Pausable> pausable = new AtomicReference<>(null);
+        final AtomicReference<Timeout> scheduled = new AtomicReference<>(null);
+        final TimingWheel timingWheel = firehose.getTimingWheel(src);
+        final Consumer<Long> emit = (v) -> firehose.notify(dst, debounced.deref());
 
         return (key, value) -> {
           debounced.update(current -> value);
 
-          if (pausable.get() == null) {
-            pausable.set(
-              firehose.getTimer().submit(new Consumer<Long>() {
-                @Override
-                public void accept(Long v) {
-                  firehose.notify(dst, debounced.deref());
-                  pausable.set(null);
-                }
-              }, period, timeUnit));
+          Timeout timeout = scheduled.get();
+          if (timeout == null || !timeout.isPending()) {
+            Timeout next = timingWheel.schedule(emit, period, timeUnit);
+            if (!scheduled.compareAndSet(timeout, next)) {
+              next.cancel();
+            }
           }
         };
       }
@@ -127,23 +167,25 @@ public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
       @Override
       public KeyedConsumer<Key, CURRENT> get(Key src, Key dst, Firehose firehose) {
         final Atom<CURRENT> debounced = stateProvider.makeAtom(src, null);
-        final AtomicReference<Pausable> pausable = new AtomicReference<>(null);
+        final AtomicReference<Timeout> scheduled = new AtomicReference<>(null);
+        final TimingWheel timingWheel = firehose.getTimingWheel(src);
+        final Consumer<Long> emit = (v) -> firehose.notify(dst, debounced.deref());
 
         return (key, value) -> {
-          Pausable oldScheduled = pausable.getAndUpdate((p) -> null);
-          if (oldScheduled != null) {
-            oldScheduled.cancel();
-          }
-
           debounced.update(current -> value);
 
-          pausable.set(firehose.getTimer().submit(new Consumer<Long>() {
-            @Override
-            public void accept(Long v) {
-              firehose.notify(dst, debounced.deref());
-              pausable.set(null);
+          // Pending timeout is only pushed back, a new one is scheduled once it has fired
+          for (; ; ) {
+            Timeout timeout = scheduled.get();
+            if (timeout != null && timeout.reschedule(period, timeUnit)) {
+              return;
             }
-          }, period, timeUnit));
+            Timeout next = timingWheel.schedule(emit, period, timeUnit);
+            if (scheduled.compareAndSet(timeout, next)) {
+              return;
+            }
+            next.cancel();
+          }
         };
       }
     });
@@ -151,15 +193,28 @@ public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
 
   @SuppressWarnings(value = {"unchecked"})
   public IPipe<INIT, CURRENT> filter(Predicate<CURRENT> predicate) {
+    return next(new FusableStreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> fuse(Key src,
+                                              KeyedConsumer<Key, Object> downstream) {
+        return (key, value) -> {
+          if (predicate.test(value)) {
+            downstream.accept(key, value);
+          }
+        };
+      }
+    });
+  }
+
+  @SuppressWarnings(value = {"unchecked"})
+  public IPipe<INIT, CURRENT> async() {
     return next(new StreamSupplier<Key, CURRENT>() {
       @Override
       public KeyedConsumer<Key, CURRENT> get(Key src,
                                              Key dst,
                                              Firehose firehose) {
         return (key, value) -> {
-          if (predicate.test(value)) {
-            firehose.notify(dst.clone(key), value);
-          }
+          firehose.notify(dst.clone(key), value);
         };
       }
     });
@@ -182,6 +237,274 @@ public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
     });
   }
 
+  @Override
+  public IPipe<INIT, List<CURRENT>> slide(int size) {
+    return next(new StreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> get(Key src,
+                                             Key dst,
+                                             Firehose firehose) {
+        return new CountWindowOperation<>(firehose,
+                                          size,
+                                          dst);
+      }
+    });
+  }
+
+  @Override
+  public <A> IPipe<INIT, A> slide(int size,
+                                  A init,
+                                  BiFunction<A, CURRENT, A> add,
+                                  BiFunction<A, CURRENT, A> remove) {
+    return next(new StreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> get(Key src,
+                                             Key dst,
+                                             Firehose firehose) {
+        return new SlidingAggregateOperation<>(firehose,
+                                               size,
+                                               init,
+                                               add,
+                                               remove,
+                                               dst);
+      }
+    });
+  }
+
+  @Override
+  public IPipe<INIT, Double> slidingSum(int size, ToDoubleFunction<CURRENT> value) {
+    return slide(size,
+                 0.0,
+                 (sum, v) -> sum + value.applyAsDouble(v),
+                 (sum, v) -> sum - value.applyAsDouble(v));
+  }
+
+  @Override
+  public IPipe<INIT, Long> slidingCount(int size, Predicate<CURRENT> predicate) {
+    return slide(size,
+                 0L,
+                 (count, v) -> predicate.test(v) ? count + 1 : count,
+                 (count, v) -> predicate.test(v) ? count - 1 : count);
+  }
+
+  @Override
+  public IPipe<INIT, CURRENT> slidingMin(int size, Comparator<? super CURRENT> comparator) {
+    return slidingMax(size, Collections.reverseOrder(comparator));
+  }
+
+  @Override
+  public IPipe<INIT, CURRENT> slidingMax(int size, Comparator<? super CURRENT> comparator) {
+    return next(new StreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> get(Key src,
+                                             Key dst,
+                                             Firehose firehose) {
+        return new SlidingExtremumOperation<>(firehose,
+                                              size,
+                                              comparator,
+                                              dst);
+      }
+    });
+  }
+
+  @Override
+  public IPipe<INIT, Long> distinctCount(int precision) {
+    return sketch(() -> new HyperLogLog(precision),
+                  HyperLogLog::add,
+                  HyperLogLog::estimate);
+  }
+
+  @Override
+  public IPipe<INIT, List<Tuple2<CURRENT, Long>>> topK(int k,
+                                                       double epsilon,
+                                                       double delta,
+                                                       int every) {
+    if (every < 1) {
+      throw new IllegalArgumentException("Top values have to be emitted at least every event.");
+    }
+    return sketch(() -> new TopK<CURRENT>(k, CountMinSketch.withError(epsilon, delta)),
+                  TopK::add,
+                  (topK) -> topK.total() % every == 0 ? topK.top() : null);
+  }
+
+  @Override
+  public IPipe<INIT, double[]> quantiles(ToDoubleFunction<CURRENT> value,
+                                         double compression,
+                                         double... quantiles) {
+    for (double q : quantiles) {
+      if (q < 0 || q > 1) {
+        throw new IllegalArgumentException("Quantiles have to be between 0 and 1.");
+      }
+    }
+    double[] qs = quantiles.clone();
+    return sketch(() -> new Digest(compression),
+                  (digest, v) -> digest.add(value.applyAsDouble(v)),
+                  (digest) -> digest.estimates(qs));
+  }
+
+  @Override
+  public IPipe<INIT, TDigest> digest(ToDoubleFunction<CURRENT> value,
+                                     double compression,
+                                     int every) {
+    if (every < 1) {
+      throw new IllegalArgumentException("Digests have to be emitted at least every event.");
+    }
+    return sketch(() -> new Digest(compression),
+                  (digest, v) -> digest.add(value.applyAsDouble(v)),
+                  (digest) -> digest.added % every == 0 ? digest.digest.copy() : null);
+  }
+
+  @SuppressWarnings(value = {"unchecked"})
+  private <S, R> IPipe<INIT, R> sketch(Supplier<S> sketch,
+                                       BiConsumer<S, CURRENT> add,
+                                       Function<S, R> estimate) {
+    return next(new StreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> get(Key src,
+                                             Key dst,
+                                             Firehose firehose) {
+        return new SketchOperation<>(firehose,
+                                     sketch.get(),
+                                     add,
+                                     estimate,
+                                     dst);
+      }
+    });
+  }
+
+  @Override
+  public <A> IPipe<INIT, A> window(long size,
+                                   TimeUnit unit,
+                                   A init,
+                                   BiFunction<A, CURRENT, A> reducer) {
+    return window(size, size, unit, init, reducer, null);
+  }
+
+  @Override
+  public <A> IPipe<INIT, A> window(long size,
+                                   long slide,
+                                   TimeUnit unit,
+                                   A init,
+                                   BiFunction<A, CURRENT, A> reducer) {
+    return window(size, slide, unit, init, reducer, null);
+  }
+
+  @Override
+  public <A> IPipe<INIT, A> window(long size,
+                                   long slide,
+                                   TimeUnit unit,
+                                   A init,
+                                   BiFunction<A, CURRENT, A> reducer,
+                                   BiFunction<A, A, A> combiner) {
+    return next(new StreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> get(Key src,
+                                             Key dst,
+                                             Firehose firehose) {
+        return new TimeWindowOperation<>(firehose,
+                                         firehose.getTimingWheel(src),
+                                         size,
+                                         slide,
+                                         unit,
+                                         init,
+                                         reducer,
+                                         combiner,
+                                         dst);
+      }
+    });
+  }
+
+  @Override
+  public <A> IPipe<INIT, A> window(EventTime<CURRENT> eventTime,
+                                   long size,
+                                   TimeUnit unit,
+                                   A init,
+                                   BiFunction<A, CURRENT, A> reducer) {
+    return window(eventTime, size, size, unit, init, reducer);
+  }
+
+  @Override
+  public <A> IPipe<INIT, A> window(EventTime<CURRENT> eventTime,
+                                   long size,
+                                   long slide,
+                                   TimeUnit unit,
+                                   A init,
+                                   BiFunction<A, CURRENT, A> reducer) {
+    return next(new StreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> get(Key src,
+                                             Key dst,
+                                             Firehose firehose) {
+        return new EventTimeWindowOperation<>(firehose,
+                                              eventTime,
+                                              size,
+                                              slide,
+                                              unit,
+                                              init,
+                                              reducer,
+                                              dst);
+      }
+    });
+  }
+
+  @Override
+  public <A> IPipe<INIT, A> session(long gap,
+                                    TimeUnit unit,
+                                    BiFunction<A, CURRENT, A> reducer,
+                                    A init) {
+    return next(new StreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> get(Key src,
+                                             Key dst,
+                                             Firehose firehose) {
+        return new SessionWindowOperation<>(firehose,
+                                            firehose.getTimingWheel(src),
+                                            gap,
+                                            unit,
+                                            reducer,
+                                            init,
+                                            dst);
+      }
+    });
+  }
+
+  @Override
+  public <G> GroupedPipe<INIT, G, CURRENT> groupBy(Function<CURRENT, G> keyFn) {
+    return new Grouped<>(keyFn, 0);
+  }
+
+  @Override
+  public ParallelPipe<INIT, CURRENT> parallel(int n) {
+    return new Parallel<>(n, TreePVector.empty());
+  }
+
+  @Override
+  public <R, J, O> IPipe<INIT, O> join(Key other,
+                                       Function<CURRENT, J> joinKey,
+                                       Function<R, J> otherJoinKey,
+                                       long window,
+                                       TimeUnit unit,
+                                       int maxBuffered,
+                                       BiFunction<CURRENT, R, O> joiner) {
+    return next(new StreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> get(Key src,
+                                             Key dst,
+                                             Firehose firehose) {
+        return new JoinOperation<Key, Key, CURRENT, R, J, O>(firehose,
+                                                             firehose.getTimingWheel(src),
+                                                             joinKey,
+                                                             otherJoinKey,
+                                                             joiner,
+                                                             window,
+                                                             unit,
+                                                             maxBuffered,
+                                                             dst,
+                                                             other);
+      }
+    });
+  }
+
   @SuppressWarnings(value = {"unchecked"})
   public IPipe<INIT, List<CURRENT>> partition(Predicate<List<CURRENT>> emit) {
     return next(new StreamSupplier<Key, CURRENT>() {
@@ -199,6 +522,23 @@ public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
     });
   }
 
+  @Override
+  public IPipe<INIT, List<CURRENT>> buffer(int maxSize, long maxDelay, TimeUnit unit) {
+    return next(new StreamSupplier<Key, CURRENT>() {
+      @Override
+      public KeyedConsumer<Key, CURRENT> get(Key src,
+                                             Key dst,
+                                             Firehose firehose) {
+        return new BufferOperation<>(firehose,
+                                     firehose.getTimingWheel(src),
+                                     maxSize,
+                                     maxDelay,
+                                     unit,
+                                     dst);
+      }
+    });
+  }
+
   /**
    * STREAM ENDS
    */
@@ -230,6 +570,14 @@ public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
   }
 
 
+  @Override
+  public PipeEnd<INIT, List<CURRENT>> consumeBatch(int maxSize,
+                                                   long maxDelay,
+                                                   TimeUnit unit,
+                                                   Consumer<List<CURRENT>> consumer) {
+    return buffer(maxSize, maxDelay, unit).consume(consumer);
+  }
+
   @SuppressWarnings(value = {"unchecked"})
   public <SRC extends Key> PipeEnd consume(Supplier<KeyedConsumer<SRC, CURRENT>> supplier) {
     return end(new StreamSupplier<SRC, CURRENT>() {
@@ -247,6 +595,141 @@ public class Pipe<INIT, CURRENT> implements IPipe<INIT, CURRENT> {
     return new Pipe<>();
   }
 
+  public static <A> IPipe<A, A> build(StateProvider<Key> stateProvider) {
+    return new Pipe<>(TreePVector.empty(), stateProvider);
+  }
+
+  /**
+   * Digest of the values of a key, with the estimates last read from it. Reading the quantiles
+   * merges the buffered values into the centroids, which costs as much as the compression, so
+   * the estimates are only read again once the number of values added since has doubled, or
+   * grown by the compression. That keeps the cost per event constant, and the estimates at most
+   * {@code compression} values behind.
+   */
+  private static final class Digest {
+    private final TDigest digest;
+    private final long    refresh;
+    private long          added;
+    private long          estimatedAt;
+    private double[]      estimates;
+
+    private Digest(double compression) {
+      this.digest = new TDigest(compression);
+      this.refresh = (long) Math.ceil(compression);
+    }
+
+    private void add(double value) {
+      digest.add(value);
+      added++;
+    }
+
+    private double[] estimates(double[] quantiles) {
+      if (estimates == null || added - estimatedAt >= Math.min(refresh, estimatedAt)) {
+        estimates = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+          estimates[i] = digest.quantile(quantiles[i]);
+        }
+        estimatedAt = added;
+      }
+      return estimates.clone();
+    }
+  }
+
+  private class Grouped<G> implements GroupedPipe<INIT, G, CURRENT> {
+    private final Function<CURRENT, G> keyFn;
+    private final long                 idleMillis;
+
+    private Grouped(Function<CURRENT, G> keyFn, long idleMillis) {
+      this.keyFn = keyFn;
+      this.idleMillis = idleMillis;
+    }
+
+    @Override
+    public GroupedPipe<INIT, G, CURRENT> evictIdle(long duration, TimeUnit unit) {
+      return new Grouped<>(keyFn, Math.max(1, unit.toMillis(duration)));
+    }
+
+    @Override
+    public IPipe<INIT, Tuple2<G, CURRENT>> reduce(BiFunction<CURRENT, CURRENT, CURRENT> reducer) {
+      return aggregate((CURRENT acc, CURRENT value) -> acc == null ? value : reducer.apply(acc, value),
+                       null);
+    }
+
+    @Override
+    public <A> IPipe<INIT, Tuple2<G, A>> aggregate(BiFunction<A, CURRENT, A> aggregator,
+                                                   A init) {
+      return next(new StreamSupplier<Key, CURRENT>() {
+        @Override
+        public KeyedConsumer<Key, CURRENT> get(Key src,
+                                               Key dst,
+                                               Firehose firehose) {
+          return new GroupByOperation<>(firehose,
+                                        firehose.getTimingWheel(src),
+                                        keyFn,
+                                        aggregator,
+                                        init,
+                                        idleMillis,
+                                        dst);
+        }
+      });
+    }
+  }
+
+  private class Parallel<V> implements ParallelPipe<INIT, V> {
+    private final int                            n;
+    private final PVector<FusableStreamSupplier> stages;
+
+    private Parallel(int n, PVector<FusableStreamSupplier> stages) {
+      this.n = n;
+      this.stages = stages;
+    }
+
+    @Override
+    @SuppressWarnings(value = {"unchecked"})
+    public <NEXT> ParallelPipe<INIT, NEXT> map(Function<V, NEXT> mapper) {
+      return new Parallel<>(n, stages.plus((src, downstream) -> (key, value) -> {
+        downstream.accept(key, mapper.apply((V) value));
+      }));
+    }
+
+    @Override
+    @SuppressWarnings(value = {"unchecked"})
+    public ParallelPipe<INIT, V> filter(Predicate<V> predicate) {
+      return new Parallel<>(n, stages.plus((src, downstream) -> (key, value) -> {
+        if (predicate.test((V) value)) {
+          downstream.accept(key, value);
+        }
+      }));
+    }
+
+    @Override
+    public IPipe<INIT, V> sequential() {
+      return sequential(false);
+    }
+
+    @Override
+    @SuppressWarnings(value = {"unchecked"})
+    public IPipe<INIT, V> sequential(boolean ordered) {
+      return next(new StreamSupplier<Key, CURRENT>() {
+        @Override
+        public KeyedConsumer<Key, CURRENT> get(Key src,
+                                               Key dst,
+                                               Firehose firehose) {
+          ParallelOperation<Key, Key, CURRENT> parallel = new ParallelOperation<>(firehose,
+                                                                                  n,
+                                                                                  ordered,
+                                                                                  dst);
+          KeyedConsumer<Key, Object> downstream = parallel.merge();
+          for (int i = stages.size() - 1; i >= 0; i--) {
+            downstream = stages.get(i).fuse(src, downstream);
+          }
+          parallel.subscribe(downstream);
+          return parallel;
+        }
+      });
+    }
+  }
+
   protected <NEXT> Pipe<INIT, NEXT> next(StreamSupplier supplier) {
     return new Pipe<>(suppliers.plus(supplier),
                       stateProvider);
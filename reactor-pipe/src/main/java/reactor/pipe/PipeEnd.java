@@ -6,6 +6,8 @@ import reactor.fn.Function;
 import reactor.pipe.consumer.KeyedConsumer;
 import reactor.pipe.key.Key;
 import reactor.pipe.selector.Selector;
+import reactor.pipe.stream.FusableStreamSupplier;
+import reactor.pipe.stream.SideConsumers;
 import reactor.pipe.stream.StreamSupplier;
 
 import java.util.LinkedHashMap;
@@ -25,12 +27,10 @@ public class PipeEnd<INIT, FINAL> implements IPipe.PipeEnd<INIT, FINAL> {
 
 
   @Override
+  @SuppressWarnings(value = {"unchecked"})
   public void subscribe(Key key, Firehose<Key> firehose) {
-    Key currentKey = key;
-    for (StreamSupplier supplier : suppliers) {
-      Key nextKey = currentKey.derive();
-      firehose.on(currentKey, supplier.get(currentKey, nextKey, firehose));
-      currentKey = nextKey;
+    for (Map.Entry<Key, KeyedConsumer> entry : compile(key, firehose).entrySet()) {
+      firehose.on(entry.getKey(), entry.getValue());
     }
   }
 
@@ -44,16 +44,77 @@ public class PipeEnd<INIT, FINAL> implements IPipe.PipeEnd<INIT, FINAL> {
     return new Function<Key, Map<Key, KeyedConsumer>>() {
       @Override
       public Map<Key, KeyedConsumer> apply(Key key) {
-        Map<Key, KeyedConsumer> consumers = new LinkedHashMap<>();
+        return compile(key, firehose);
+      }
+    };
+  }
+
+  /**
+   * Compiles the stages into the consumers that have to be registered. Every stateless stage
+   * is fused with the stage following it, so a run of stateless stages ends up as a single
+   * consumer, registered under the key of the first stage of the run. Only the stages that
+   * notify the next key through the {@link Firehose} cause a registration of the next stage.
+   * The {@link SideConsumers} of the stages are registered along with them.
+   */
+  @SuppressWarnings(value = {"unchecked"})
+  private Map<Key, KeyedConsumer> compile(Key key, Firehose firehose) {
+    int stages = suppliers.size();
+    Key[] keys = new Key[stages + 1];
+    keys[0] = key;
+    for (int i = 0; i < stages; i++) {
+      keys[i + 1] = keys[i].derive();
+    }
+
+    // Last stage goes first, so that the downstream consumer is there by the time it's fused
+    KeyedConsumer[] consumers = new KeyedConsumer[stages];
+    boolean[] fused = new boolean[stages];
+    for (int i = stages - 1; i >= 0; i--) {
+      StreamSupplier supplier = suppliers.get(i);
+      if (supplier instanceof FusableStreamSupplier && i < stages - 1) {
+        fused[i] = true;
+        consumers[i] = ((FusableStreamSupplier) supplier).fuse(keys[i],
+                                                               downstream(keys[i + 1],
+                                                                          consumers[i + 1],
+                                                                          fused[i + 1]));
+      } else {
+        consumers[i] = supplier.get(keys[i], keys[i + 1], firehose);
+      }
+    }
 
-        Key currentKey = key;
-        for (StreamSupplier supplier : suppliers) {
-          Key nextKey = currentKey.derive();
-          consumers.put(currentKey, supplier.get(currentKey, nextKey, firehose));
-          currentKey = nextKey;
+    Map<Key, KeyedConsumer> registrations = new LinkedHashMap<>();
+    for (int i = 0; i < stages; i++) {
+      if (i == 0 || !fused[i - 1]) {
+        registrations.put(keys[i], consumers[i]);
+      }
+    }
+    for (int i = 0; i < stages; i++) {
+      if (consumers[i] instanceof SideConsumers) {
+        for (Map.Entry<Key, KeyedConsumer> side : ((SideConsumers) consumers[i]).sideConsumers().entrySet()) {
+          registrations.merge(side.getKey(), side.getValue(), PipeEnd::both);
         }
-        return consumers;
       }
+    }
+    return registrations;
+  }
+
+  @SuppressWarnings(value = {"unchecked"})
+  private static KeyedConsumer both(KeyedConsumer first, KeyedConsumer second) {
+    // Several stages consuming the same key share a single registration
+    return (key, value) -> {
+      first.accept(key, value);
+      second.accept(key, value);
     };
   }
+
+  @SuppressWarnings(value = {"unchecked"})
+  private static KeyedConsumer<Key, Object> downstream(Key dst,
+                                                       KeyedConsumer consumer,
+                                                       boolean fused) {
+    if (fused) {
+      // Fused stages ignore the key and pass it on as is
+      return consumer;
+    }
+    // The rest expect the key they'd be notified with
+    return (key, value) -> consumer.accept(dst.clone(key), value);
+  }
 }
@@ -0,0 +1,38 @@
+package reactor.pipe;
+
+import reactor.fn.Function;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.selector.Selector;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * End of a primitive pipe, which registers the single consumer all the stages of the pipe
+ * are fused into. Every subscribed key gets its own consumer, and so its own state.
+ */
+class PrimitivePipeEnd<INIT, FINAL> implements IPipe.PipeEnd<INIT, FINAL> {
+
+  private final Supplier<KeyedConsumer<Key, Number>> compile;
+
+  PrimitivePipeEnd(Supplier<KeyedConsumer<Key, Number>> compile) {
+    this.compile = compile;
+  }
+
+  @Override
+  public void subscribe(Key key, Firehose<Key> firehose) {
+    firehose.on(key, compile.get());
+  }
+
+  @Override
+  public void subscribe(Selector<Key> matcher, Firehose<Key> firehose) {
+    firehose.on(matcher, new Function<Key, Map<Key, KeyedConsumer>>() {
+      @Override
+      public Map<Key, KeyedConsumer> apply(Key key) {
+        return Collections.singletonMap(key, compile.get());
+      }
+    });
+  }
+}
@@ -14,8 +14,8 @@ import java.util.concurrent.locks.LockSupport;
  */
 public class Atom<T> {
 
-  private final AtomicReference<T> ref;
-  private final Consumer<T>        newValueConsumer;
+  protected final AtomicReference<T> ref;
+  protected final Consumer<T>        newValueConsumer;
 
   public Atom(T ref) {
     this(ref, null);
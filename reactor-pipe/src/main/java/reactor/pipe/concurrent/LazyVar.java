@@ -34,4 +34,11 @@ public class LazyVar<T> {
     }
     return this.ref.get();
   }
+
+  /**
+   * @return {@code true} if the value was, or is being, computed
+   */
+  public boolean isSet() {
+    return isSet.get();
+  }
 }
@@ -0,0 +1,55 @@
+package reactor.pipe.concurrent;
+
+import reactor.fn.Consumer;
+import reactor.fn.Function;
+import reactor.fn.UnaryOperator;
+import reactor.fn.tuple.Tuple2;
+
+/**
+ * Atom that is only ever updated from a single thread, for example by the consumers
+ * of a sharded {@link reactor.pipe.Firehose}, where all the events for the key are dispatched
+ * by the same lane. Updates skip the compare-and-swap loop, reads from other threads
+ * are still safe.
+ */
+public class SingleWriterAtom<T> extends Atom<T> {
+
+  public SingleWriterAtom(T ref) {
+    super(ref);
+  }
+
+  public SingleWriterAtom(T ref,
+                          Consumer<T> newValueConsumer) {
+    super(ref, newValueConsumer);
+  }
+
+  @Override
+  public T update(UnaryOperator<T> swapOp) {
+    T old = ref.get();
+    T newv = swapOp.apply(old);
+    ref.lazySet(newv);
+    if (newValueConsumer != null && !newv.equals(old)) {
+      newValueConsumer.accept(newv);
+    }
+    return newv;
+  }
+
+  @Override
+  public T updateAndReturnOld(UnaryOperator<T> swapOp) {
+    T old = ref.get();
+    ref.lazySet(swapOp.apply(old));
+    return old;
+  }
+
+  @Override
+  public <O> O updateAndReturnOther(Function<T, Tuple2<T, O>> swapOp) {
+    Tuple2<T, O> newvtuple = swapOp.apply(ref.get());
+    ref.lazySet(newvtuple.getT1());
+    return newvtuple.getT2();
+  }
+
+  @Override
+  public T reset(T newv) {
+    ref.lazySet(newv);
+    return newv;
+  }
+}
@@ -0,0 +1,17 @@
+package reactor.pipe.consumer;
+
+/**
+ * {@link KeyedConsumer} of primitive {@code double} events, which
+ * {@link reactor.pipe.Firehose#notifyDouble(Object, double)} dispatches without boxing.
+ * Boxed events notified the usual way are unboxed.
+ */
+@FunctionalInterface
+public interface KeyedDoubleConsumer<K> extends KeyedConsumer<K, Number> {
+
+  void acceptDouble(K key, double value);
+
+  @Override
+  default void accept(K key, Number value) {
+    acceptDouble(key, value.doubleValue());
+  }
+}
@@ -0,0 +1,18 @@
+package reactor.pipe.consumer;
+
+/**
+ * {@link KeyedConsumer} of primitive {@code long} events, which
+ * {@link reactor.pipe.Firehose#notifyLong(Object, long)} dispatches without boxing.
+ * Boxed events notified the usual way are unboxed. Not to be confused with
+ * {@link LongKeyedConsumer}, which is keyed by a {@code long}.
+ */
+@FunctionalInterface
+public interface KeyedLongConsumer<K> extends KeyedConsumer<K, Number> {
+
+  void acceptLong(K key, long value);
+
+  @Override
+  default void accept(K key, Number value) {
+    acceptLong(key, value.longValue());
+  }
+}
@@ -0,0 +1,9 @@
+package reactor.pipe.consumer;
+
+/**
+ * {@link KeyedConsumer} of the events keyed by a primitive {@code long}.
+ */
+@FunctionalInterface
+public interface LongKeyedConsumer<V> {
+  void accept(long key, V value);
+}
@@ -1,12 +1,23 @@
 package reactor.pipe.key;
 
 import java.util.Arrays;
-import java.util.UUID;
-
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Key is immutable, so its hash is calculated once. Parts of the key are never copied on
+ * {@link #clone(Key)} or {@link #withMetadata(Object)}, since only the metadata differs between
+ * the events.
+ */
 public class Key {
 
+  // Derived parts only have to be unique within the process, counting from a random start
+  // keeps them apart from the ones of the other processes sharing the state
+  private static final AtomicLong DERIVED_IDS = new AtomicLong(ThreadLocalRandom.current().nextLong());
+
   private final Object[] parts;
-  private final boolean isDerived;
+  private final int      hash;
+  private final boolean  isDerived;
   private volatile Object metadata;
 
   public Key(Object[] parts) {
@@ -14,16 +25,33 @@ public class Key {
   }
 
   protected Key(Object[] parts, boolean isDerived, Object metadata) {
+    this(parts, parts != null ? Arrays.hashCode(parts) : 0, isDerived, metadata);
+  }
+
+  private Key(Object[] parts, int hash, boolean isDerived, Object metadata) {
     this.parts = parts;
+    this.hash = hash;
     this.isDerived = isDerived;
     this.metadata = metadata;
   }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * @deprecated keys are shared between the events by {@link #clone(Key)}, so setting the
+   * metadata of a key that was notified changes the metadata of the other events too, use
+   * {@link #withMetadata(Object)} instead
+   */
+  @Deprecated
   public <T> void setMetadata(T metadata) {
     this.metadata = metadata;
   }
 
+  /**
+   * @return key with the same parts and the given metadata
+   */
+  public <T> Key withMetadata(T metadata) {
+    return new Key(parts, hash, isDerived, metadata);
+  }
+
   @SuppressWarnings("unchecked")
   public <T> T getMetadata() {
     return (T) metadata;
@@ -32,7 +60,7 @@ public class Key {
   public Key derive() {
     Object[] newKey = new Object[parts.length + 1];
     System.arraycopy(parts, 0, newKey, 0, parts.length);
-    newKey[parts.length] = UUID.randomUUID();
+    newKey[parts.length] = DERIVED_IDS.incrementAndGet();
     return new Key(newKey, true, metadata);
   }
 
@@ -47,15 +75,22 @@ public class Key {
     }
   }
 
+  /**
+   * Returns the key with the metadata of the {@code metadataSource}. When the metadata is
+   * the same already, the key itself is returned, so the returned key may be shared with
+   * other events.
+   */
   public Key clone(Key metadataSource) {
-    Key k = Key.wrap(parts);
-    k.setMetadata(metadataSource.getMetadata());
-    return k;
+    Object newMetadata = metadataSource.getMetadata();
+    if (newMetadata == metadata && getClass() == Key.class) {
+      return this;
+    }
+    return new Key(parts, hash, isDerived, newMetadata);
   }
 
   @Override
   public Key clone() {
-    return Key.wrap(parts);
+    return new Key(parts, hash, isDerived, null);
   }
 
   public boolean isDerivedFrom(Key other) {
@@ -84,6 +119,9 @@ public class Key {
 
     Key key = (Key) o;
 
+    if (hash != key.hash)
+      return false;
+
     // Probably incorrect - comparing Object[] arrays with Arrays.equals
     if (!Arrays.equals(parts, key.parts))
       return false;
@@ -93,7 +131,7 @@ public class Key {
 
   @Override
   public int hashCode() {
-    return parts != null ? Arrays.hashCode(parts) : 0;
+    return hash;
   }
 
   public static Key wrap(Object k) {
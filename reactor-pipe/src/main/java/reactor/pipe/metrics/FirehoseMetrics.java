@@ -0,0 +1,82 @@
+package reactor.pipe.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dropwizard Metrics instrumentation of a {@link reactor.pipe.Firehose}, registered under the given name:
+ *
+ * <ul>
+ * <li>{@code notify} - rate of the notified events</li>
+ * <li>{@code dispatch} - latency from the enqueue of the event until all of its consumers complete</li>
+ * <li>{@code backpressure} - time the producers spent waiting for a free slot</li>
+ * <li>{@code capacity} - number of events that can be enqueued without waiting</li>
+ * <li>{@code registry.size} - number of registered consumers</li>
+ * <li>{@code keyMiss} - rate of the events for which no consumer was found</li>
+ * <li>{@code errors} - number of errors thrown by the consumers</li>
+ * <li>{@code errors.<name>} - number of errors thrown by the consumers of the given name, only when
+ * the Firehose is instrumented with a function naming the consumers by their key</li>
+ * </ul>
+ *
+ * Instrumenting the Firehose again under the same name replaces the gauges and keeps counting
+ * with the same meters, timers and counters.
+ */
+public class FirehoseMetrics {
+
+  private final MetricRegistry metricRegistry;
+  private final String         name;
+  private final Meter          notified;
+  private final Timer          dispatched;
+  private final Timer          backpressure;
+  private final Meter          keyMisses;
+  private final Counter        errors;
+
+  public FirehoseMetrics(MetricRegistry metricRegistry, String name) {
+    this.metricRegistry = metricRegistry;
+    this.name = name;
+    this.notified = metricRegistry.meter(MetricRegistry.name(name, "notify"));
+    this.dispatched = metricRegistry.timer(MetricRegistry.name(name, "dispatch"));
+    this.backpressure = metricRegistry.timer(MetricRegistry.name(name, "backpressure"));
+    this.keyMisses = metricRegistry.meter(MetricRegistry.name(name, "keyMiss"));
+    this.errors = metricRegistry.counter(MetricRegistry.name(name, "errors"));
+  }
+
+  public void notified(int events) {
+    notified.mark(events);
+  }
+
+  public void dispatched(long latencyNanos) {
+    dispatched.update(latencyNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void blocked(long nanos) {
+    backpressure.update(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void keyMiss() {
+    keyMisses.mark();
+  }
+
+  public void error() {
+    errors.inc();
+  }
+
+  /**
+   * @param consumer name of the failing consumer, there's a counter for every name
+   */
+  public void error(String consumer) {
+    errors.inc();
+    metricRegistry.counter(MetricRegistry.name(name, "errors", consumer)).inc();
+  }
+
+  public <T> void gauge(String gaugeName, Gauge<T> gauge) {
+    String gaugeFullName = MetricRegistry.name(name, gaugeName);
+    metricRegistry.remove(gaugeFullName);
+    metricRegistry.register(gaugeFullName, gauge);
+  }
+}
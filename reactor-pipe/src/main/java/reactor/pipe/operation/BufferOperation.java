@@ -0,0 +1,106 @@
+package reactor.pipe.operation;
+
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.timer.Timeout;
+import reactor.pipe.timer.TimingWheel;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers the events into batches of at most {@code maxSize}, emitting a batch once it's full
+ * or once {@code maxDelay} has passed since its first event, whichever comes first, so that
+ * the events of a quiet key are never held back for longer than the delay.
+ *
+ * Events are collected into an array pre-sized to {@code maxSize}, which is handed over to the
+ * downstream as the batch, a new array is only allocated with the first event of the next batch.
+ * The delay is measured by a timeout on the {@link TimingWheel}, scheduled by the first event
+ * of a batch and cancelled when the batch fills up.
+ */
+public class BufferOperation<SRC extends Key, DST extends Key, V> implements KeyedConsumer<SRC, V> {
+
+  private final Firehose    firehose;
+  private final TimingWheel timingWheel;
+  private final int         maxSize;
+  private final long        maxDelay;
+  private final TimeUnit    unit;
+  private final DST         destination;
+  private Object[]          values;
+  private int               size;
+  private SRC               key;
+  private Timeout           timeout;
+  // Tells the timeouts of the batches emitted already apart from the one of the current batch
+  private long              batch;
+
+  public BufferOperation(Firehose firehose,
+                         TimingWheel timingWheel,
+                         int maxSize,
+                         long maxDelay,
+                         TimeUnit unit,
+                         DST destination) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Buffer size has to be positive.");
+    }
+    if (maxDelay <= 0) {
+      throw new IllegalArgumentException("Buffer delay has to be positive.");
+    }
+    this.firehose = firehose;
+    this.timingWheel = timingWheel;
+    this.maxSize = maxSize;
+    this.maxDelay = maxDelay;
+    this.unit = unit;
+    this.destination = destination;
+  }
+
+  @Override
+  public void accept(SRC src, V value) {
+    List<V> emitted = null;
+    synchronized (this) {
+      if (size == 0) {
+        values = new Object[maxSize];
+        long scheduled = batch;
+        timeout = timingWheel.schedule((now) -> expire(scheduled), maxDelay, unit);
+      }
+      values[size++] = value;
+      key = src;
+
+      if (size == maxSize) {
+        timeout.cancel();
+        emitted = drain();
+      }
+    }
+
+    if (emitted != null) {
+      firehose.notify(destination.clone(src), emitted);
+    }
+  }
+
+  private void expire(long scheduled) {
+    List<V> emitted;
+    SRC src;
+    synchronized (this) {
+      if (scheduled != batch) {
+        // The batch filled up before the timeout fired
+        return;
+      }
+      src = key;
+      emitted = drain();
+    }
+
+    firehose.notify(destination.clone(src), emitted);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<V> drain() {
+    List<V> emitted = (List<V>) Arrays.asList(size == maxSize ? values : Arrays.copyOf(values, size));
+    values = null;
+    size = 0;
+    key = null;
+    timeout = null;
+    batch++;
+    return emitted;
+  }
+}
@@ -0,0 +1,83 @@
+package reactor.pipe.operation;
+
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Count-based sliding window, emits the last {@code size} values on every event.
+ *
+ * Values are appended to an array twice the size of the window, and the emitted window is
+ * a view of its last {@code size} slots. Slots are never written twice: once the array is
+ * full, the current window is copied to the start of a new one, which happens once every
+ * {@code size} events. So both updating and emitting the window take amortized constant
+ * time, and emitted windows stay immutable.
+ */
+public class CountWindowOperation<SRC extends Key, DST extends Key, V> implements KeyedConsumer<SRC, V> {
+
+  private final Firehose firehose;
+  private final int      size;
+  private final DST      destination;
+  private Object[]       items;
+  private int            end;
+
+  public CountWindowOperation(Firehose firehose,
+                              int size,
+                              DST destination) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Window size has to be positive.");
+    }
+    this.firehose = firehose;
+    this.size = size;
+    this.destination = destination;
+    this.items = new Object[2 * size];
+  }
+
+  @Override
+  @SuppressWarnings(value = {"unchecked"})
+  public void accept(SRC src, V value) {
+    List<V> window;
+    synchronized (this) {
+      if (end == items.length) {
+        Object[] next = new Object[items.length];
+        System.arraycopy(items, end - size + 1, next, 0, size - 1);
+        items = next;
+        end = size - 1;
+      }
+      items[end++] = value;
+      window = new Window<>(items, Math.max(0, end - size), end);
+    }
+
+    firehose.notify(destination.clone(src), window);
+  }
+
+  private static final class Window<V> extends AbstractList<V> implements RandomAccess {
+    private final Object[] items;
+    private final int      from;
+    private final int      to;
+
+    private Window(Object[] items, int from, int to) {
+      this.items = items;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    @SuppressWarnings(value = {"unchecked"})
+    public V get(int index) {
+      if (index < 0 || index >= to - from) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + (to - from));
+      }
+      return (V) items[from + index];
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package reactor.pipe.operation;
+
+/**
+ * Sum, minimum or maximum of the last {@code size} primitive {@code double} values, kept in
+ * {@code double} arrays so that neither the values nor the aggregate are ever boxed.
+ *
+ * The sum is updated incrementally and folded from scratch once per full turn of the window,
+ * so that rounding errors don't pile up. The minimum and the maximum are kept in a monotonic
+ * deque, like in {@link SlidingExtremumOperation}. Each takes amortized constant time per value.
+ */
+public abstract class DoubleSlidingWindow {
+
+  protected final int size;
+
+  private DoubleSlidingWindow(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Window size has to be positive.");
+    }
+    this.size = size;
+  }
+
+  public static DoubleSlidingWindow sum(int size) {
+    return new Sum(size);
+  }
+
+  public static DoubleSlidingWindow min(int size) {
+    return new Extremum(size, false);
+  }
+
+  public static DoubleSlidingWindow max(int size) {
+    return new Extremum(size, true);
+  }
+
+  /**
+   * Adds the value to the window, evicting the oldest one once the window is full.
+   *
+   * @return aggregate of the window, including the added value
+   */
+  public abstract double add(double value);
+
+  private static final class Sum extends DoubleSlidingWindow {
+    private final double[] values;
+    private int            next;
+    private double         sum;
+
+    private Sum(int size) {
+      super(size);
+      this.values = new double[size];
+    }
+
+    @Override
+    public synchronized double add(double value) {
+      double evicted = values[next];
+      values[next] = value;
+      next = next + 1 == size ? 0 : next + 1;
+      if (next == 0) {
+        double folded = 0;
+        for (double v : values) {
+          folded += v;
+        }
+        sum = folded;
+      } else {
+        // Slots not filled yet hold zeroes, which don't change the sum
+        sum += value - evicted;
+      }
+      return sum;
+    }
+  }
+
+  private static final class Extremum extends DoubleSlidingWindow {
+    private final boolean  max;
+    // Deque of the candidates and their sequence numbers
+    private final double[] values;
+    private final long[]   sequences;
+    private int            head;
+    private int            count;
+    private long           sequence;
+
+    private Extremum(int size, boolean max) {
+      super(size);
+      this.max = max;
+      this.values = new double[size];
+      this.sequences = new long[size];
+    }
+
+    @Override
+    public synchronized double add(double value) {
+      long seq = sequence++;
+      if (count > 0 && sequences[head] <= seq - size) {
+        head = index(1);
+        count--;
+      }
+      while (count > 0 && dominates(value, values[index(count - 1)])) {
+        count--;
+      }
+      int idx = index(count);
+      values[idx] = value;
+      sequences[idx] = seq;
+      count++;
+      return values[head];
+    }
+
+    private boolean dominates(double value, double candidate) {
+      return max ? Double.compare(value, candidate) >= 0 : Double.compare(value, candidate) <= 0;
+    }
+
+    private int index(int offset) {
+      int idx = head + offset;
+      return idx < size ? idx : idx - size;
+    }
+  }
+}
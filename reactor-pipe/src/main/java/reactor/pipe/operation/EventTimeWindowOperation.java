@@ -0,0 +1,151 @@
+package reactor.pipe.operation;
+
+import reactor.fn.BiFunction;
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.stream.EventTime;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event-time windows of {@code size} milliseconds, starting every {@code slide} milliseconds,
+ * aligned to the epoch. Each key has its own watermark, see {@link EventTime}.
+ *
+ * Events are folded into the accumulators of their windows, indexed by the window start.
+ * Out-of-order events are never buffered: only the windows between the watermark, less the
+ * allowed lateness, and the greatest timestamp are open, so the state is bounded by the
+ * out-of-orderness and the lateness rather than by the number of events. Windows fire when
+ * an event moves the watermark past their end.
+ */
+public class EventTimeWindowOperation<SRC extends Key, DST extends Key, V, A> implements KeyedConsumer<SRC, V> {
+
+  private final Firehose                 firehose;
+  private final EventTime<V>             eventTime;
+  private final long                     size;
+  private final long                     slide;
+  private final A                        init;
+  private final BiFunction<A, V, A>      reducer;
+  private final DST                      destination;
+  private final TreeMap<Long, Window<A>> windows;
+  private long                           maxTimestamp;
+
+  public EventTimeWindowOperation(Firehose firehose,
+                                  EventTime<V> eventTime,
+                                  long size,
+                                  long slide,
+                                  TimeUnit unit,
+                                  A init,
+                                  BiFunction<A, V, A> reducer,
+                                  DST destination) {
+    this.size = unit.toMillis(size);
+    this.slide = unit.toMillis(slide);
+    if (this.size < 1 || this.slide < 1) {
+      throw new IllegalArgumentException("Window size and slide have to be at least a millisecond.");
+    }
+    if (this.slide > this.size) {
+      throw new IllegalArgumentException("Window slide can't be greater than its size.");
+    }
+    this.firehose = firehose;
+    this.eventTime = eventTime;
+    this.init = init;
+    this.reducer = reducer;
+    this.destination = destination;
+    this.windows = new TreeMap<>();
+    this.maxTimestamp = Long.MIN_VALUE;
+  }
+
+  @Override
+  public void accept(SRC src, V value) {
+    long timestamp = eventTime.timestamp(value);
+    List<A> fired = null;
+
+    synchronized (this) {
+      long watermark = watermark();
+      long lateness = eventTime.getAllowedLateness();
+      boolean folded = false;
+
+      for (long start = Math.floorDiv(timestamp - size, slide) * slide + slide; start <= timestamp; start += slide) {
+        long end = start + size;
+        if (watermark != Long.MIN_VALUE && end + lateness <= watermark) {
+          // Purged already
+          continue;
+        }
+        Window<A> window = windows.get(start);
+        if (window == null) {
+          window = new Window<>(init);
+          windows.put(start, window);
+        }
+        window.acc = reducer.apply(window.acc, value);
+        folded = true;
+        if (window.fired || (watermark != Long.MIN_VALUE && end <= watermark)) {
+          // Late, but within the allowed lateness
+          window.fired = true;
+          fired = add(fired, window.acc);
+        }
+      }
+
+      if (!folded) {
+        eventTime.lateEventDropped();
+        return;
+      }
+
+      if (timestamp > maxTimestamp) {
+        maxTimestamp = timestamp;
+        fired = advance(fired, watermark(), lateness);
+      }
+    }
+
+    if (fired != null) {
+      for (A acc : fired) {
+        firehose.notify(destination.clone(src), acc);
+      }
+    }
+  }
+
+  private List<A> advance(List<A> fired, long watermark, long lateness) {
+    Iterator<Map.Entry<Long, Window<A>>> it = windows.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Long, Window<A>> entry = it.next();
+      long end = entry.getKey() + size;
+      if (end > watermark) {
+        break;
+      }
+      Window<A> window = entry.getValue();
+      if (!window.fired) {
+        window.fired = true;
+        fired = add(fired, window.acc);
+      }
+      if (end + lateness <= watermark) {
+        it.remove();
+      }
+    }
+    return fired;
+  }
+
+  private long watermark() {
+    return maxTimestamp == Long.MIN_VALUE ? Long.MIN_VALUE : maxTimestamp - eventTime.getMaxOutOfOrderness();
+  }
+
+  private static <A> List<A> add(List<A> fired, A acc) {
+    if (fired == null) {
+      fired = new ArrayList<>(2);
+    }
+    fired.add(acc);
+    return fired;
+  }
+
+  private static final class Window<A> {
+    private A       acc;
+    private boolean fired;
+
+    private Window(A acc) {
+      this.acc = acc;
+    }
+  }
+}
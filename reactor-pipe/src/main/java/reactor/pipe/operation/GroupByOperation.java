@@ -0,0 +1,126 @@
+package reactor.pipe.operation;
+
+import reactor.fn.BiFunction;
+import reactor.fn.Consumer;
+import reactor.fn.Function;
+import reactor.fn.tuple.Tuple;
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.timer.TimingWheel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Aggregates the events per group, emitting the group and its updated aggregate on every event.
+ *
+ * All the groups are kept by the stage in a single {@link ConcurrentHashMap}, each group is
+ * guarded by its own lock, so there are no registrations or derived keys per group and the
+ * updates of different groups don't contend. Groups idle for longer than {@code idleMillis}
+ * are evicted by a sweep on the {@link TimingWheel}, which only runs while there are groups.
+ */
+public class GroupByOperation<SRC extends Key, DST extends Key, V, G, A> implements KeyedConsumer<SRC, V> {
+
+  private final Firehose                       firehose;
+  private final TimingWheel                    timingWheel;
+  private final Function<V, G>                 keyFn;
+  private final BiFunction<A, V, A>            aggregator;
+  private final A                              init;
+  private final long                           idleMillis;
+  private final DST                            destination;
+  private final ConcurrentHashMap<G, Group<A>> groups;
+  private final AtomicBoolean                  sweeping;
+  private final Consumer<Long>                 sweep;
+
+  /**
+   * @param idleMillis time after which idle groups are evicted, {@code 0} to keep them forever
+   */
+  public GroupByOperation(Firehose firehose,
+                          TimingWheel timingWheel,
+                          Function<V, G> keyFn,
+                          BiFunction<A, V, A> aggregator,
+                          A init,
+                          long idleMillis,
+                          DST destination) {
+    this.firehose = firehose;
+    this.timingWheel = timingWheel;
+    this.keyFn = keyFn;
+    this.aggregator = aggregator;
+    this.init = init;
+    this.idleMillis = idleMillis;
+    this.destination = destination;
+    this.groups = new ConcurrentHashMap<>();
+    this.sweeping = new AtomicBoolean();
+    this.sweep = this::sweep;
+  }
+
+  @Override
+  public void accept(SRC src, V value) {
+    G key = keyFn.apply(value);
+    A acc;
+    for (; ; ) {
+      Group<A> group = groups.get(key);
+      if (group == null) {
+        Group<A> created = new Group<>(init);
+        group = groups.putIfAbsent(key, created);
+        if (group == null) {
+          group = created;
+        }
+      }
+      synchronized (group) {
+        if (group.evicted) {
+          // Evicted between the lookup and the lock, the next lookup creates a new group
+          continue;
+        }
+        acc = aggregator.apply(group.acc, value);
+        group.acc = acc;
+        if (idleMillis > 0) {
+          group.lastAccess = System.currentTimeMillis();
+        }
+      }
+      break;
+    }
+
+    if (idleMillis > 0 && sweeping.compareAndSet(false, true)) {
+      timingWheel.schedule(sweep, idleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    firehose.notify(destination.clone(src), Tuple.of(key, acc));
+  }
+
+  private void sweep(Long now) {
+    long cutoff = now - idleMillis;
+    for (Map.Entry<G, Group<A>> entry : groups.entrySet()) {
+      Group<A> group = entry.getValue();
+      synchronized (group) {
+        if (group.lastAccess <= cutoff) {
+          group.evicted = true;
+          groups.remove(entry.getKey(), group);
+        }
+      }
+    }
+
+    if (!groups.isEmpty()) {
+      timingWheel.schedule(sweep, idleMillis, TimeUnit.MILLISECONDS);
+      return;
+    }
+    sweeping.set(false);
+    // A group may have been added after the check
+    if (!groups.isEmpty() && sweeping.compareAndSet(false, true)) {
+      timingWheel.schedule(sweep, idleMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private static final class Group<A> {
+    private A       acc;
+    private long    lastAccess;
+    private boolean evicted;
+
+    private Group(A acc) {
+      this.acc = acc;
+    }
+  }
+}
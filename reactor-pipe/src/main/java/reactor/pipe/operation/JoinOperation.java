@@ -0,0 +1,227 @@
+package reactor.pipe.operation;
+
+import reactor.fn.BiFunction;
+import reactor.fn.Consumer;
+import reactor.fn.Function;
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.stream.SideConsumers;
+import reactor.pipe.timer.TimingWheel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Windowed join of two streams: the events of the pipe, the left side, and the events of
+ * another key, the right side. Events of both sides with equal join keys are joined when they
+ * arrived within {@code windowMillis} of each other, no matter which of them came first.
+ *
+ * Each side buffers its events in arrival order and indexes them by join key, so an event
+ * probes the other side in constant time plus the number of matches. Events older than the
+ * window are expired by a sweep on the {@link TimingWheel}, which only runs while there are
+ * buffered events, and each side buffers at most {@code maxBuffered} events, dropping the
+ * oldest ones first.
+ *
+ * The right side is consumed by a {@link #sideConsumers() side consumer} of the other key,
+ * which lives as long as the join itself.
+ */
+public class JoinOperation<SRC extends Key, DST extends Key, L, R, J, O>
+  implements KeyedConsumer<SRC, L>, SideConsumers {
+
+  private final Firehose            firehose;
+  private final TimingWheel         timingWheel;
+  private final Function<L, J>      leftKeyFn;
+  private final Function<R, J>      rightKeyFn;
+  private final BiFunction<L, R, O> joiner;
+  private final long                windowMillis;
+  private final int                 maxBuffered;
+  private final DST                 destination;
+  private final Key                 other;
+  private final Side<J, L>          left;
+  private final Side<J, R>          right;
+  private final Consumer<Long>      sweep;
+  private SRC                       key;
+  private boolean                   sweeping;
+
+  public JoinOperation(Firehose firehose,
+                       TimingWheel timingWheel,
+                       Function<L, J> leftKeyFn,
+                       Function<R, J> rightKeyFn,
+                       BiFunction<L, R, O> joiner,
+                       long window,
+                       TimeUnit unit,
+                       int maxBuffered,
+                       DST destination,
+                       Key other) {
+    this.windowMillis = unit.toMillis(window);
+    if (this.windowMillis < 1) {
+      throw new IllegalArgumentException("Join window has to be at least a millisecond.");
+    }
+    if (maxBuffered < 1) {
+      throw new IllegalArgumentException("Join buffer size has to be positive.");
+    }
+    this.firehose = firehose;
+    this.timingWheel = timingWheel;
+    this.leftKeyFn = leftKeyFn;
+    this.rightKeyFn = rightKeyFn;
+    this.joiner = joiner;
+    this.maxBuffered = maxBuffered;
+    this.destination = destination;
+    this.other = other;
+    this.left = new Side<>();
+    this.right = new Side<>();
+    this.sweep = this::sweep;
+  }
+
+  @Override
+  public void accept(SRC src, L value) {
+    J joinKey = leftKeyFn.apply(value);
+    long now = System.currentTimeMillis();
+    List<O> joined = null;
+    synchronized (this) {
+      key = src;
+      expire(now);
+      ArrayDeque<Entry<J, R>> matches = right.probe(joinKey);
+      if (matches != null) {
+        joined = new ArrayList<>(matches.size());
+        for (Entry<J, R> match : matches) {
+          joined.add(joiner.apply(value, match.value));
+        }
+      }
+      left.add(new Entry<>(joinKey, value, now), maxBuffered);
+      scheduleSweep(now);
+    }
+
+    emit(src, joined);
+  }
+
+  @Override
+  public Map<Key, KeyedConsumer> sideConsumers() {
+    return Collections.singletonMap(other, right());
+  }
+
+  /**
+   * @return consumer of the right side, to be registered under the key of the other stream
+   */
+  public KeyedConsumer<Key, R> right() {
+    return (ignored, value) -> {
+      J joinKey = rightKeyFn.apply(value);
+      long now = System.currentTimeMillis();
+      List<O> joined = null;
+      SRC src;
+      synchronized (this) {
+        // Nothing to join with before the first event of the left side, which sets the key
+        src = key;
+        expire(now);
+        ArrayDeque<Entry<J, L>> matches = left.probe(joinKey);
+        if (matches != null) {
+          joined = new ArrayList<>(matches.size());
+          for (Entry<J, L> match : matches) {
+            joined.add(joiner.apply(match.value, value));
+          }
+        }
+        right.add(new Entry<>(joinKey, value, now), maxBuffered);
+        scheduleSweep(now);
+      }
+
+      emit(src, joined);
+    };
+  }
+
+  private void emit(SRC src, List<O> joined) {
+    if (joined == null) {
+      return;
+    }
+    Key dst = destination.clone(src);
+    for (O o : joined) {
+      firehose.notify(dst, o);
+    }
+  }
+
+  private void sweep(Long now) {
+    synchronized (this) {
+      sweeping = false;
+      expire(now);
+      scheduleSweep(now);
+    }
+  }
+
+  private void expire(long now) {
+    long cutoff = now - windowMillis;
+    left.expire(cutoff);
+    right.expire(cutoff);
+  }
+
+  private void scheduleSweep(long now) {
+    if (sweeping) {
+      return;
+    }
+    long oldest = Math.min(left.oldest(), right.oldest());
+    if (oldest == Long.MAX_VALUE) {
+      return;
+    }
+    sweeping = true;
+    timingWheel.schedule(sweep, Math.max(0, oldest + windowMillis + 1 - now), TimeUnit.MILLISECONDS);
+  }
+
+  private static final class Side<J, V> {
+    private final ArrayDeque<Entry<J, V>>             byTime = new ArrayDeque<>();
+    private final HashMap<J, ArrayDeque<Entry<J, V>>> byKey  = new HashMap<>();
+
+    private ArrayDeque<Entry<J, V>> probe(J joinKey) {
+      return byKey.get(joinKey);
+    }
+
+    private void add(Entry<J, V> entry, int maxBuffered) {
+      if (byTime.size() == maxBuffered) {
+        removeOldest();
+      }
+      byTime.addLast(entry);
+      ArrayDeque<Entry<J, V>> entries = byKey.get(entry.joinKey);
+      if (entries == null) {
+        entries = new ArrayDeque<>();
+        byKey.put(entry.joinKey, entries);
+      }
+      entries.addLast(entry);
+    }
+
+    private void expire(long cutoff) {
+      while (!byTime.isEmpty() && byTime.peekFirst().timestamp < cutoff) {
+        removeOldest();
+      }
+    }
+
+    private void removeOldest() {
+      Entry<J, V> oldest = byTime.pollFirst();
+      // Entries of a join key are in arrival order too, so the oldest one is first
+      ArrayDeque<Entry<J, V>> entries = byKey.get(oldest.joinKey);
+      entries.pollFirst();
+      if (entries.isEmpty()) {
+        byKey.remove(oldest.joinKey);
+      }
+    }
+
+    private long oldest() {
+      Entry<J, V> oldest = byTime.peekFirst();
+      return oldest == null ? Long.MAX_VALUE : oldest.timestamp;
+    }
+  }
+
+  private static final class Entry<J, V> {
+    private final J    joinKey;
+    private final V    value;
+    private final long timestamp;
+
+    private Entry(J joinKey, V value, long timestamp) {
+      this.joinKey = joinKey;
+      this.value = value;
+      this.timestamp = timestamp;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package reactor.pipe.operation;
+
+/**
+ * Sum, minimum or maximum of the last {@code size} primitive {@code long} values, kept in
+ * {@code long} arrays so that neither the values nor the aggregate are ever boxed.
+ *
+ * The sum is updated incrementally and overflows the way {@code long} arithmetic does. The
+ * minimum and the maximum are kept in a monotonic deque, like in {@link SlidingExtremumOperation}.
+ * Each takes amortized constant time per value.
+ */
+public abstract class LongSlidingWindow {
+
+  protected final int size;
+
+  private LongSlidingWindow(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Window size has to be positive.");
+    }
+    this.size = size;
+  }
+
+  public static LongSlidingWindow sum(int size) {
+    return new Sum(size);
+  }
+
+  public static LongSlidingWindow min(int size) {
+    return new Extremum(size, false);
+  }
+
+  public static LongSlidingWindow max(int size) {
+    return new Extremum(size, true);
+  }
+
+  /**
+   * Adds the value to the window, evicting the oldest one once the window is full.
+   *
+   * @return aggregate of the window, including the added value
+   */
+  public abstract long add(long value);
+
+  private static final class Sum extends LongSlidingWindow {
+    private final long[] values;
+    private int          next;
+    private long         sum;
+
+    private Sum(int size) {
+      super(size);
+      this.values = new long[size];
+    }
+
+    @Override
+    public synchronized long add(long value) {
+      long evicted = values[next];
+      values[next] = value;
+      next = next + 1 == size ? 0 : next + 1;
+      // Slots not filled yet hold zeroes, which don't change the sum
+      sum += value - evicted;
+      return sum;
+    }
+  }
+
+  private static final class Extremum extends LongSlidingWindow {
+    private final boolean max;
+    // Deque of the candidates and their sequence numbers
+    private final long[]  values;
+    private final long[]  sequences;
+    private int           head;
+    private int           count;
+    private long          sequence;
+
+    private Extremum(int size, boolean max) {
+      super(size);
+      this.max = max;
+      this.values = new long[size];
+      this.sequences = new long[size];
+    }
+
+    @Override
+    public synchronized long add(long value) {
+      long seq = sequence++;
+      if (count > 0 && sequences[head] <= seq - size) {
+        head = index(1);
+        count--;
+      }
+      while (count > 0 && dominates(value, values[index(count - 1)])) {
+        count--;
+      }
+      int idx = index(count);
+      values[idx] = value;
+      sequences[idx] = seq;
+      count++;
+      return values[head];
+    }
+
+    private boolean dominates(long value, long candidate) {
+      return max ? Long.compare(value, candidate) >= 0 : Long.compare(value, candidate) <= 0;
+    }
+
+    private int index(int offset) {
+      int idx = head + offset;
+      return idx < size ? idx : idx - size;
+    }
+  }
+}
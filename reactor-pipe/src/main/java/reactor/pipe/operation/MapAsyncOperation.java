@@ -0,0 +1,175 @@
+package reactor.pipe.operation;
+
+import reactor.fn.Function;
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Maps the events with a function returning a {@link CompletionStage}, so that the worker isn't
+ * blocked for the duration of the call, and notifies the results through the {@link Firehose}
+ * as they complete. At most {@code maxInFlight} calls are outstanding at a time, the events
+ * over the limit wait in the stage and are started as the calls complete, on the thread that
+ * completed them. The waiting events are started in a loop rather than from the completion
+ * callbacks, so calls completing synchronously don't pile up on the stack.
+ *
+ * When {@code ordered}, the results wait in a reorder buffer until the results of all the
+ * preceding events are emitted. The buffer takes part in the limit, so it never holds more
+ * than {@code maxInFlight} results. Failed calls are reported to the error handler of the
+ * {@link Firehose}, their events are skipped.
+ */
+public class MapAsyncOperation<SRC extends Key, DST extends Key, V, R> implements KeyedConsumer<SRC, V> {
+
+  private static final byte PENDING   = 0;
+  private static final byte COMPLETED = 1;
+  private static final byte FAILED    = 2;
+
+  private final Firehose                                  firehose;
+  private final Function<V, ? extends CompletionStage<R>> mapper;
+  private final int                                       maxInFlight;
+  private final boolean                                   ordered;
+  private final DST                                       destination;
+  private final ArrayDeque<Waiting<SRC, V>>               waiting;
+  // Events taken off the waiting queue, to be started by the draining thread
+  private final ArrayDeque<Waiting<SRC, V>>               ready;
+  // Reorder buffer, indexed by the sequence number of the event
+  private final Object[]                                  keys;
+  private final Object[]                                  results;
+  private final byte[]                                    states;
+  private long                                            nextSequence;
+  private long                                            nextEmitted;
+  private int                                             inFlight;
+  private boolean                                         draining;
+
+  public MapAsyncOperation(Firehose firehose,
+                           Function<V, ? extends CompletionStage<R>> mapper,
+                           int maxInFlight,
+                           boolean ordered,
+                           DST destination) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("At least one call has to be allowed in flight.");
+    }
+    this.firehose = firehose;
+    this.mapper = mapper;
+    this.maxInFlight = maxInFlight;
+    this.ordered = ordered;
+    this.destination = destination;
+    this.waiting = new ArrayDeque<>();
+    this.ready = new ArrayDeque<>();
+    this.keys = ordered ? new Object[maxInFlight] : null;
+    this.results = ordered ? new Object[maxInFlight] : null;
+    this.states = ordered ? new byte[maxInFlight] : null;
+  }
+
+  @Override
+  public void accept(SRC src, V value) {
+    long sequence;
+    synchronized (this) {
+      if (outstanding() >= maxInFlight) {
+        waiting.addLast(new Waiting<>(src, value));
+        return;
+      }
+      sequence = started();
+    }
+
+    start(src, value, sequence);
+  }
+
+  private void start(SRC src, V value, long sequence) {
+    CompletionStage<R> stage;
+    try {
+      stage = mapper.apply(value);
+    } catch (Throwable t) {
+      completed(src, sequence, null, t);
+      return;
+    }
+    stage.whenComplete((result, error) -> completed(src, sequence, result, error));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void completed(SRC src, long sequence, R result, Throwable error) {
+    if (error != null) {
+      firehose.getErrorHandler().accept(error);
+    }
+
+    boolean drain;
+    synchronized (this) {
+      inFlight--;
+      if (ordered) {
+        int idx = (int) (sequence % maxInFlight);
+        keys[idx] = src;
+        results[idx] = result;
+        states[idx] = error == null ? COMPLETED : FAILED;
+        // Emitted under the lock, so that the results of the concurrent completions don't interleave
+        while (nextEmitted < nextSequence && states[idx = (int) (nextEmitted % maxInFlight)] != PENDING) {
+          if (states[idx] == COMPLETED) {
+            firehose.notify(destination.clone((SRC) keys[idx]), results[idx]);
+          }
+          keys[idx] = null;
+          results[idx] = null;
+          states[idx] = PENDING;
+          nextEmitted++;
+        }
+      }
+
+      while (!waiting.isEmpty() && outstanding() < maxInFlight) {
+        Waiting<SRC, V> w = waiting.pollFirst();
+        w.sequence = started();
+        ready.addLast(w);
+      }
+      // A completion arriving while the events are started, including the synchronous
+      // completion of a started call, leaves its events to the thread already draining
+      drain = !draining && !ready.isEmpty();
+      if (drain) {
+        draining = true;
+      }
+    }
+
+    if (!ordered && error == null) {
+      firehose.notify(destination.clone(src), result);
+    }
+    if (drain) {
+      drain();
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      Waiting<SRC, V> w;
+      synchronized (this) {
+        w = ready.pollFirst();
+        if (w == null) {
+          draining = false;
+          return;
+        }
+      }
+      start(w.key, w.value, w.sequence);
+    }
+  }
+
+  private long started() {
+    inFlight++;
+    return nextSequence++;
+  }
+
+  /**
+   * @return number of calls in flight, and of the results in the reorder buffer when ordered
+   */
+  private long outstanding() {
+    return ordered ? nextSequence - nextEmitted : inFlight;
+  }
+
+  private static final class Waiting<SRC, V> {
+    private final SRC key;
+    private final V   value;
+    private long      sequence;
+
+    private Waiting(SRC key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package reactor.pipe.operation;
+
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spreads the events of a key round-robin across {@code n} sub-keys derived from the
+ * destination, and merges the results of the stages run on the sub-keys back into the
+ * destination. The sub-keys hash to different lanes of a sharded {@link Firehose}, and the
+ * events are handed over to them with {@link Firehose#notifyOnLane(Key, Object)}, so the
+ * events of a single hot key are no longer handled by one worker at a time.
+ *
+ * The stages between the fan-out and the merge are stateless and fused into a single consumer,
+ * which is registered on all the sub-keys. Each event carries its sequence number and source
+ * key in the metadata of the sub-key it is notified on, the fused stages pass the key on as is.
+ * When {@code ordered}, the results wait in a reorder buffer until the results of all the
+ * preceding events are emitted, events dropped by the stages are skipped. The buffer grows
+ * with the number of events in flight between the fan-out and the merge.
+ *
+ * The merged results are handed over to the lane of the destination key the same way, rather
+ * than run on whichever sub-key lane produced them, so that the stages after the merge keep
+ * running on a single worker at a time, in the order the results were merged in.
+ */
+public class ParallelOperation<SRC extends Key, DST extends Key, V> implements KeyedConsumer<SRC, V> {
+
+  private static final byte PENDING   = 0;
+  private static final byte COMPLETED = 1;
+  private static final byte SKIPPED   = 2;
+
+  private final Firehose   firehose;
+  private final boolean    ordered;
+  private final DST        destination;
+  private final Key[]      lanes;
+  private final AtomicLong sequence;
+  // Reorder buffer, indexed by the sequence number of the event
+  private Object[]         keys;
+  private Object[]         results;
+  private byte[]           states;
+  private long             nextEmitted;
+
+  public ParallelOperation(Firehose firehose,
+                           int n,
+                           boolean ordered,
+                           DST destination) {
+    if (n < 1) {
+      throw new IllegalArgumentException("At least one sub-key is required.");
+    }
+    this.firehose = firehose;
+    this.ordered = ordered;
+    this.destination = destination;
+    this.lanes = new Key[n];
+    for (int i = 0; i < n; i++) {
+      lanes[i] = destination.derive();
+    }
+    this.sequence = new AtomicLong();
+    if (ordered) {
+      this.keys = new Object[16];
+      this.results = new Object[16];
+      this.states = new byte[16];
+    }
+  }
+
+  @Override
+  public void accept(SRC src, V value) {
+    long seq = sequence.getAndIncrement();
+    Key lane = lanes[(int) (seq % lanes.length)].withMetadata(new Sequenced(seq, src));
+    firehose.notifyOnLane(lane, value);
+  }
+
+  /**
+   * Registers the fused stages on all the sub-keys.
+   *
+   * @param stages stages run on the sub-keys, ending with {@link #merge()}
+   */
+  @SuppressWarnings(value = {"unchecked"})
+  public void subscribe(KeyedConsumer<Key, Object> stages) {
+    KeyedConsumer<Key, Object> consumer = (key, value) -> {
+      stages.accept(key, value);
+      Sequenced event = key.getMetadata();
+      if (!event.emitted && ordered) {
+        completed(event, null, SKIPPED);
+      }
+    };
+    for (Key lane : lanes) {
+      firehose.on(lane, consumer);
+    }
+  }
+
+  /**
+   * @return consumer the last of the fused stages hands its results to
+   */
+  @SuppressWarnings(value = {"unchecked"})
+  public KeyedConsumer<Key, Object> merge() {
+    return (key, value) -> {
+      Sequenced event = key.getMetadata();
+      event.emitted = true;
+      if (ordered) {
+        completed(event, value, COMPLETED);
+      } else {
+        firehose.notifyOnLane(destination.clone(event.key), value);
+      }
+    };
+  }
+
+  private synchronized void completed(Sequenced event, Object result, byte state) {
+    if (event.sequence - nextEmitted >= states.length) {
+      grow(event.sequence - nextEmitted + 1);
+    }
+    int mask = states.length - 1;
+    int idx = (int) (event.sequence & mask);
+    keys[idx] = event.key;
+    results[idx] = result;
+    states[idx] = state;
+
+    // Emitted under the lock, so that the results of the concurrent lanes don't interleave
+    while (states[idx = (int) (nextEmitted & mask)] != PENDING) {
+      if (states[idx] == COMPLETED) {
+        firehose.notifyOnLane(destination.clone((Key) keys[idx]), results[idx]);
+      }
+      keys[idx] = null;
+      results[idx] = null;
+      states[idx] = PENDING;
+      nextEmitted++;
+    }
+  }
+
+  private void grow(long required) {
+    int capacity = states.length;
+    while (capacity < required) {
+      capacity <<= 1;
+    }
+    Object[] newKeys = new Object[capacity];
+    Object[] newResults = new Object[capacity];
+    byte[] newStates = new byte[capacity];
+    for (long seq = nextEmitted; seq < nextEmitted + states.length; seq++) {
+      int from = (int) (seq & (states.length - 1));
+      int to = (int) (seq & (capacity - 1));
+      newKeys[to] = keys[from];
+      newResults[to] = results[from];
+      newStates[to] = states[from];
+    }
+    keys = newKeys;
+    results = newResults;
+    states = newStates;
+  }
+
+  private static final class Sequenced {
+    private final long sequence;
+    private final Key  key;
+    private boolean    emitted;
+
+    private Sequenced(long sequence, Key key) {
+      this.sequence = sequence;
+      this.key = key;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package reactor.pipe.operation;
+
+import reactor.fn.BiFunction;
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.timer.Timeout;
+import reactor.pipe.timer.TimingWheel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session windows: a session lasts as long as the events keep coming within {@code gap}
+ * of each other, and its accumulator is emitted once no event arrived for {@code gap}.
+ *
+ * Events are folded into the accumulator as they arrive. The session is closed by a timeout
+ * on the {@link TimingWheel}, which each event pushes back with
+ * {@link Timeout#reschedule(long, TimeUnit)}, so only a new session schedules a timeout.
+ */
+public class SessionWindowOperation<SRC extends Key, DST extends Key, V, A> implements KeyedConsumer<SRC, V> {
+
+  private final Firehose            firehose;
+  private final TimingWheel         timingWheel;
+  private final long                gap;
+  private final TimeUnit            unit;
+  private final BiFunction<A, V, A> reducer;
+  private final A                   init;
+  private final DST                 destination;
+  private Session<SRC, A>           session;
+
+  public SessionWindowOperation(Firehose firehose,
+                                TimingWheel timingWheel,
+                                long gap,
+                                TimeUnit unit,
+                                BiFunction<A, V, A> reducer,
+                                A init,
+                                DST destination) {
+    if (gap <= 0) {
+      throw new IllegalArgumentException("Session gap has to be positive.");
+    }
+    this.firehose = firehose;
+    this.timingWheel = timingWheel;
+    this.gap = gap;
+    this.unit = unit;
+    this.reducer = reducer;
+    this.init = init;
+    this.destination = destination;
+  }
+
+  @Override
+  public void accept(SRC src, V value) {
+    synchronized (this) {
+      if (session == null || !session.timeout.reschedule(gap, unit)) {
+        // The previous session, if any, has timed out and is being closed
+        Session<SRC, A> next = new Session<>(init);
+        next.timeout = timingWheel.schedule((now) -> close(next), gap, unit);
+        session = next;
+      }
+      session.key = src;
+      session.acc = reducer.apply(session.acc, value);
+    }
+  }
+
+  private void close(Session<SRC, A> closed) {
+    SRC key;
+    A acc;
+    synchronized (this) {
+      if (session == closed) {
+        session = null;
+      }
+      key = closed.key;
+      acc = closed.acc;
+    }
+
+    firehose.notify(destination.clone(key), acc);
+  }
+
+  private static final class Session<SRC, A> {
+    private SRC     key;
+    private A       acc;
+    private Timeout timeout;
+
+    private Session(A acc) {
+      this.acc = acc;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package reactor.pipe.operation;
+
+import reactor.fn.BiConsumer;
+import reactor.fn.Function;
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+
+/**
+ * Adds every event to a fixed-size sketch, such as {@link reactor.pipe.sketch.HyperLogLog},
+ * and emits the estimate read from the sketch. The sketch is updated in place under the lock
+ * of the stage rather than copied on every update, so the cost per event doesn't depend on
+ * the size of the state. Estimates that are {@code null} aren't emitted, which lets the stages
+ * that only emit every so often skip the events in between.
+ */
+public class SketchOperation<SRC extends Key, DST extends Key, V, S, R> implements KeyedConsumer<SRC, V> {
+
+  private final Firehose         firehose;
+  private final S                sketch;
+  private final BiConsumer<S, V> add;
+  private final Function<S, R>   estimate;
+  private final DST              destination;
+
+  public SketchOperation(Firehose firehose,
+                         S sketch,
+                         BiConsumer<S, V> add,
+                         Function<S, R> estimate,
+                         DST destination) {
+    this.firehose = firehose;
+    this.sketch = sketch;
+    this.add = add;
+    this.estimate = estimate;
+    this.destination = destination;
+  }
+
+  @Override
+  public void accept(SRC src, V value) {
+    R result;
+    synchronized (sketch) {
+      add.accept(sketch, value);
+      result = estimate.apply(sketch);
+    }
+
+    if (result != null) {
+      firehose.notify(destination.clone(src), result);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package reactor.pipe.operation;
+
+import reactor.fn.BiFunction;
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+
+/**
+ * Invertible aggregate, such as a sum or a count, of a count-based sliding window. Each event
+ * is added to the aggregate and the value that drops out of the window is removed from it,
+ * so the aggregate is emitted in constant time.
+ *
+ * The aggregate is folded from scratch once per full turn of the window, so that rounding
+ * errors of floating point aggregates don't pile up. That adds a constant amortized cost.
+ */
+public class SlidingAggregateOperation<SRC extends Key, DST extends Key, V, A> implements KeyedConsumer<SRC, V> {
+
+  private final WindowRing<V>       ring;
+  private final Firehose            firehose;
+  private final BiFunction<A, V, A> add;
+  private final BiFunction<A, V, A> remove;
+  private final A                   init;
+  private final DST                 destination;
+  private A                         aggregate;
+
+  public SlidingAggregateOperation(Firehose firehose,
+                                   int size,
+                                   A init,
+                                   BiFunction<A, V, A> add,
+                                   BiFunction<A, V, A> remove,
+                                   DST destination) {
+    this.ring = new WindowRing<>(size);
+    this.firehose = firehose;
+    this.add = add;
+    this.remove = remove;
+    this.init = init;
+    this.aggregate = init;
+    this.destination = destination;
+  }
+
+  @Override
+  @SuppressWarnings(value = {"unchecked"})
+  public void accept(SRC src, V value) {
+    A current;
+    synchronized (ring) {
+      V evicted = ring.add(value);
+      if (ring.wrapped()) {
+        current = init;
+        for (int i = 0; i < ring.size(); i++) {
+          current = add.apply(current, ring.get(i));
+        }
+      } else {
+        current = add.apply(aggregate, value);
+        if (evicted != null) {
+          current = remove.apply(current, evicted);
+        }
+      }
+      aggregate = current;
+    }
+
+    firehose.notify(destination.clone(src), current);
+  }
+}
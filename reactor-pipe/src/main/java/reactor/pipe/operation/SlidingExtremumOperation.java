@@ -0,0 +1,80 @@
+package reactor.pipe.operation;
+
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+
+import java.util.Comparator;
+
+/**
+ * Maximum of a count-based sliding window according to the given comparator, reverse it
+ * for the minimum. Kept in a monotonic deque: a value is only kept as long as no later value
+ * is greater or equal, so the head of the deque is the maximum. Every value is pushed and
+ * popped at most once, which makes the cost per event amortized constant.
+ */
+public class SlidingExtremumOperation<SRC extends Key, DST extends Key, V> implements KeyedConsumer<SRC, V> {
+
+  private final Firehose              firehose;
+  private final Comparator<? super V> comparator;
+  private final DST                   destination;
+  private final int                   size;
+  // Deque of the candidates and their sequence numbers, at most `size` of them are in the window
+  private final Object[]              values;
+  private final long[]                sequences;
+  private int                         head;
+  private int                         count;
+  private long                        sequence;
+
+  public SlidingExtremumOperation(Firehose firehose,
+                                  int size,
+                                  Comparator<? super V> comparator,
+                                  DST destination) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Window size has to be positive.");
+    }
+    this.firehose = firehose;
+    this.comparator = comparator;
+    this.destination = destination;
+    this.size = size;
+    this.values = new Object[size];
+    this.sequences = new long[size];
+  }
+
+  @Override
+  @SuppressWarnings(value = {"unchecked"})
+  public void accept(SRC src, V value) {
+    V max;
+    synchronized (values) {
+      long seq = sequence++;
+      if (count > 0 && sequences[head] <= seq - size) {
+        pollFirst();
+      }
+      while (count > 0 && comparator.compare((V) values[tail()], value) <= 0) {
+        values[tail()] = null;
+        count--;
+      }
+      int idx = index(count);
+      values[idx] = value;
+      sequences[idx] = seq;
+      count++;
+      max = (V) values[head];
+    }
+
+    firehose.notify(destination.clone(src), max);
+  }
+
+  private void pollFirst() {
+    values[head] = null;
+    head = index(1);
+    count--;
+  }
+
+  private int tail() {
+    return index(count - 1);
+  }
+
+  private int index(int offset) {
+    int idx = head + offset;
+    return idx < size ? idx : idx - size;
+  }
+}
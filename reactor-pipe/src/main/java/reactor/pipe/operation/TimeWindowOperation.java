@@ -0,0 +1,187 @@
+package reactor.pipe.operation;
+
+import reactor.fn.BiFunction;
+import reactor.fn.Consumer;
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.timer.Timeout;
+import reactor.pipe.timer.TimingWheel;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-based windows of {@code size} milliseconds, starting every {@code slide} milliseconds,
+ * aligned to the epoch. Tumbling windows have the slide equal to the size. Events are folded
+ * into the accumulators as they arrive, and the accumulator of the window is emitted once
+ * the window closes. Only the windows that got any events are emitted.
+ *
+ * With a combiner, or for tumbling windows, events are folded into panes as long as the
+ * greatest common divisor of the size and the slide, and the panes of the window are combined
+ * when it closes. Without a combiner, events are folded into each of the overlapping windows
+ * they belong to. Either way, the state is proportional to the number of open windows rather
+ * than to the number of events.
+ *
+ * Windows are closed by a timeout on the {@link TimingWheel}, scheduled only while there are
+ * open windows.
+ */
+public class TimeWindowOperation<SRC extends Key, DST extends Key, V, A> implements KeyedConsumer<SRC, V> {
+
+  private final Firehose            firehose;
+  private final TimingWheel         timingWheel;
+  private final long                size;
+  private final long                slide;
+  private final long                pane;
+  private final A                   init;
+  private final BiFunction<A, V, A> reducer;
+  private final BiFunction<A, A, A> combiner;
+  private final DST                 destination;
+  private final Consumer<Long>      close;
+  // Panes, or windows when not combining, ordered by their start
+  private final ArrayDeque<Slot<A>> slots;
+  private SRC                       key;
+  private Timeout                   timeout;
+  private long                      scheduledEnd;
+
+  /**
+   * @param combiner combines the accumulators of two panes, may be {@code null} for the
+   *                 hopping windows, which are then folded separately
+   */
+  public TimeWindowOperation(Firehose firehose,
+                             TimingWheel timingWheel,
+                             long size,
+                             long slide,
+                             TimeUnit unit,
+                             A init,
+                             BiFunction<A, V, A> reducer,
+                             BiFunction<A, A, A> combiner,
+                             DST destination) {
+    this.size = unit.toMillis(size);
+    this.slide = unit.toMillis(slide);
+    if (this.size < 1 || this.slide < 1) {
+      throw new IllegalArgumentException("Window size and slide have to be at least a millisecond.");
+    }
+    if (this.slide > this.size) {
+      throw new IllegalArgumentException("Window slide can't be greater than its size.");
+    }
+    this.firehose = firehose;
+    this.timingWheel = timingWheel;
+    this.init = init;
+    this.reducer = reducer;
+    this.combiner = combiner;
+    this.destination = destination;
+    this.pane = this.slide == this.size ? this.size : combiner != null ? gcd(this.size, this.slide) : 0;
+    this.close = this::close;
+    this.slots = new ArrayDeque<>();
+  }
+
+  @Override
+  public void accept(SRC src, V value) {
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      key = src;
+      if (isCombining()) {
+        long start = now - Math.floorMod(now, pane);
+        Slot<A> last = slots.peekLast();
+        if (last == null || last.start < start) {
+          last = new Slot<>(start, start + pane, init);
+          slots.addLast(last);
+        }
+        last.acc = reducer.apply(last.acc, value);
+      } else {
+        Slot<A> last = slots.peekLast();
+        for (long start = firstStart(now); start <= now; start += slide) {
+          if (last == null || last.start < start) {
+            last = new Slot<>(start, start + size, init);
+            slots.addLast(last);
+          }
+        }
+        for (Slot<A> window : slots) {
+          if (window.start <= now && now < window.end) {
+            window.acc = reducer.apply(window.acc, value);
+          }
+        }
+      }
+
+      if (timeout == null) {
+        schedule(isCombining() ? firstStart(now) + size : slots.peekFirst().end, now);
+      }
+    }
+  }
+
+  private void close(Long now) {
+    A result = null;
+    boolean emit = false;
+    SRC src;
+    synchronized (this) {
+      long end = scheduledEnd;
+      timeout = null;
+      src = key;
+
+      if (isCombining()) {
+        for (Slot<A> p : slots) {
+          if (p.start >= end - size && p.start < end) {
+            result = emit ? combiner.apply(result, p.acc) : p.acc;
+            emit = true;
+          }
+        }
+        // Panes that none of the following windows cover
+        while (!slots.isEmpty() && slots.peekFirst().start < end - size + slide) {
+          slots.pollFirst();
+        }
+        if (!slots.isEmpty()) {
+          // The remaining panes are covered by the window that has just closed, too
+          schedule(Math.max(end + slide, firstStart(slots.peekFirst().start) + size), now);
+        }
+      } else {
+        while (!slots.isEmpty() && slots.peekFirst().end <= end) {
+          Slot<A> window = slots.pollFirst();
+          if (window.end == end) {
+            result = window.acc;
+            emit = true;
+          }
+        }
+        if (!slots.isEmpty()) {
+          schedule(slots.peekFirst().end, now);
+        }
+      }
+    }
+
+    if (emit) {
+      firehose.notify(destination.clone(src), result);
+    }
+  }
+
+  private void schedule(long end, long now) {
+    scheduledEnd = end;
+    timeout = timingWheel.schedule(close, Math.max(0, end - now), TimeUnit.MILLISECONDS);
+  }
+
+  private boolean isCombining() {
+    return pane > 0;
+  }
+
+  /**
+   * @return start of the earliest window that covers the given time
+   */
+  private long firstStart(long time) {
+    return Math.floorDiv(time - size, slide) * slide + slide;
+  }
+
+  private static long gcd(long a, long b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+
+  private static final class Slot<A> {
+    private final long start;
+    private final long end;
+    private A          acc;
+
+    private Slot(long start, long end, A acc) {
+      this.start = start;
+      this.end = end;
+      this.acc = acc;
+    }
+  }
+}
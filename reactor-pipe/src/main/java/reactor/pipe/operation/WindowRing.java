@@ -0,0 +1,54 @@
+package reactor.pipe.operation;
+
+/**
+ * Fixed-size ring of the last {@code capacity} values of a count-based window. Adding a
+ * value overwrites the oldest one once the ring is full, so it takes constant time no matter
+ * the size of the window. Not thread-safe, the operations guard it themselves.
+ */
+final class WindowRing<V> {
+
+  private final Object[] items;
+  private int            next;
+  private int            size;
+
+  WindowRing(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Window size has to be positive.");
+    }
+    this.items = new Object[capacity];
+  }
+
+  /**
+   * @return value that dropped out of the window, or {@code null} if the window wasn't full yet
+   */
+  @SuppressWarnings("unchecked")
+  V add(V value) {
+    V evicted = null;
+    if (size == items.length) {
+      evicted = (V) items[next];
+    } else {
+      size++;
+    }
+    items[next] = value;
+    next = next + 1 == items.length ? 0 : next + 1;
+    return evicted;
+  }
+
+  /**
+   * @return {@code true} if the last added value completed a full turn of the ring
+   */
+  boolean wrapped() {
+    return next == 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  V get(int idx) {
+    int start = size == items.length ? next : 0;
+    int pos = start + idx;
+    return (V) items[pos < items.length ? pos : pos - items.length];
+  }
+
+  int size() {
+    return size;
+  }
+}
@@ -9,33 +9,100 @@ import reactor.fn.Function;
 import reactor.fn.Predicate;
 import reactor.fn.UnaryOperator;
 import reactor.fn.tuple.Tuple;
-import reactor.fn.tuple.Tuple2;
 import reactor.pipe.consumer.KeyedConsumer;
 import reactor.pipe.concurrent.Atom;
 import reactor.pipe.selector.Selector;
+import reactor.pipe.selector.SelectorIndex;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class ConcurrentRegistry<K> implements DefaultingRegistry<K> {
 
-  private final Atom<PMap<K, PVector<Registration<K>>>>                       lookupMap;
-  // This one can't be map, since key miss matcher is a possibly non-capturing lambda,
-  // So we have no other means to work around the uniqueness
-  private final List<Tuple2<Selector<K>, Function<K, Map<K, KeyedConsumer>>>> keyMissMatchers;
+  private static final int  DEFAULT_KEY_MISS_CACHE_SIZE = 4096;
+  private static final long ACCESS_RESOLUTION_NANOS     = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final int  EVICTION_SAMPLE_SIZE        = 8;
+  private static final int  LOOKUP_CACHE_SIZE           = 16384;
+
+  private final Atom<PMap<K, PVector<Registration<K>>>>               lookupMap;
+  private final LookupCache<K, PVector<Registration<K>>>             lookupCache;
+  private final SelectorIndex<K, Function<K, Map<K, KeyedConsumer>>> keyMissMatchers;
+  private final AtomicLong                                           keyMissMatchersVersion;
+  private final KeyMissCache<K>                                      keyMissCache;
+  private final AtomicLong                                           size;
+
+  // Eviction of the registrations materialized by the key miss matchers, disabled when null
+  private final Map<K, Materialization<K>>                           materializations;
+  private final int                                                  maxMaterialized;
+  private final long                                                 materializedIdleNanos;
+  private final KeyMissCache<K>                                      evictedKeys;
+  private final AtomicLong                                           lastIdleSweep;
+  private final AtomicLong                                           evictions;
+  private final AtomicLong                                           rematerializations;
+  // Position of the eviction sample in the materialized keys, guarded by this
+  private Iterator<Map.Entry<K, Materialization<K>>>                 evictionHand;
 
   public ConcurrentRegistry() {
+    this(DEFAULT_KEY_MISS_CACHE_SIZE);
+  }
+
+  /**
+   * @param keyMissCacheSize number of keys that matched nothing to remember, so that
+   *                         they don't have to be matched against the key miss matchers again
+   */
+  public ConcurrentRegistry(int keyMissCacheSize) {
+    this(keyMissCacheSize, -1, -1, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Creates a registry that evicts the registrations materialized by the key miss matchers
+   * for a key (together with the registrations for the keys derived from it) when more than
+   * {@code maxMaterialized} keys are materialized, least recently selected first, or when the key
+   * wasn't selected for {@code idleTimeout}. Evicted keys are materialized again on the next
+   * select, starting off with a fresh state. A {@link reactor.pipe.Firehose} sweeps the idle
+   * keys of its registry periodically, once the first key miss matcher is added.
+   *
+   * @param maxMaterialized maximum number of materialized keys, non-positive for no limit
+   * @param idleTimeout     time after which the materialized key is evicted, non-positive for no timeout
+   */
+  public ConcurrentRegistry(int keyMissCacheSize,
+                            int maxMaterialized,
+                            long idleTimeout,
+                            TimeUnit unit) {
     this.lookupMap = new Atom<>(HashTreePMap.empty());
-    this.keyMissMatchers = new ArrayList<>();
+    this.lookupCache = new LookupCache<>(LOOKUP_CACHE_SIZE);
+    this.keyMissMatchers = new SelectorIndex<>();
+    this.keyMissMatchersVersion = new AtomicLong();
+    this.keyMissCache = new KeyMissCache<>(keyMissCacheSize);
+    this.size = new AtomicLong();
+
+    this.maxMaterialized = maxMaterialized > 0 ? maxMaterialized : Integer.MAX_VALUE;
+    this.materializedIdleNanos = idleTimeout > 0 ? unit.toNanos(idleTimeout) : Long.MAX_VALUE;
+    if (maxMaterialized > 0 || idleTimeout > 0) {
+      this.materializations = new ConcurrentHashMap<>();
+      this.evictedKeys = new KeyMissCache<>(keyMissCacheSize);
+    } else {
+      this.materializations = null;
+      this.evictedKeys = null;
+    }
+    this.lastIdleSweep = new AtomicLong(System.nanoTime());
+    this.evictions = new AtomicLong();
+    this.rematerializations = new AtomicLong();
   }
 
   @Override
   public void addKeyMissMatcher(Selector<K> matcher, Function<K, Map<K, KeyedConsumer>> supplier) {
-    this.keyMissMatchers.add(Tuple.of(matcher, supplier));
+    this.keyMissMatchers.add(matcher, supplier);
+    // Previously recorded misses might match the new matcher
+    this.keyMissMatchersVersion.incrementAndGet();
   }
 
   @Override
@@ -55,13 +122,19 @@ public class ConcurrentRegistry<K> implements DefaultingRegistry<K> {
                                                              }
                                                            });
       final PVector<Registration<K>> emptyArr = TreePVector.singleton(reg);
+      // Registered concurrently in the meantime, replaced by the update below
+      final long[] replaced = new long[1];
 
       lookupMap.update(new UnaryOperator<PMap<K, PVector<Registration<K>>>>() {
         @Override
         public PMap<K, PVector<Registration<K>>> apply(PMap<K, PVector<Registration<K>>> old) {
+          PVector<Registration<K>> existing = old.get(obj);
+          replaced[0] = existing == null ? 0 : existing.size();
           return old.plus(obj, emptyArr);
         }
       });
+      lookupCache.invalidate(Collections.singleton(obj));
+      size.addAndGet(1 - replaced[0]);
 
       return reg;
 
@@ -84,6 +157,8 @@ public class ConcurrentRegistry<K> implements DefaultingRegistry<K> {
           return old.plus(obj, old.get(obj).plus(reg));
         }
       });
+      lookupCache.invalidate(Collections.singleton(obj));
+      size.incrementAndGet();
 
       return reg;
     }
@@ -92,17 +167,30 @@ public class ConcurrentRegistry<K> implements DefaultingRegistry<K> {
 
   @Override
   public boolean unregister(K key) {
-    return lookupMap.updateAndReturnOther((PMap<K, PVector<Registration<K>>> map) -> {
+    if (materializations != null) {
+      materializations.remove(key);
+    }
+    PVector<Registration<K>> removed = lookupMap.updateAndReturnOther((PMap<K, PVector<Registration<K>>> map) -> {
       PMap<K, PVector<Registration<K>>> newv = map.minus(key);
 
       return Tuple.of(newv,
-                      map.containsKey(key));
+                      map.get(key));
     });
+    lookupCache.invalidate(Collections.singleton(key));
+    if (removed == null) {
+      return false;
+    }
+    size.addAndGet(-removed.size());
+    return true;
   }
 
   @Override
   public boolean unregister(Predicate<K> pred) {
-    return lookupMap.updateAndReturnOther((map) -> {
+    if (materializations != null) {
+      materializations.keySet().removeIf(pred::test);
+    }
+    long[] removed = new long[1];
+    List<K> unsubscribed = lookupMap.updateAndReturnOther((map) -> {
       List<K> unsubscribeKys = map.keySet()
                                   .stream()
                                   .filter(pred::test)
@@ -110,67 +198,232 @@ public class ConcurrentRegistry<K> implements DefaultingRegistry<K> {
 
       PMap<K, PVector<Registration<K>>> newv = map.minusAll(unsubscribeKys);
 
+      removed[0] = 0;
+      for (K key : unsubscribeKys) {
+        removed[0] += map.get(key).size();
+      }
       return Tuple.of(newv,
-                      !unsubscribeKys.isEmpty());
+                      unsubscribeKys);
     });
+    lookupCache.invalidate(unsubscribed);
+    size.addAndGet(-removed[0]);
+    return !unsubscribed.isEmpty();
   }
 
   @Override
   public List<Registration<K>> select(final K key) {
-    return
-      lookupMap.update(old -> {
-        if (old.containsKey(key)) {
-          return old;
-        } else {
-          return keyMissMatchers.stream()
-                                .filter((m) -> {
-                                  return m.getT1().test(key);
-                                })
-                                .map(
-                                  (Tuple2<Selector<K>, Function<K, Map<K, KeyedConsumer>>> m) -> {
-                                    return m.getT2();
-                                  })
-                                .flatMap((Function<K, Map<K, KeyedConsumer>> m) -> {
-                                  return m.apply(key).entrySet().stream();
-                                })
-                                .reduce(old,
-                                        (PMap<K, PVector<Registration<K>>> acc,
-                                         Map.Entry<K, KeyedConsumer> entry) -> {
-                                          Registration<K> reg = new SimpleRegistration<K, KeyedConsumer>(
-                                            entry.getKey(),
-                                            entry.getValue(),
-                                            // TODO: Fix removes!
-                                            null);
-
-                                          if (acc.containsKey(entry.getKey())) {
-                                            return acc.plus(entry.getKey(),
-                                                            acc.get(entry.getKey()).plus(reg));
-                                          } else {
-                                            return acc.plus(entry.getKey(),
-                                                            TreePVector.singleton(reg));
-                                          }
-                                        },
-                                        PMap::plusAll);
+    // Hit path only reads the current map, no update closure or fallback registration is created
+    PVector<Registration<K>> registrations = lookup(key);
+    if (registrations != null) {
+      if (materializations != null) {
+        touch(key);
+      }
+      return registrations;
+    }
+
+    // Has to be read before the matchers are scanned, so that a matcher added in the meantime
+    // invalidates the miss recorded below
+    long version = keyMissMatchersVersion.get();
+    if (keyMissCache.contains(key, version)) {
+      return TreePVector.empty();
+    }
+
+    Map<K, PVector<Registration<K>>> materialized = new HashMap<>();
+    long added = 0;
+    for (Function<K, Map<K, KeyedConsumer>> supplier : keyMissMatchers.match(key)) {
+      for (Map.Entry<K, KeyedConsumer> entry : supplier.apply(key).entrySet()) {
+        Registration<K> reg = new SimpleRegistration<K, KeyedConsumer>(entry.getKey(),
+                                                                       entry.getValue(),
+                                                                       // TODO: Fix removes!
+                                                                       null);
+        PVector<Registration<K>> regs = materialized.get(entry.getKey());
+        materialized.put(entry.getKey(),
+                         regs == null ? TreePVector.singleton(reg) : regs.plus(reg));
+        added++;
+      }
+    }
+
+    if (materialized.isEmpty()) {
+      keyMissCache.add(key, version);
+      return TreePVector.empty();
+    }
+
+    boolean[] installed = new boolean[1];
+    PVector<Registration<K>> selected = lookupMap.update(old -> {
+      if (old.containsKey(key)) {
+        // Materialized concurrently
+        installed[0] = false;
+        return old;
+      }
+
+      PMap<K, PVector<Registration<K>>> acc = old;
+      for (Map.Entry<K, PVector<Registration<K>>> entry : materialized.entrySet()) {
+        PVector<Registration<K>> existing = acc.get(entry.getKey());
+        acc = acc.plus(entry.getKey(),
+                       existing == null ? entry.getValue() : existing.plusAll(entry.getValue()));
+      }
+      installed[0] = true;
+      return acc;
+    }).getOrDefault(key, TreePVector.empty());
+
+    if (installed[0]) {
+      lookupCache.invalidate(materialized.keySet());
+      size.addAndGet(added);
+    }
+    if (materializations != null && installed[0]) {
+      materializations.put(key, new Materialization<>(materialized, System.nanoTime()));
+      if (evictedKeys.contains(key, 0)) {
+        rematerializations.incrementAndGet();
+      }
+      evictIfNeeded();
+    }
+
+    return selected;
+  }
+
+  /**
+   * Evicts the materialized keys that weren't selected for longer than the idle timeout.
+   * Called whenever keys are materialized, and scheduled to evict the keys in the absence
+   * of misses.
+   *
+   * @return number of evicted keys
+   */
+  public int evictIdle() {
+    if (materializations == null || materializedIdleNanos == Long.MAX_VALUE) {
+      return 0;
+    }
+
+    long now = System.nanoTime();
+    lastIdleSweep.set(now);
+    int evicted = 0;
+    for (Map.Entry<K, Materialization<K>> entry : materializations.entrySet()) {
+      if (now - entry.getValue().lastAccess >= materializedIdleNanos && evict(entry.getKey(), entry.getValue())) {
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * @return time after which a materialized key is evicted, or {@code -1} if keys aren't evicted when idle
+   */
+  public long getIdleTimeout(TimeUnit unit) {
+    return materializedIdleNanos == Long.MAX_VALUE ? -1 : unit.convert(materializedIdleNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return number of keys evicted so far
+   */
+  public long getEvictions() {
+    return evictions.get();
+  }
 
+  /**
+   * @return number of previously evicted keys that were materialized again
+   */
+  public long getRematerializations() {
+    return rematerializations.get();
+  }
+
+  /**
+   * @return number of currently materialized keys, only tracked when eviction is enabled
+   */
+  public int getMaterializedCount() {
+    return materializations == null ? 0 : materializations.size();
+  }
+
+  /**
+   * Looks the key up through the {@link LookupCache}, a lookup in the persistent map itself
+   * allocates an iterator over the entries of the hash bucket. Keys are only cached once
+   * they're found, and at most {@code LOOKUP_CACHE_SIZE} of them.
+   */
+  private PVector<Registration<K>> lookup(K key) {
+    PVector<Registration<K>> registrations = lookupCache.get(key);
+    if (registrations == null) {
+      long version = lookupCache.version();
+      registrations = lookupMap.deref().get(key);
+      if (registrations != null) {
+        lookupCache.put(key, registrations, version);
+      }
+    }
+    return registrations;
+  }
 
+  private void touch(K key) {
+    Materialization<K> materialization = materializations.get(key);
+    if (materialization != null) {
+      long now = System.nanoTime();
+      // Avoids writing to the shared field on every single hit
+      if (now - materialization.lastAccess > ACCESS_RESOLUTION_NANOS) {
+        materialization.lastAccess = now;
+      }
+    }
+  }
+
+  private void evictIfNeeded() {
+    long lastSweep = lastIdleSweep.get();
+    if (materializedIdleNanos != Long.MAX_VALUE &&
+        System.nanoTime() - lastSweep >= materializedIdleNanos / 2 &&
+        lastIdleSweep.compareAndSet(lastSweep, System.nanoTime())) {
+      evictIdle();
+    }
+
+    if (materializations.size() > maxMaterialized) {
+      evictLeastRecentlyUsed();
+    }
+  }
+
+  /**
+   * Approximates LRU: evicts the least recently selected of a small sample of the materialized
+   * keys, rather than sorting all of them. The sample moves on through the keys with every
+   * eviction like a clock hand, so every key is looked at in turn.
+   */
+  private synchronized void evictLeastRecentlyUsed() {
+    while (materializations.size() > maxMaterialized) {
+      Map.Entry<K, Materialization<K>> oldest = null;
+      for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+        if (evictionHand == null || !evictionHand.hasNext()) {
+          evictionHand = materializations.entrySet().iterator();
+          if (!evictionHand.hasNext()) {
+            return;
+          }
         }
-				// TODO: Also, what's stupid, we _always_ create Registration here, even if we could successfully do without
-				}).getOrDefault(key, TreePVector.singleton(new Registration<K>() { // Needs a WARN?
-        @Override
-        public K getSelector() {
-          return key;
+        Map.Entry<K, Materialization<K>> entry = evictionHand.next();
+        if (oldest == null || entry.getValue().lastAccess - oldest.getValue().lastAccess < 0) {
+          oldest = entry;
         }
+      }
+      evict(oldest.getKey(), oldest.getValue());
+    }
+  }
 
-        @Override
-        public KeyedConsumer getObject() {
-          return (k, v) -> {
-          };
-        }
-      }));
+  private boolean evict(K key, Materialization<K> materialization) {
+    if (!materializations.remove(key, materialization)) {
+      return false;
+    }
 
+    // Only the materialized registrations are removed, anything registered explicitly stays
+    long[] removed = new long[1];
+    lookupMap.update(old -> {
+      PMap<K, PVector<Registration<K>>> acc = old;
+      removed[0] = 0;
+      for (Map.Entry<K, PVector<Registration<K>>> entry : materialization.registrations.entrySet()) {
+        PVector<Registration<K>> existing = acc.get(entry.getKey());
+        if (existing != null) {
+          PVector<Registration<K>> remaining = existing.minusAll(entry.getValue());
+          removed[0] += existing.size() - remaining.size();
+          acc = remaining.isEmpty() ? acc.minus(entry.getKey()) : acc.plus(entry.getKey(), remaining);
+        }
+      }
+      return acc;
+    });
+    lookupCache.invalidate(materialization.registrations.keySet());
+    size.addAndGet(-removed[0]);
+    evictedKeys.add(key, 0);
+    evictions.incrementAndGet();
+    return true;
   }
 
-
   @Override
   public void clear() {
     // TODO: FIXME
@@ -189,4 +442,19 @@ public class ConcurrentRegistry<K> implements DefaultingRegistry<K> {
 
 
   }
+
+  @Override
+  public long size() {
+    return size.get();
+  }
+
+  private static class Materialization<K> {
+    private final Map<K, PVector<Registration<K>>> registrations;
+    private volatile long                         lastAccess;
+
+    private Materialization(Map<K, PVector<Registration<K>>> registrations, long lastAccess) {
+      this.registrations = registrations;
+      this.lastAccess = lastAccess;
+    }
+  }
 }
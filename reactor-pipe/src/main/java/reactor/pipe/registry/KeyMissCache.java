@@ -0,0 +1,44 @@
+package reactor.pipe.registry;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, direct-mapped cache of the keys that matched none of the key miss matchers.
+ * Colliding keys simply overwrite each other, lookups never allocate. Every key is recorded
+ * with a version, so that all the keys can be invalidated at once by bumping the version.
+ */
+class KeyMissCache<K> {
+
+  private final AtomicReferenceArray<KeyMiss<K>> misses;
+  private final int                              mask;
+
+  KeyMissCache(int size) {
+    int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+    this.misses = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+  }
+
+  boolean contains(K key, long version) {
+    KeyMiss<K> miss = misses.get(index(key));
+    return miss != null && miss.version == version && miss.key.equals(key);
+  }
+
+  void add(K key, long version) {
+    misses.lazySet(index(key), new KeyMiss<>(key, version));
+  }
+
+  private int index(K key) {
+    int h = key.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  private static class KeyMiss<K> {
+    private final K    key;
+    private final long version;
+
+    private KeyMiss(K key, long version) {
+      this.key = key;
+      this.version = version;
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package reactor.pipe.registry;
+
+import reactor.pipe.consumer.LongKeyedConsumer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registry of the consumers keyed by a primitive {@code long}, an open-addressing table with
+ * linear probing. Keys are stored unboxed next to the copy-on-write consumer arrays, so the
+ * registry takes a fraction of the memory of a map of {@link reactor.pipe.key.Key}s and selecting
+ * a key neither allocates nor calls {@code hashCode} and {@code equals}.
+ *
+ * Selects are lock-free, updates are serialized. The consumers of a slot are published before
+ * its key, so a reader that finds the key always sees its consumers. Unregistered keys keep
+ * their slots until the table is rehashed.
+ */
+public class LongRegistry {
+
+  private static final LongKeyedConsumer[] NO_CONSUMERS     = new LongKeyedConsumer[0];
+  // Marks a free slot, so the consumers of the key 0 are held separately
+  private static final long                FREE             = 0L;
+  private static final float               LOAD_FACTOR      = 0.5f;
+  private static final int                 DEFAULT_CAPACITY = 1024;
+
+  private volatile Table               table;
+  private volatile LongKeyedConsumer[] zeroKeyConsumers;
+  private volatile int                 registrations;
+  // Slots that are taken, including the ones of the unregistered keys, guarded by this
+  private          int                 usedSlots;
+  private          int                 liveKeys;
+
+  public LongRegistry() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param expectedKeys number of keys the registry can hold before the table has to grow
+   */
+  public LongRegistry(int expectedKeys) {
+    this.table = new Table(capacityFor(expectedKeys));
+    this.zeroKeyConsumers = NO_CONSUMERS;
+  }
+
+  /**
+   * @return consumers of the key, or an empty array if there are none
+   */
+  public LongKeyedConsumer[] select(long key) {
+    if (key == FREE) {
+      return zeroKeyConsumers;
+    }
+
+    Table table = this.table;
+    for (int idx = table.index(key); ; idx = (idx + 1) & table.mask) {
+      long slotKey = table.keys.get(idx);
+      if (slotKey == key) {
+        LongKeyedConsumer[] consumers = table.consumers.get(idx);
+        return consumers != null ? consumers : NO_CONSUMERS;
+      }
+      if (slotKey == FREE) {
+        return NO_CONSUMERS;
+      }
+    }
+  }
+
+  public synchronized <V> void register(long key, LongKeyedConsumer<V> consumer) {
+    if (key == FREE) {
+      zeroKeyConsumers = append(zeroKeyConsumers, consumer);
+      registrations++;
+      return;
+    }
+
+    int idx = slot(table, key);
+    if (table.keys.get(idx) == key) {
+      LongKeyedConsumer[] existing = table.consumers.get(idx);
+      if (existing == null) {
+        liveKeys++;
+      }
+      table.consumers.set(idx, append(existing != null ? existing : NO_CONSUMERS, consumer));
+    } else {
+      if (usedSlots + 1 > table.threshold) {
+        rehash();
+        idx = slot(table, key);
+      }
+      table.consumers.set(idx, new LongKeyedConsumer[]{consumer});
+      table.keys.set(idx, key);
+      usedSlots++;
+      liveKeys++;
+    }
+    registrations++;
+  }
+
+  /**
+   * @return {@code true} if the key had any consumers
+   */
+  public synchronized boolean unregister(long key) {
+    if (key == FREE) {
+      int removed = zeroKeyConsumers.length;
+      zeroKeyConsumers = NO_CONSUMERS;
+      registrations -= removed;
+      return removed > 0;
+    }
+
+    int idx = slot(table, key);
+    LongKeyedConsumer[] existing = table.consumers.get(idx);
+    if (table.keys.get(idx) != key || existing == null) {
+      return false;
+    }
+    table.consumers.set(idx, null);
+    liveKeys--;
+    registrations -= existing.length;
+    return true;
+  }
+
+  public synchronized void clear() {
+    table = new Table(table.keys.length());
+    zeroKeyConsumers = NO_CONSUMERS;
+    registrations = 0;
+    usedSlots = 0;
+    liveKeys = 0;
+  }
+
+  /**
+   * @return number of registered consumers
+   */
+  public int size() {
+    return registrations;
+  }
+
+  /**
+   * @return index of the slot holding the key, or of the free slot where it belongs
+   */
+  private static int slot(Table table, long key) {
+    for (int idx = table.index(key); ; idx = (idx + 1) & table.mask) {
+      long slotKey = table.keys.get(idx);
+      if (slotKey == key || slotKey == FREE) {
+        return idx;
+      }
+    }
+  }
+
+  /**
+   * Copies the live keys to a new table, which is only published once it's complete,
+   * so readers of the old table are unaffected. Slots of the unregistered keys are dropped,
+   * so when those take most of the table, it's rehashed without growing.
+   */
+  private void rehash() {
+    Table old = this.table;
+    int capacity = old.keys.length();
+    if (liveKeys + 1 > old.threshold / 2) {
+      capacity <<= 1;
+    }
+    Table resized = new Table(capacity);
+    for (int i = 0; i < old.keys.length(); i++) {
+      long key = old.keys.get(i);
+      LongKeyedConsumer[] consumers = old.consumers.get(i);
+      if (key != FREE && consumers != null) {
+        int idx = slot(resized, key);
+        resized.consumers.lazySet(idx, consumers);
+        resized.keys.lazySet(idx, key);
+      }
+    }
+    usedSlots = liveKeys;
+    this.table = resized;
+  }
+
+  private static int capacityFor(int keys) {
+    int capacity = (int) Math.ceil(Math.max(keys, 2) / LOAD_FACTOR);
+    return Integer.highestOneBit(capacity - 1) << 1;
+  }
+
+  private static LongKeyedConsumer[] append(LongKeyedConsumer[] existing, LongKeyedConsumer consumer) {
+    LongKeyedConsumer[] consumers = Arrays.copyOf(existing, existing.length + 1);
+    consumers[existing.length] = consumer;
+    return consumers;
+  }
+
+  private static final class Table {
+    private final AtomicLongArray                            keys;
+    private final AtomicReferenceArray<LongKeyedConsumer[]> consumers;
+    private final int                                        mask;
+    private final int                                        threshold;
+
+    private Table(int capacity) {
+      this.keys = new AtomicLongArray(capacity);
+      this.consumers = new AtomicReferenceArray<>(capacity);
+      this.mask = capacity - 1;
+      this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int index(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & mask;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package reactor.pipe.registry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, direct-mapped cache of the values found for the keys in a persistent map, since
+ * a lookup in the map itself allocates. Colliding keys simply overwrite each other, hits never
+ * allocate.
+ *
+ * Updates of the map only invalidate the keys they change: every update takes a new version
+ * and marks the slots of its keys with it, once the new map is in place. Values are cached
+ * with the version read before the map was, and never over a slot marked by a later version,
+ * so a value read from a map that missed an update is either refused or overwritten by the
+ * mark of that update. Slot versions only ever grow.
+ */
+class LookupCache<K, V> {
+
+  private final AtomicReferenceArray<Slot<K, V>> slots;
+  private final int                              mask;
+  private final AtomicLong                       version;
+
+  LookupCache(int size) {
+    int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+    this.version = new AtomicLong();
+  }
+
+  /**
+   * @return cached value of the key, {@code null} if it isn't cached
+   */
+  V get(K key) {
+    Slot<K, V> slot = slots.get(index(key));
+    if (slot != null && slot.value != null && slot.key.equals(key)) {
+      return slot.value;
+    }
+    return null;
+  }
+
+  /**
+   * @return version to cache the values read from the map afterwards with
+   */
+  long version() {
+    return version.get();
+  }
+
+  /**
+   * Caches the value read from the map after the {@link #version()} was.
+   */
+  void put(K key, V value, long version) {
+    int idx = index(key);
+    Slot<K, V> current = slots.get(idx);
+    if (current == null || current.version <= version) {
+      slots.compareAndSet(idx, current, new Slot<>(key, value, version));
+    }
+  }
+
+  /**
+   * Invalidates the keys changed by an update, has to be called after the updated map is in place.
+   */
+  void invalidate(Iterable<K> keys) {
+    long updated = version.incrementAndGet();
+    for (K key : keys) {
+      int idx = index(key);
+      Slot<K, V> current;
+      do {
+        current = slots.get(idx);
+        if (current != null && current.version >= updated) {
+          // Cached after the update by now
+          break;
+        }
+      } while (!slots.compareAndSet(idx, current, new Slot<>(key, null, updated)));
+    }
+  }
+
+  private int index(K key) {
+    int h = key.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  private static class Slot<K, V> {
+    private final K    key;
+    // Null once invalidated
+    private final V    value;
+    private final long version;
+
+    private Slot(K key, V value, long version) {
+      this.key = key;
+      this.value = value;
+      this.version = version;
+    }
+  }
+}
@@ -20,4 +20,12 @@ public interface Registry<K> {
   void clear();
 
   Stream<Registration<K>> stream();
+
+  /**
+   * @return number of registered consumers, counts them one by one unless the registry
+   * keeps count of them
+   */
+  default long size() {
+    return stream().count();
+  }
 }
@@ -0,0 +1,192 @@
+package reactor.pipe.registry;
+
+import reactor.fn.Function;
+import reactor.fn.Predicate;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.selector.Selector;
+import reactor.pipe.selector.SelectorIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Registry backed by a {@link ConcurrentHashMap}, which locks only the bin of the key that is
+ * being updated, holding copy-on-write registration lists.
+ *
+ * Unlike {@link ConcurrentRegistry}, which copies a path of the persistent map and serializes
+ * all the updates on a single atom, registering and materializing keys here only contends
+ * on the same bin, which makes it a better fit for large key spaces and registration storms.
+ * Selecting the key never allocates.
+ */
+public class StripedRegistry<K> implements DefaultingRegistry<K> {
+
+  private static final int DEFAULT_INITIAL_CAPACITY    = 1024;
+  private static final int DEFAULT_CONCURRENCY_LEVEL   = 64;
+  private static final int DEFAULT_KEY_MISS_CACHE_SIZE = 4096;
+
+  private final ConcurrentHashMap<K, List<Registration<K>>>           lookupMap;
+  private final SelectorIndex<K, Function<K, Map<K, KeyedConsumer>>> keyMissMatchers;
+  private final AtomicLong                                           keyMissMatchersVersion;
+  private final KeyMissCache<K>                                      keyMissCache;
+  private final LongAdder                                            size;
+
+  public StripedRegistry() {
+    this(DEFAULT_INITIAL_CAPACITY, DEFAULT_CONCURRENCY_LEVEL, DEFAULT_KEY_MISS_CACHE_SIZE);
+  }
+
+  /**
+   * @param initialCapacity  expected number of keys
+   * @param concurrencyLevel expected number of concurrently updating threads
+   * @param keyMissCacheSize number of keys that matched nothing to remember
+   */
+  public StripedRegistry(int initialCapacity,
+                         int concurrencyLevel,
+                         int keyMissCacheSize) {
+    this.lookupMap = new ConcurrentHashMap<>(initialCapacity, 0.75f, concurrencyLevel);
+    this.keyMissMatchers = new SelectorIndex<>();
+    this.keyMissMatchersVersion = new AtomicLong();
+    this.keyMissCache = new KeyMissCache<>(keyMissCacheSize);
+    this.size = new LongAdder();
+  }
+
+  @Override
+  public void addKeyMissMatcher(Selector<K> matcher, Function<K, Map<K, KeyedConsumer>> supplier) {
+    this.keyMissMatchers.add(matcher, supplier);
+    // Previously recorded misses might match the new matcher
+    this.keyMissMatchersVersion.incrementAndGet();
+  }
+
+  @Override
+  public <V extends KeyedConsumer> Registration<K> register(K key, V handler) {
+    Registration<K> reg = new SimpleRegistration<>(key, handler, null);
+    lookupMap.merge(key, Collections.singletonList(reg), StripedRegistry::concat);
+    size.increment();
+    return reg;
+  }
+
+  @Override
+  public boolean unregister(K key) {
+    List<Registration<K>> removed = lookupMap.remove(key);
+    if (removed == null) {
+      return false;
+    }
+    size.add(-removed.size());
+    return true;
+  }
+
+  @Override
+  public boolean unregister(Predicate<K> pred) {
+    boolean removed = false;
+    for (K key : lookupMap.keySet()) {
+      if (pred.test(key)) {
+        removed |= unregister(key);
+      }
+    }
+    return removed;
+  }
+
+  @Override
+  public List<Registration<K>> select(K key) {
+    List<Registration<K>> registrations = lookupMap.get(key);
+    if (registrations != null) {
+      return registrations;
+    }
+
+    long version = keyMissMatchersVersion.get();
+    if (keyMissCache.contains(key, version)) {
+      return Collections.emptyList();
+    }
+
+    Map<K, List<Registration<K>>> materialized = new HashMap<>();
+    for (Function<K, Map<K, KeyedConsumer>> supplier : keyMissMatchers.match(key)) {
+      for (Map.Entry<K, KeyedConsumer> entry : supplier.apply(key).entrySet()) {
+        Registration<K> reg = new SimpleRegistration<K, KeyedConsumer>(entry.getKey(),
+                                                                       entry.getValue(),
+                                                                       null);
+        materialized.merge(entry.getKey(), Collections.singletonList(reg), StripedRegistry::concat);
+      }
+    }
+
+    if (materialized.isEmpty()) {
+      keyMissCache.add(key, version);
+      return Collections.emptyList();
+    }
+
+    // Derived keys go first, so that by the time the key is visible, everything it
+    // dispatches to is in place
+    for (Map.Entry<K, List<Registration<K>>> entry : materialized.entrySet()) {
+      if (!entry.getKey().equals(key)) {
+        lookupMap.merge(entry.getKey(), entry.getValue(), StripedRegistry::concat);
+        size.add(entry.getValue().size());
+      }
+    }
+
+    List<Registration<K>> own = materialized.get(key);
+    if (own == null) {
+      return Collections.emptyList();
+    }
+
+    List<Registration<K>> installed = lookupMap.computeIfAbsent(key, k -> own);
+    if (installed == own) {
+      size.add(own.size());
+    } else {
+      // Materialized concurrently, take the derived registrations back
+      for (Map.Entry<K, List<Registration<K>>> entry : materialized.entrySet()) {
+        if (!entry.getKey().equals(key)) {
+          lookupMap.computeIfPresent(entry.getKey(), (k, existing) -> {
+            List<Registration<K>> remaining = minus(existing, entry.getValue());
+            size.add((remaining == null ? 0 : remaining.size()) - existing.size());
+            return remaining;
+          });
+        }
+      }
+    }
+    return installed;
+  }
+
+  @Override
+  public void clear() {
+    unregister(key -> true);
+  }
+
+  @Override
+  public Iterator<Registration<K>> iterator() {
+    return this.stream().iterator();
+  }
+
+  @Override
+  public Stream<Registration<K>> stream() {
+    return lookupMap.values().stream().flatMap(List::stream);
+  }
+
+  @Override
+  public long size() {
+    return size.sum();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K> List<Registration<K>> concat(List<Registration<K>> existing,
+                                                  List<Registration<K>> added) {
+    Registration<K>[] registrations = existing.toArray(new Registration[existing.size() + added.size()]);
+    for (int i = 0; i < added.size(); i++) {
+      registrations[existing.size() + i] = added.get(i);
+    }
+    return Collections.unmodifiableList(Arrays.asList(registrations));
+  }
+
+  private static <K> List<Registration<K>> minus(List<Registration<K>> existing,
+                                                 List<Registration<K>> removed) {
+    List<Registration<K>> remaining = new ArrayList<>(existing);
+    remaining.removeAll(removed);
+    return remaining.isEmpty() ? null : Collections.unmodifiableList(remaining);
+  }
+}
@@ -0,0 +1,241 @@
+package reactor.pipe.selector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Index of {@link Selector}s, each with an attached value, that finds the selectors matching
+ * the key without testing every single one of them:
+ *
+ * <ul>
+ * <li>{@link ObjectSelector}s are looked up by the hash of the key</li>
+ * <li>{@link UriPathSelector}s are kept in a trie of the template path segments, so that only
+ * the templates sharing the literal segments with the key are tested. Templates are compiled
+ * into regular expressions, so only the ones made of literals, path variables and splats are
+ * kept in the trie, the ones using any other regular expression are tested linearly</li>
+ * <li>{@link ClassSelector} matches are cached per key class</li>
+ * <li>{@link SetMembershipSelector}s are looked up by the set elements, taken at the time the
+ * selector is added, so the sets should not change afterwards</li>
+ * <li>{@link MatchAllSelector}s always match</li>
+ * <li>any other selector is tested linearly</li>
+ * </ul>
+ *
+ * Adding selectors is thread-safe and can be done concurrently with matching. Matched values are
+ * returned in the order their selectors were added.
+ *
+ * @param <K> type of the matched keys
+ * @param <V> type of the attached values
+ */
+public class SelectorIndex<K, V> {
+
+  private static final String  URI_SEPARATOR = "/";
+  private static final Pattern URI_VARIABLE  = Pattern.compile("\\{[^/]+?\\}");
+
+  private final AtomicLong                                     order;
+  private final Map<Object, List<IndexEntry<K, V>>>            objectIndex;
+  private final UriNode<K, V>                                  uriRoot;
+  private final List<IndexEntry<K, V>>                         classEntries;
+  private volatile Map<Class<?>, List<IndexEntry<K, V>>>       classCache;
+  private final Map<Object, List<IndexEntry<K, V>>>            setIndex;
+  private final List<IndexEntry<K, V>>                         matchAll;
+  private final List<IndexEntry<K, V>>                         linear;
+
+  public SelectorIndex() {
+    this.order = new AtomicLong();
+    this.objectIndex = new ConcurrentHashMap<>();
+    this.uriRoot = new UriNode<>();
+    this.classEntries = new CopyOnWriteArrayList<>();
+    this.classCache = new ConcurrentHashMap<>();
+    this.setIndex = new ConcurrentHashMap<>();
+    this.matchAll = new CopyOnWriteArrayList<>();
+    this.linear = new CopyOnWriteArrayList<>();
+  }
+
+  @SuppressWarnings("unchecked")
+  public synchronized void add(Selector<K> selector, V value) {
+    IndexEntry<K, V> entry = new IndexEntry<>(selector, value, order.getAndIncrement());
+
+    if (selector.getClass() == ObjectSelector.class && ((ObjectSelector) selector).getObject() != null) {
+      bucket(objectIndex, ((ObjectSelector) selector).getObject()).add(entry);
+    } else if (selector.getClass() == UriPathSelector.class
+               && isIndexable(((UriPathSelector) selector).getObject().getTemplate())) {
+      uriRoot.add(((UriPathSelector) selector).getObject().getTemplate().split(URI_SEPARATOR, -1), 0, entry);
+    } else if (selector instanceof ClassSelector) {
+      classEntries.add(entry);
+      // Cached matches might miss the new selector, so they're dropped altogether
+      classCache = new ConcurrentHashMap<>();
+    } else if (selector.getClass() == SetMembershipSelector.class) {
+      for (Object member : ((SetMembershipSelector) selector).getSet()) {
+        bucket(setIndex, member).add(entry);
+      }
+    } else if (selector.getClass() == MatchAllSelector.class) {
+      matchAll.add(entry);
+    } else {
+      linear.add(entry);
+    }
+  }
+
+  /**
+   * @return values of all the selectors matching the {@code key}
+   */
+  public List<V> match(K key) {
+    List<IndexEntry<K, V>> candidates = new ArrayList<>();
+
+    addAll(candidates, objectIndex.get(key));
+    if (key instanceof String) {
+      uriRoot.collect(((String) key).split(URI_SEPARATOR, -1), 0, candidates);
+    }
+    if (!classEntries.isEmpty()) {
+      candidates.addAll(classMatches(key));
+    }
+    addAll(candidates, setIndex.get(key));
+    candidates.addAll(matchAll);
+    candidates.addAll(linear);
+
+    if (candidates.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    candidates.sort(IndexEntry.ORDER);
+    List<V> matched = new ArrayList<>(candidates.size());
+    for (IndexEntry<K, V> candidate : candidates) {
+      // Index only narrows down the candidates, the selector has the final word
+      if (candidate.selector.test(key)) {
+        matched.add(candidate.value);
+      }
+    }
+    return matched;
+  }
+
+  private List<IndexEntry<K, V>> classMatches(K key) {
+    if (key instanceof Class) {
+      // Class keys are matched by their value rather than by their own class
+      return matching(classEntries, key);
+    }
+
+    // Cache has to be read before the selectors, see add
+    Map<Class<?>, List<IndexEntry<K, V>>> cache = this.classCache;
+    List<IndexEntry<K, V>> matches = cache.get(key.getClass());
+    if (matches == null) {
+      matches = matching(classEntries, key);
+      cache.put(key.getClass(), matches);
+    }
+    return matches;
+  }
+
+  private static <K, V> List<IndexEntry<K, V>> matching(List<IndexEntry<K, V>> entries, K key) {
+    List<IndexEntry<K, V>> matches = new ArrayList<>();
+    for (IndexEntry<K, V> entry : entries) {
+      if (entry.selector.test(key)) {
+        matches.add(entry);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * @return whether the template matches the keys the trie takes it for: path variables match
+   * within a single segment and splats match the rest of the path, but a bare {@code *} or a
+   * {@code .} can match the separators too
+   */
+  private static boolean isIndexable(String template) {
+    // Variables are replaced rather than removed, so that they can't join stars into a splat
+    String rest = URI_VARIABLE.matcher(template).replaceAll("_").replace("**", "");
+    return UriNode.isLiteral(rest);
+  }
+
+  private static <K, V> void addAll(List<IndexEntry<K, V>> candidates, List<IndexEntry<K, V>> entries) {
+    if (entries != null) {
+      candidates.addAll(entries);
+    }
+  }
+
+  private static <K, V> List<IndexEntry<K, V>> bucket(Map<Object, List<IndexEntry<K, V>>> index, Object key) {
+    return index.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>());
+  }
+
+  private static class IndexEntry<K, V> {
+    private static final Comparator<IndexEntry<?, ?>> ORDER = (a, b) -> Long.compare(a.order, b.order);
+
+    private final Selector<K> selector;
+    private final V           value;
+    private final long        order;
+
+    private IndexEntry(Selector<K> selector, V value, long order) {
+      this.selector = selector;
+      this.value = value;
+      this.order = order;
+    }
+  }
+
+  /**
+   * Node of the URI template trie. Literal segments are matched exactly, segments with path
+   * variables match any segment and splats match the rest of the path. Only templates that
+   * are {@link #isIndexable indexable} are added.
+   */
+  private static class UriNode<K, V> {
+    private final Map<String, UriNode<K, V>> literals;
+    private volatile UriNode<K, V>           variable;
+    private final List<IndexEntry<K, V>>     terminal;
+    private final List<IndexEntry<K, V>>     splat;
+
+    private UriNode() {
+      this.literals = new ConcurrentHashMap<>();
+      this.terminal = new CopyOnWriteArrayList<>();
+      this.splat = new CopyOnWriteArrayList<>();
+    }
+
+    private void add(String[] segments, int idx, IndexEntry<K, V> entry) {
+      if (idx == segments.length) {
+        terminal.add(entry);
+        return;
+      }
+
+      String segment = segments[idx];
+      if (segment.contains("**")) {
+        splat.add(entry);
+      } else if (segment.indexOf('{') == -1) {
+        literals.computeIfAbsent(segment, s -> new UriNode<>()).add(segments, idx + 1, entry);
+      } else {
+        if (variable == null) {
+          variable = new UriNode<>();
+        }
+        variable.add(segments, idx + 1, entry);
+      }
+    }
+
+    private void collect(String[] segments, int idx, List<IndexEntry<K, V>> candidates) {
+      candidates.addAll(splat);
+      if (idx == segments.length) {
+        candidates.addAll(terminal);
+        return;
+      }
+
+      UriNode<K, V> literal = literals.get(segments[idx]);
+      if (literal != null) {
+        literal.collect(segments, idx + 1, candidates);
+      }
+      UriNode<K, V> variable = this.variable;
+      if (variable != null) {
+        variable.collect(segments, idx + 1, candidates);
+      }
+    }
+
+    private static boolean isLiteral(String segment) {
+      // Templates are compiled into regular expressions, so anything special to them is not a literal
+      for (int i = 0; i < segment.length(); i++) {
+        if ("{}*.[]()?+^$|\\".indexOf(segment.charAt(i)) != -1) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
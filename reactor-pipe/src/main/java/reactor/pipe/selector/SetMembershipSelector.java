@@ -37,6 +37,10 @@ public class SetMembershipSelector implements Selector {
     this.set = set;
   }
 
+  public Set getSet() {
+    return set;
+  }
+
   @Override
   public boolean test(Object key) {
     return this.set.contains(key);
@@ -51,6 +51,7 @@ public class UriPathTemplate {
 	private final HashMap<String, Matcher>             matchers      = new HashMap<String, Matcher>();
 	private final HashMap<String, Map<String, Object>> vars          = new HashMap<String, Map<String, Object>>();
 
+	private final String  template;
 	private final Pattern uriPattern;
 
 	/**
@@ -59,6 +60,7 @@ public class UriPathTemplate {
 	 * @param uriPattern The pattern to be used by the template
 	 */
 	public UriPathTemplate(String uriPattern) {
+		this.template = uriPattern;
 		String s = "^" + uriPattern;
 
 		Matcher m = NAME_SPLAT_PATTERN.matcher(s);
@@ -90,6 +92,15 @@ public class UriPathTemplate {
 		this.uriPattern = Pattern.compile(s + "$");
 	}
 
+	/**
+	 * Returns the template this {@code UriPathTemplate} was created from.
+	 *
+	 * @return the template
+	 */
+	public String getTemplate() {
+		return template;
+	}
+
 	/**
 	 * Tests the given {@code uri} against this template, returning {@code true} if the
 	 * uri matches the template, {@code false} otherwise.
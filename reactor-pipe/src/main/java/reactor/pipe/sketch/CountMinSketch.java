@@ -0,0 +1,95 @@
+package reactor.pipe.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min estimate of the frequency of the values, in {@code depth} rows of {@code width}
+ * counters. An estimate never undercounts, and with probability {@code 1 - delta} overcounts by
+ * at most {@code epsilon} times the total count, for {@code width = e / epsilon} and
+ * {@code depth = ln(1 / delta)}.
+ *
+ * The rows are indexed by the combinations of two halves of a single 64-bit hash. Sketches of
+ * the same dimensions can be merged. Not thread-safe: the sketch is meant to be updated in
+ * place by a single writer at a time.
+ */
+public final class CountMinSketch {
+
+  private final int    width;
+  private final int    depth;
+  private final long[] counters;
+  private long         total;
+
+  public CountMinSketch(int width, int depth) {
+    if (width < 1 || depth < 1) {
+      throw new IllegalArgumentException("Width and depth have to be positive.");
+    }
+    this.width = width;
+    this.depth = depth;
+    this.counters = new long[width * depth];
+  }
+
+  public static CountMinSketch withError(double epsilon, double delta) {
+    if (epsilon <= 0 || delta <= 0 || delta >= 1) {
+      throw new IllegalArgumentException("Epsilon has to be positive and delta between 0 and 1.");
+    }
+    return new CountMinSketch((int) Math.ceil(Math.E / epsilon),
+                              (int) Math.ceil(Math.log(1 / delta)));
+  }
+
+  /**
+   * @return estimated frequency of the value, including the added count
+   */
+  public long add(Object value, long count) {
+    long hash = Hashing.hash(value);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      int idx = index(hash, row);
+      counters[idx] += count;
+      estimate = Math.min(estimate, counters[idx]);
+    }
+    total += count;
+    return estimate;
+  }
+
+  public long estimate(Object value) {
+    long hash = Hashing.hash(value);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counters[index(hash, row)]);
+    }
+    return estimate;
+  }
+
+  public long total() {
+    return total;
+  }
+
+  public void merge(CountMinSketch other) {
+    if (other.width != width || other.depth != depth) {
+      throw new IllegalArgumentException("Can't merge sketches of different dimensions.");
+    }
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] += other.counters[i];
+    }
+    total += other.total;
+  }
+
+  public CountMinSketch copy() {
+    CountMinSketch copy = new CountMinSketch(width, depth);
+    System.arraycopy(counters, 0, copy.counters, 0, counters.length);
+    copy.total = total;
+    return copy;
+  }
+
+  public void clear() {
+    Arrays.fill(counters, 0);
+    total = 0;
+  }
+
+  private int index(long hash, int row) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    int combined = h1 + row * h2;
+    return row * width + (combined & Integer.MAX_VALUE) % width;
+  }
+}
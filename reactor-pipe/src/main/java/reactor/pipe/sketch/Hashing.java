@@ -0,0 +1,27 @@
+package reactor.pipe.sketch;
+
+/**
+ * 64-bit hashes of the sketched values. {@link Object#hashCode()} is spread over 64 bits with
+ * the MurmurHash3 finalizer, {@code long}s are hashed as a whole rather than folded first.
+ */
+final class Hashing {
+
+  private Hashing() {
+  }
+
+  static long hash(Object value) {
+    if (value instanceof Long) {
+      return mix((Long) value);
+    }
+    return mix(value.hashCode());
+  }
+
+  static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,116 @@
+package reactor.pipe.sketch;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog estimate of the number of distinct values, with a standard error of about
+ * {@code 1.04 / sqrt(2^precision)} in {@code 2^precision} bytes, no matter how many values
+ * are added.
+ *
+ * The harmonic sum of the registers is kept up to date as they change, so that the estimate
+ * takes constant time and can be read on every value. Sketches of the same precision can be
+ * merged, for example those of the different shards of a key. Not thread-safe: the sketch is
+ * meant to be updated in place by a single writer at a time.
+ */
+public final class HyperLogLog {
+
+  private static final double[] INVERSE_POWERS = new double[66];
+
+  static {
+    for (int i = 0; i < INVERSE_POWERS.length; i++) {
+      INVERSE_POWERS[i] = Math.pow(2, -i);
+    }
+  }
+
+  private final int    precision;
+  private final byte[] registers;
+  private double       inverseSum;
+  private int          zeros;
+
+  /**
+   * @param precision number of bits of the hash that pick the register, from 4 to 18
+   */
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException("Precision has to be between 4 and 18.");
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+    this.inverseSum = registers.length;
+    this.zeros = registers.length;
+  }
+
+  public void add(Object value) {
+    addHash(Hashing.hash(value));
+  }
+
+  /**
+   * Adds a value by its own well-distributed 64-bit hash.
+   */
+  public void addHash(long hash) {
+    int idx = (int) (hash >>> (64 - precision));
+    // Position of the first set bit of the rest of the hash, the sentinel bit bounds it
+    int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    update(idx, rank);
+  }
+
+  public long estimate() {
+    int m = registers.length;
+    double raw = alpha(m) * m * m / inverseSum;
+    if (raw <= 2.5 * m && zeros > 0) {
+      // Linear counting is more accurate for the small cardinalities
+      return Math.round(m * Math.log((double) m / zeros));
+    }
+    return Math.round(raw);
+  }
+
+  /**
+   * Merges the other sketch into this one, the result estimates the distinct values of both.
+   */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Can't merge sketches of different precision.");
+    }
+    for (int i = 0; i < registers.length; i++) {
+      update(i, other.registers[i]);
+    }
+  }
+
+  public HyperLogLog copy() {
+    HyperLogLog copy = new HyperLogLog(precision);
+    System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+    copy.inverseSum = inverseSum;
+    copy.zeros = zeros;
+    return copy;
+  }
+
+  public void clear() {
+    Arrays.fill(registers, (byte) 0);
+    inverseSum = registers.length;
+    zeros = registers.length;
+  }
+
+  private void update(int idx, int rank) {
+    int current = registers[idx];
+    if (rank > current) {
+      registers[idx] = (byte) rank;
+      inverseSum += INVERSE_POWERS[rank] - INVERSE_POWERS[current];
+      if (current == 0) {
+        zeros--;
+      }
+    }
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+}
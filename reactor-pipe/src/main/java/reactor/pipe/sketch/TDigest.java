@@ -0,0 +1,222 @@
+package reactor.pipe.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Merging t-digest estimate of the quantiles of a distribution of {@code double}s. Values are
+ * summarized by centroids, which are small near the tails and larger towards the median, so the
+ * extreme quantiles, such as the latency percentiles, are the most accurate. The number of
+ * centroids is bounded by the {@code compression}, about 100 is usually enough.
+ *
+ * Added values are buffered and merged into the centroids once the buffer fills up, or before
+ * a quantile is read. All the arrays are allocated up front. Digests can be merged, for example
+ * those of the different shards of a key. Not thread-safe: the digest is meant to be updated
+ * in place by a single writer at a time.
+ */
+public final class TDigest {
+
+  private final double compression;
+  private final int    bufferSize;
+  // Centroids sorted by their means, followed by the buffered values
+  private double[]     means;
+  private double[]     weights;
+  private int          centroids;
+  private int          buffered;
+  // Scratch space for merging
+  private double[]     mergedMeans;
+  private double[]     mergedWeights;
+  private int[]        order;
+  private double       totalWeight;
+  private double       min;
+  private double       max;
+
+  public TDigest(double compression) {
+    if (compression < 10) {
+      throw new IllegalArgumentException("Compression has to be at least 10.");
+    }
+    this.compression = compression;
+    this.bufferSize = (int) (5 * compression);
+    // Any two neighbouring centroids span more than a unit of the scale function, which spans
+    // compression / 2 units, so there are never more than compression + 2 centroids
+    int capacity = (int) Math.ceil(compression) + 2 + bufferSize;
+    this.means = new double[capacity];
+    this.weights = new double[capacity];
+    this.mergedMeans = new double[capacity];
+    this.mergedWeights = new double[capacity];
+    this.order = new int[capacity];
+    this.min = Double.POSITIVE_INFINITY;
+    this.max = Double.NEGATIVE_INFINITY;
+  }
+
+  public void add(double value) {
+    add(value, 1);
+  }
+
+  public void add(double value, double weight) {
+    if (Double.isNaN(value)) {
+      throw new IllegalArgumentException("Can't add NaN to a digest.");
+    }
+    if (buffered == bufferSize) {
+      compress();
+    }
+    means[centroids + buffered] = value;
+    weights[centroids + buffered] = weight;
+    buffered++;
+    totalWeight += weight;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * @param q quantile, from 0 to 1
+   * @return estimated value of the quantile, {@code NaN} if the digest is empty
+   */
+  public double quantile(double q) {
+    if (q < 0 || q > 1) {
+      throw new IllegalArgumentException("Quantile has to be between 0 and 1.");
+    }
+    compress();
+    if (centroids == 0) {
+      return Double.NaN;
+    }
+    if (centroids == 1) {
+      return means[0];
+    }
+
+    double index = q * totalWeight;
+    if (index < weights[0] / 2) {
+      return min + (means[0] - min) * index / (weights[0] / 2);
+    }
+    double cumulative = weights[0] / 2;
+    for (int i = 0; i < centroids - 1; i++) {
+      double between = (weights[i] + weights[i + 1]) / 2;
+      if (cumulative + between > index) {
+        return means[i] + (means[i + 1] - means[i]) * (index - cumulative) / between;
+      }
+      cumulative += between;
+    }
+    double last = weights[centroids - 1] / 2;
+    return means[centroids - 1] + (max - means[centroids - 1]) * Math.min(1, (index - cumulative) / last);
+  }
+
+  public double totalWeight() {
+    return totalWeight;
+  }
+
+  /**
+   * Merges the centroids of the other digest into this one.
+   */
+  public void merge(TDigest other) {
+    other.compress();
+    for (int i = 0; i < other.centroids; i++) {
+      add(other.means[i], other.weights[i]);
+    }
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  public TDigest copy() {
+    TDigest copy = new TDigest(compression);
+    compress();
+    System.arraycopy(means, 0, copy.means, 0, centroids);
+    System.arraycopy(weights, 0, copy.weights, 0, centroids);
+    copy.centroids = centroids;
+    copy.totalWeight = totalWeight;
+    copy.min = min;
+    copy.max = max;
+    return copy;
+  }
+
+  public void clear() {
+    centroids = 0;
+    buffered = 0;
+    totalWeight = 0;
+    min = Double.POSITIVE_INFINITY;
+    max = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Merges the buffered values into the centroids: the centroids and the sorted buffer are
+   * merged in order, and neighbours are combined as long as the combined centroid spans at
+   * most one unit of the scale function.
+   */
+  private void compress() {
+    if (buffered == 0) {
+      return;
+    }
+    sortBuffer();
+
+    int merged = 0;
+    double weightSoFar = 0;
+    double limit = totalWeight * limit(0);
+    int c = 0;
+    int b = 0;
+    while (c < centroids || b < buffered) {
+      int idx;
+      if (b == buffered || (c < centroids && means[c] <= means[centroids + order[b]])) {
+        idx = c++;
+      } else {
+        idx = centroids + order[b++];
+      }
+      double mean = means[idx];
+      double weight = weights[idx];
+
+      if (merged > 0 && weightSoFar + mergedWeights[merged - 1] + weight <= limit) {
+        double combined = mergedWeights[merged - 1] + weight;
+        mergedMeans[merged - 1] += (mean - mergedMeans[merged - 1]) * weight / combined;
+        mergedWeights[merged - 1] = combined;
+      } else {
+        if (merged > 0) {
+          weightSoFar += mergedWeights[merged - 1];
+          limit = totalWeight * limit(weightSoFar / totalWeight);
+        }
+        mergedMeans[merged] = mean;
+        mergedWeights[merged] = weight;
+        merged++;
+      }
+    }
+
+    double[] swap = means;
+    means = mergedMeans;
+    mergedMeans = swap;
+    swap = weights;
+    weights = mergedWeights;
+    mergedWeights = swap;
+    centroids = merged;
+    buffered = 0;
+  }
+
+  /**
+   * @return quantile one unit of the scale function {@code k(q) = compression / 2pi * asin(2q - 1)}
+   * past the given quantile
+   */
+  private double limit(double q) {
+    double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+    if (k >= compression / 4) {
+      return 1;
+    }
+    return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+  }
+
+  /**
+   * Sorts the positions of the buffered values by value, without allocating.
+   */
+  private void sortBuffer() {
+    for (int i = 0; i < buffered; i++) {
+      order[i] = i;
+    }
+    // Shell sort, with the gaps shrinking by 5 / 11
+    for (int gap = buffered / 2; gap > 0; gap = gap == 2 ? 1 : gap * 5 / 11) {
+      for (int i = gap; i < buffered; i++) {
+        int current = order[i];
+        double value = means[centroids + current];
+        int j = i;
+        while (j >= gap && means[centroids + order[j - gap]] > value) {
+          order[j] = order[j - gap];
+          j -= gap;
+        }
+        order[j] = current;
+      }
+    }
+  }
+}
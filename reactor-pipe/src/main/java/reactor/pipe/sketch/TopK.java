@@ -0,0 +1,169 @@
+package reactor.pipe.sketch;
+
+import reactor.fn.tuple.Tuple;
+import reactor.fn.tuple.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code k} most frequent values, the heavy hitters, with their estimated frequencies.
+ * Frequencies are estimated by a {@link CountMinSketch}, the candidates are kept in a min-heap
+ * ordered by their estimates, so a value that outgrows the least frequent candidate replaces it.
+ * Adding a value takes {@code O(depth + log k)}, the state is fixed-size apart from the
+ * {@code k} candidates.
+ *
+ * Sketches of the same dimensions can be merged. Not thread-safe: the sketch is meant to be
+ * updated in place by a single writer at a time.
+ */
+public final class TopK<V> {
+
+  private final int                  k;
+  private final CountMinSketch       sketch;
+  // Min-heap of the candidates, and the position of each candidate in the heap
+  private final Object[]             values;
+  private final long[]               counts;
+  private final Map<Object, Integer> positions;
+  private int                        size;
+
+  public TopK(int k, CountMinSketch sketch) {
+    if (k < 1) {
+      throw new IllegalArgumentException("K has to be positive.");
+    }
+    this.k = k;
+    this.sketch = sketch;
+    this.values = new Object[k];
+    this.counts = new long[k];
+    this.positions = new HashMap<>(k * 2);
+  }
+
+  public void add(V value) {
+    offer(value, sketch.add(value, 1));
+  }
+
+  /**
+   * @return number of values added so far
+   */
+  public long total() {
+    return sketch.total();
+  }
+
+  /**
+   * @return candidates ordered from the most frequent, with their estimated frequencies
+   */
+  @SuppressWarnings("unchecked")
+  public List<Tuple2<V, Long>> top() {
+    List<Tuple2<V, Long>> top = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      top.add(Tuple.of((V) values[i], counts[i]));
+    }
+    top.sort(Comparator.comparing((Tuple2<V, Long> t) -> t.getT2()).reversed());
+    return top;
+  }
+
+  /**
+   * Merges the other sketch into this one. The candidates of both are estimated again on the
+   * merged frequencies, and the {@code k} most frequent are kept.
+   */
+  @SuppressWarnings("unchecked")
+  public void merge(TopK<V> other) {
+    sketch.merge(other.sketch);
+    List<Object> candidates = new ArrayList<>(size + other.size);
+    for (int i = 0; i < size; i++) {
+      candidates.add(values[i]);
+    }
+    for (int i = 0; i < other.size; i++) {
+      if (!positions.containsKey(other.values[i])) {
+        candidates.add(other.values[i]);
+      }
+    }
+    clearHeap();
+    for (Object candidate : candidates) {
+      offer((V) candidate, sketch.estimate(candidate));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public TopK<V> copy() {
+    TopK<V> copy = new TopK<>(k, sketch.copy());
+    for (int i = 0; i < size; i++) {
+      copy.offer((V) values[i], counts[i]);
+    }
+    return copy;
+  }
+
+  public void clear() {
+    sketch.clear();
+    clearHeap();
+  }
+
+  private void offer(V value, long count) {
+    Integer pos = positions.get(value);
+    if (pos != null) {
+      // Estimates only grow, so the candidate can only move down the heap
+      counts[pos] = count;
+      siftDown(pos);
+    } else if (size < k) {
+      values[size] = value;
+      counts[size] = count;
+      positions.put(value, size);
+      siftUp(size++);
+    } else if (count > counts[0]) {
+      positions.remove(values[0]);
+      values[0] = value;
+      counts[0] = count;
+      positions.put(value, 0);
+      siftDown(0);
+    }
+  }
+
+  private void clearHeap() {
+    for (int i = 0; i < size; i++) {
+      values[i] = null;
+    }
+    positions.clear();
+    size = 0;
+  }
+
+  private void siftUp(int pos) {
+    while (pos > 0) {
+      int parent = (pos - 1) >>> 1;
+      if (counts[parent] <= counts[pos]) {
+        return;
+      }
+      swap(pos, parent);
+      pos = parent;
+    }
+  }
+
+  private void siftDown(int pos) {
+    for (; ; ) {
+      int child = 2 * pos + 1;
+      if (child >= size) {
+        return;
+      }
+      if (child + 1 < size && counts[child + 1] < counts[child]) {
+        child++;
+      }
+      if (counts[pos] <= counts[child]) {
+        return;
+      }
+      swap(pos, child);
+      pos = child;
+    }
+  }
+
+  private void swap(int i, int j) {
+    Object value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+    long count = counts[i];
+    counts[i] = counts[j];
+    counts[j] = count;
+    positions.put(values[i], i);
+    positions.put(values[j], j);
+  }
+}
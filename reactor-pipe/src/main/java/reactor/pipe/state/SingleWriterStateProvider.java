@@ -0,0 +1,21 @@
+package reactor.pipe.state;
+
+import reactor.pipe.concurrent.Atom;
+import reactor.pipe.concurrent.SingleWriterAtom;
+
+/**
+ * Provides {@link SingleWriterAtom}s. Only safe to use with a sharded {@link reactor.pipe.Firehose},
+ * which guarantees that all the events for the key are dispatched by the same thread.
+ */
+public class SingleWriterStateProvider<K> implements StateProvider<K> {
+
+  @Override
+  public <T> Atom<T> makeAtom(K src, T init) {
+    return new SingleWriterAtom<>(init);
+  }
+
+  @Override
+  public <T> Atom<T> makeAtom(T init) {
+    return new SingleWriterAtom<>(init);
+  }
+}
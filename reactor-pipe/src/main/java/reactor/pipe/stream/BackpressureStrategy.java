@@ -0,0 +1,163 @@
+package reactor.pipe.stream;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Strategy used by the producers to wait for a free slot in {@link FirehoseSubscription}
+ * when the underlying processor can't accept any more events.
+ */
+public interface BackpressureStrategy {
+
+  /**
+   * Wait until it makes sense to retry claiming the slot.
+   *
+   * @param subscription subscription the slot is claimed from
+   * @param attempt      number of unsuccessful claim attempts so far, starting from 0
+   * @param deadline     {@link System#nanoTime()} based deadline, {@link Long#MAX_VALUE} for no deadline
+   */
+  void await(FirehoseSubscription subscription, int attempt, long deadline) throws InterruptedException;
+
+  /**
+   * Called by {@link FirehoseSubscription} whenever the processor requests more events.
+   */
+  default void signal() {
+  }
+
+  /**
+   * Retries immediately, burning the CPU. Lowest latency, useful when there are spare cores.
+   */
+  static BackpressureStrategy busySpin() {
+    return new BusySpin();
+  }
+
+  /**
+   * Yields the producer thread between the attempts.
+   */
+  static BackpressureStrategy yielding() {
+    return new Yielding();
+  }
+
+  /**
+   * Spins and yields for a few attempts, then parks the producer thread, doubling the
+   * park time on every attempt until {@code maxParkNanos} is reached.
+   */
+  static BackpressureStrategy parking(long minParkNanos, long maxParkNanos) {
+    return new Parking(minParkNanos, maxParkNanos);
+  }
+
+  /**
+   * Blocks the producer thread until the processor frees up some slots.
+   */
+  static BackpressureStrategy blocking() {
+    return new Blocking();
+  }
+
+  public static class BusySpin implements BackpressureStrategy {
+    @Override
+    public void await(FirehoseSubscription subscription, int attempt, long deadline) throws InterruptedException {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  public static class Yielding implements BackpressureStrategy {
+    @Override
+    public void await(FirehoseSubscription subscription, int attempt, long deadline) throws InterruptedException {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      Thread.yield();
+    }
+  }
+
+  public static class Parking implements BackpressureStrategy {
+
+    private static final int SPIN_TRIES  = 100;
+    private static final int YIELD_TRIES = 100;
+
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    public Parking(long minParkNanos, long maxParkNanos) {
+      if (minParkNanos < 1 || maxParkNanos < minParkNanos) {
+        throw new IllegalArgumentException("Park times should be positive and min should not exceed max");
+      }
+      this.minParkNanos = minParkNanos;
+      this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public void await(FirehoseSubscription subscription, int attempt, long deadline) throws InterruptedException {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+
+      if (attempt < SPIN_TRIES) {
+        return;
+      } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+        Thread.yield();
+      } else {
+        int shift = Math.min(attempt - SPIN_TRIES - YIELD_TRIES, 62);
+        long parkNanos = minParkNanos << shift;
+        if (parkNanos <= 0 || parkNanos > maxParkNanos) {
+          parkNanos = maxParkNanos;
+        }
+        LockSupport.parkNanos(Math.min(parkNanos, remaining(deadline)));
+      }
+    }
+
+    static long remaining(long deadline) {
+      if (deadline == Long.MAX_VALUE) {
+        return TimeUnit.SECONDS.toNanos(1);
+      }
+      return Math.max(deadline - System.nanoTime(), 0);
+    }
+  }
+
+  public static class Blocking implements BackpressureStrategy {
+
+    private final ReentrantLock lock;
+    private final Condition     slotsReleased;
+    private final AtomicInteger waiters;
+
+    public Blocking() {
+      this.lock = new ReentrantLock();
+      this.slotsReleased = lock.newCondition();
+      this.waiters = new AtomicInteger(0);
+    }
+
+    @Override
+    public void await(FirehoseSubscription subscription, int attempt, long deadline) throws InterruptedException {
+      lock.lockInterruptibly();
+      // Waiter has to be visible before the slot check, otherwise the signal might be lost
+      waiters.incrementAndGet();
+      try {
+        long nanos = Parking.remaining(deadline);
+        while (!subscription.hasFreeSlots() && nanos > 0) {
+          nanos = slotsReleased.awaitNanos(nanos);
+        }
+      } finally {
+        waiters.decrementAndGet();
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void signal() {
+      // Keep the consumer side cheap while nobody is blocked
+      if (waiters.get() > 0) {
+        lock.lock();
+        try {
+          slotsReleased.signalAll();
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package reactor.pipe.stream;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Event time of the windows: the timestamp of the events and how the watermark follows them.
+ *
+ * The watermark of a key trails the greatest timestamp seen for that key by the maximum
+ * out-of-orderness, a window fires once the watermark passes its end. Windows are kept for
+ * the allowed lateness past their end, late events within it update the window and fire it
+ * again, later events are dropped and counted.
+ */
+public final class EventTime<V> {
+
+  private final ToLongFunction<V> timestamp;
+  private final LongAdder         droppedLateEvents;
+  private volatile long           maxOutOfOrderness;
+  private volatile long           allowedLateness;
+
+  private EventTime(ToLongFunction<V> timestamp) {
+    this.timestamp = timestamp;
+    this.droppedLateEvents = new LongAdder();
+  }
+
+  /**
+   * @param timestamp extracts the timestamp of the event, in milliseconds
+   */
+  public static <V> EventTime<V> of(ToLongFunction<V> timestamp) {
+    return new EventTime<>(timestamp);
+  }
+
+  public EventTime<V> maxOutOfOrderness(long duration, TimeUnit unit) {
+    this.maxOutOfOrderness = unit.toMillis(duration);
+    return this;
+  }
+
+  public EventTime<V> allowedLateness(long duration, TimeUnit unit) {
+    this.allowedLateness = unit.toMillis(duration);
+    return this;
+  }
+
+  public long timestamp(V value) {
+    return timestamp.applyAsLong(value);
+  }
+
+  public long getMaxOutOfOrderness() {
+    return maxOutOfOrderness;
+  }
+
+  public long getAllowedLateness() {
+    return allowedLateness;
+  }
+
+  /**
+   * @return number of events that came in after their windows were purged, across all keys
+   */
+  public long getDroppedLateEvents() {
+    return droppedLateEvents.sum();
+  }
+
+  public void lateEventDropped() {
+    droppedLateEvents.increment();
+  }
+}
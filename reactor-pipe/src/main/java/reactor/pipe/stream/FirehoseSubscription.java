@@ -3,16 +3,47 @@ package reactor.pipe.stream;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongBinaryOperator;
 import java.util.function.LongUnaryOperator;
 
 public class FirehoseSubscription implements Subscription {
 
+  // Shared instances, so that requesting and claiming slots doesn't allocate
+  private static final LongBinaryOperator ADD_SLOTS = new LongBinaryOperator() {
+    @Override
+    public long applyAsLong(long old, long diff) {
+      long sum = old + diff;
+      if (sum < 0 || sum == Long.MAX_VALUE) {
+        return Long.MAX_VALUE; // Effectively unbounded
+      } else {
+        return sum;
+      }
+    }
+  };
+
+  private static final LongUnaryOperator CLAIM_SLOT = new LongUnaryOperator() {
+    @Override
+    public long applyAsLong(long i) {
+      if (i > 0) {
+        return i - 1;
+      } else {
+        return 0;
+      }
+    }
+  };
+
   private final AtomicLong           freeSlots;
+  private final BackpressureStrategy backpressureStrategy;
 
   public FirehoseSubscription() {
+    this(BackpressureStrategy.parking(1000, TimeUnit.MILLISECONDS.toNanos(1)));
+  }
+
+  public FirehoseSubscription(BackpressureStrategy backpressureStrategy) {
     this.freeSlots = new AtomicLong(0);
+    this.backpressureStrategy = backpressureStrategy;
   }
 
   @Override
@@ -21,17 +52,9 @@ public class FirehoseSubscription implements Subscription {
       throw new RuntimeException("Can't request a non-positive number");
     }
 
-    freeSlots.accumulateAndGet(l, new LongBinaryOperator() {
-      @Override
-      public long applyAsLong(long old, long diff) {
-        long sum = old + diff;
-        if (sum < 0 || sum == Long.MAX_VALUE) {
-          return Long.MAX_VALUE; // Effectively unbounded
-        } else {
-          return sum;
-        }
-      }
-    });
+    freeSlots.accumulateAndGet(l, ADD_SLOTS);
+
+    backpressureStrategy.signal();
   }
 
   @Override
@@ -43,16 +66,41 @@ public class FirehoseSubscription implements Subscription {
 
 
   public boolean maybeClaimSlot() {
-    return freeSlots.getAndUpdate(new LongUnaryOperator() {
-      @Override
-      public long applyAsLong(long i) {
-        if (i > 0) {
-          return i - 1;
-        } else {
-          return 0;
-        }
+    return freeSlots.getAndUpdate(CLAIM_SLOT) > 0;
+  }
+
+  /**
+   * Claims a slot, waiting for it according to the backpressure strategy
+   * for at most {@code timeout} (or forever if {@code timeout} is negative).
+   *
+   * @return whether the slot was claimed
+   */
+  public boolean claimSlot(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = timeout < 0 ? Long.MAX_VALUE : System.nanoTime() + unit.toNanos(timeout);
+    int attempt = 0;
+
+    while (!maybeClaimSlot()) {
+      if (deadline != Long.MAX_VALUE && deadline - System.nanoTime() <= 0) {
+        return false;
+      }
+      backpressureStrategy.await(this, attempt, deadline);
+      if (attempt < Integer.MAX_VALUE) {
+        attempt++;
       }
-    }) > 0;
+    }
+    return true;
+  }
+
+  public boolean hasFreeSlots() {
+    return freeSlots.get() > 0;
+  }
+
+  public long getFreeSlots() {
+    return freeSlots.get();
+  }
+
+  public BackpressureStrategy getBackpressureStrategy() {
+    return backpressureStrategy;
   }
 
 }
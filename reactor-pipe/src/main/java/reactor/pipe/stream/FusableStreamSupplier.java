@@ -0,0 +1,31 @@
+package reactor.pipe.stream;
+
+
+import reactor.pipe.Firehose;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+
+/**
+ * Stateless stage, that can hand its results straight to the consumer of the next stage
+ * instead of notifying the next key through the {@link Firehose}. Contiguous runs of such
+ * stages are compiled into a single consumer by {@link reactor.pipe.PipeEnd}, which saves
+ * a key clone, a registry lookup and a backpressure check per stage.
+ */
+@FunctionalInterface
+public interface FusableStreamSupplier<K extends Key, V> extends StreamSupplier<K, V> {
+
+  /**
+   * @param downstream consumer of the next stage, which is given the key the stage
+   *                   was called with
+   */
+  public KeyedConsumer<K, V> fuse(K src,
+                                  KeyedConsumer<K, Object> downstream);
+
+  @Override
+  @SuppressWarnings(value = {"unchecked"})
+  public default KeyedConsumer<K, V> get(K src,
+                                         Key dst,
+                                         Firehose firehose) {
+    return fuse(src, (key, value) -> firehose.notify(dst.clone(key), value));
+  }
+}
@@ -0,0 +1,21 @@
+package reactor.pipe.stream;
+
+
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+
+import java.util.Map;
+
+/**
+ * Stage consumer that also consumes keys other than its own, such as the other stream of a
+ * join. {@link reactor.pipe.PipeEnd} registers these consumers together with the stage, so
+ * that they are evicted together with it when the registrations are materialized, instead
+ * of piling up on the other keys every time the stage is materialized again.
+ */
+public interface SideConsumers {
+
+  /**
+   * @return consumers to register, by the key they consume
+   */
+  public Map<Key, KeyedConsumer> sideConsumers();
+}
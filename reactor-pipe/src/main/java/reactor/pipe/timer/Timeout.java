@@ -0,0 +1,93 @@
+package reactor.pipe.timer;
+
+import reactor.fn.Consumer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Task scheduled on a {@link TimingWheel}. The deadline of a pending timeout can be moved
+ * with {@link #reschedule(long, TimeUnit)}, which is how the per-key timers are kept alive
+ * without a cancel and a resubmit per event.
+ */
+public final class Timeout {
+
+  // Deadlines are relative to the start of the wheel, so they're never negative
+  static final long FIRED     = -1;
+  static final long CANCELLED = -2;
+
+  private final TimingWheel    wheel;
+  private final Consumer<Long> task;
+  private final AtomicLong     deadline;
+
+  // Owned by the timer thread
+  Timeout prev;
+  Timeout next;
+  int     level;
+  int     bucket;
+
+  Timeout(TimingWheel wheel, Consumer<Long> task, long deadline) {
+    this.wheel = wheel;
+    this.task = task;
+    this.deadline = new AtomicLong(deadline);
+    this.level = -1;
+  }
+
+  /**
+   * Moves the deadline of the pending timeout to {@code delay} from now. Moving it later
+   * is a single compare-and-swap, the timer thread notices the new deadline once the old
+   * one expires.
+   *
+   * @return {@code false} if the timeout has already fired or was cancelled
+   */
+  public boolean reschedule(long delay, TimeUnit unit) {
+    long newDeadline = wheel.deadline(delay, unit);
+    for (; ; ) {
+      long current = deadline.get();
+      if (current < 0) {
+        return false;
+      }
+      if (deadline.compareAndSet(current, newDeadline)) {
+        if (newDeadline < current) {
+          // The timeout would sit in the bucket of the old deadline
+          wheel.requeue(this);
+        }
+        return true;
+      }
+    }
+  }
+
+  /**
+   * @return {@code false} if the timeout has already fired or was cancelled
+   */
+  public boolean cancel() {
+    for (; ; ) {
+      long current = deadline.get();
+      if (current < 0) {
+        return false;
+      }
+      if (deadline.compareAndSet(current, CANCELLED)) {
+        return true;
+      }
+    }
+  }
+
+  public boolean isPending() {
+    return deadline.get() >= 0;
+  }
+
+  long deadline() {
+    return deadline.get();
+  }
+
+  /**
+   * @return {@code true} if the timeout was still due at the given deadline and is now fired
+   */
+  boolean fire(long expectedDeadline) {
+    return deadline.compareAndSet(expectedDeadline, FIRED);
+  }
+
+  void run(long now) {
+    task.accept(now);
+  }
+}
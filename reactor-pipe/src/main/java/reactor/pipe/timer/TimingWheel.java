@@ -0,0 +1,257 @@
+package reactor.pipe.timer;
+
+import reactor.core.support.Assert;
+import reactor.fn.Consumer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical timing wheel. The first level has {@code wheelSize} buckets of the given
+ * resolution, every next level has as many buckets, each of them spanning the whole level
+ * below. A timeout of any length takes a single bucket and moves a level down only when
+ * its bucket comes up, so scheduling and expiring are constant time no matter how many
+ * timeouts are pending or how far their deadlines are.
+ *
+ * Timeouts are handed over to the timer thread through a lock-free queue, the buckets are
+ * only ever touched by the timer thread. Moving the deadline of a pending timeout later
+ * doesn't involve the timer thread at all: the timeout is put back into the right bucket
+ * once the old deadline expires. Cancelled timeouts are dropped the same way.
+ *
+ * Tasks run on the timer thread, so they should be short.
+ */
+public class TimingWheel {
+
+  private static final int                 MAX_LEVELS                 = 4;
+  private static final Consumer<Throwable> DEFAULT_THROWABLE_CONSUMER = new Consumer<Throwable>() {
+    @Override
+    public void accept(Throwable throwable) {
+      System.out.printf("Exception caught while running a timer task: %s\n", throwable.getMessage());
+      throwable.printStackTrace();
+    }
+  };
+
+  private final long                           tickNanos;
+  private final int                            bits;
+  private final int                            mask;
+  private final int                            levels;
+  private final Timeout[][]                    buckets;
+  private final ConcurrentLinkedQueue<Timeout> queue;
+  private final Consumer<Throwable>            errorHandler;
+  private final long                           startNanos;
+  private final Thread                         thread;
+  private volatile boolean                     running;
+  // Last tick the buckets were expired for, owned by the timer thread
+  private long                                 currentTick;
+
+  public TimingWheel(long resolution, TimeUnit unit, int wheelSize) {
+    this(resolution, unit, wheelSize, "timing-wheel", DEFAULT_THROWABLE_CONSUMER);
+  }
+
+  /**
+   * @param resolution   duration of a single tick, timeouts fire at least a tick and at most
+   *                     two ticks past their deadline
+   * @param wheelSize    number of buckets of each level, rounded up to a power of two
+   * @param errorHandler handler of the exceptions thrown by the tasks
+   */
+  public TimingWheel(long resolution,
+                     TimeUnit unit,
+                     int wheelSize,
+                     String name,
+                     Consumer<Throwable> errorHandler) {
+    Assert.isTrue(resolution > 0, "Resolution has to be positive.");
+    Assert.isTrue(wheelSize > 1, "Wheel has to have at least two buckets.");
+    this.tickNanos = unit.toNanos(resolution);
+    this.bits = 32 - Integer.numberOfLeadingZeros(wheelSize - 1);
+    this.mask = (1 << bits) - 1;
+    // Keeps the span of the top level within a long
+    this.levels = Math.max(1, Math.min(MAX_LEVELS, 62 / bits));
+    this.buckets = new Timeout[levels][1 << bits];
+    this.queue = new ConcurrentLinkedQueue<>();
+    this.errorHandler = errorHandler;
+    this.startNanos = System.nanoTime();
+    this.thread = new Thread(this::run, name);
+    this.thread.setDaemon(true);
+  }
+
+  public TimingWheel start() {
+    running = true;
+    thread.start();
+    return this;
+  }
+
+  public void shutdown() {
+    running = false;
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Schedules the task to run once, after the given delay. The task is given the current time
+   * in milliseconds.
+   */
+  public Timeout schedule(Consumer<Long> task, long delay, TimeUnit unit) {
+    Timeout timeout = new Timeout(this, task, deadline(delay, unit));
+    queue.offer(timeout);
+    return timeout;
+  }
+
+  public long getResolution(TimeUnit unit) {
+    return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+  }
+
+  long deadline(long delay, TimeUnit unit) {
+    return Math.max(0, System.nanoTime() - startNanos + unit.toNanos(delay));
+  }
+
+  void requeue(Timeout timeout) {
+    queue.offer(timeout);
+  }
+
+  private void run() {
+    while (running) {
+      drain();
+
+      long targetTick = (System.nanoTime() - startNanos) / tickNanos;
+      while (currentTick < targetTick) {
+        currentTick++;
+        cascade();
+        expire();
+      }
+
+      long sleep = (currentTick + 1) * tickNanos - (System.nanoTime() - startNanos);
+      if (sleep > 0) {
+        LockSupport.parkNanos(this, sleep);
+      }
+    }
+  }
+
+  private void drain() {
+    Timeout timeout;
+    while ((timeout = queue.poll()) != null) {
+      // Requeued timeouts are already in a bucket
+      unlink(timeout);
+      insert(timeout, currentTick + 1);
+    }
+  }
+
+  /**
+   * Moves the timeouts of the buckets of the higher levels that come up on the current tick
+   * a level, or more, down.
+   */
+  private void cascade() {
+    for (int level = levels - 1; level > 0; level--) {
+      int shift = bits * level;
+      if ((currentTick & ((1L << shift) - 1)) == 0) {
+        Timeout timeout = take(level, (int) (currentTick >>> shift) & mask);
+        while (timeout != null) {
+          Timeout next = timeout.next;
+          unlink(timeout);
+          insert(timeout, currentTick);
+          timeout = next;
+        }
+      }
+    }
+  }
+
+  private void expire() {
+    long now = System.currentTimeMillis();
+    Timeout timeout = take(0, (int) currentTick & mask);
+    while (timeout != null) {
+      Timeout next = timeout.next;
+      unlink(timeout);
+      expire(timeout, now);
+      timeout = next;
+    }
+  }
+
+  private void expire(Timeout timeout, long now) {
+    for (; ; ) {
+      long deadline = timeout.deadline();
+      if (deadline < 0) {
+        return;
+      }
+      if (expirationTick(deadline) > currentTick) {
+        // Deadline was moved while the timeout was waiting
+        insert(timeout, currentTick + 1);
+        return;
+      }
+      if (timeout.fire(deadline)) {
+        try {
+          timeout.run(now);
+        } catch (Throwable t) {
+          errorHandler.accept(t);
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * @param minTick earliest tick the timeout can be expired on
+   */
+  private void insert(Timeout timeout, long minTick) {
+    long deadline = timeout.deadline();
+    if (deadline < 0) {
+      return;
+    }
+
+    long expirationTick = Math.max(expirationTick(deadline), minTick);
+    long delta = expirationTick - currentTick;
+    int level = 0;
+    while (level < levels - 1 && delta >= (1L << (bits * (level + 1)))) {
+      level++;
+    }
+    if (delta >= (1L << (bits * levels))) {
+      // Beyond the span of the wheel, parked in the furthest bucket and inserted again from there
+      expirationTick = currentTick + (1L << (bits * levels)) - 1;
+    }
+
+    int bucket = (int) (expirationTick >>> (bits * level)) & mask;
+    Timeout head = buckets[level][bucket];
+    timeout.level = level;
+    timeout.bucket = bucket;
+    timeout.prev = null;
+    timeout.next = head;
+    if (head != null) {
+      head.prev = timeout;
+    }
+    buckets[level][bucket] = timeout;
+  }
+
+  private Timeout take(int level, int bucket) {
+    Timeout head = buckets[level][bucket];
+    buckets[level][bucket] = null;
+    if (head != null) {
+      // Detached from the bucket already, unlinking only has to clear the pointers
+      for (Timeout timeout = head; timeout != null; timeout = timeout.next) {
+        timeout.level = -1;
+      }
+    }
+    return head;
+  }
+
+  private void unlink(Timeout timeout) {
+    if (timeout.level >= 0) {
+      if (timeout.prev != null) {
+        timeout.prev.next = timeout.next;
+      } else {
+        buckets[timeout.level][timeout.bucket] = timeout.next;
+      }
+      if (timeout.next != null) {
+        timeout.next.prev = timeout.prev;
+      }
+    }
+    timeout.level = -1;
+    timeout.prev = null;
+    timeout.next = null;
+  }
+
+  /**
+   * @return first tick that starts a whole tick past the deadline, so that timeouts never fire
+   * early, whichever clock the callers measure them with
+   */
+  private long expirationTick(long deadline) {
+    return (deadline + tickNanos - 1) / tickNanos + 1;
+  }
+}
@@ -6,6 +6,7 @@ import reactor.core.processor.RingBufferWorkProcessor;
 import reactor.fn.Consumer;
 import reactor.pipe.key.Key;
 import reactor.pipe.registry.ConcurrentRegistry;
+import reactor.pipe.registry.DefaultingRegistry;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -19,7 +20,7 @@ public class AbstractFirehoseTest {
 
   @Before
   public void setup() {
-    this.firehose = new Firehose<>(new ConcurrentRegistry<>(),
+    this.firehose = new Firehose<>(createRegistry(),
                                    RingBufferWorkProcessor.create(Executors.newFixedThreadPool(4),
                                                                   256),
                                    1,
@@ -27,6 +28,10 @@ public class AbstractFirehoseTest {
                                    });
   }
 
+  protected DefaultingRegistry<Key> createRegistry() {
+    return new ConcurrentRegistry<>();
+  }
+
   @After
   public void teardown() {
     firehose.shutdown();
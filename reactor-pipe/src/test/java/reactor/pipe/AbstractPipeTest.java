@@ -4,16 +4,32 @@ import org.junit.Test;
 import org.pcollections.TreePVector;
 import reactor.core.processor.RingBufferWorkProcessor;
 import reactor.fn.Consumer;
+import reactor.fn.Function;
+import reactor.fn.tuple.Tuple2;
 import reactor.pipe.concurrent.AVar;
 import reactor.pipe.concurrent.Atom;
 import reactor.pipe.key.Key;
 import reactor.pipe.registry.ConcurrentRegistry;
+import reactor.pipe.sketch.TDigest;
+import reactor.pipe.stream.EventTime;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static junit.framework.TestCase.assertTrue;
@@ -57,6 +73,22 @@ public abstract class AbstractPipeTest extends AbstractFirehoseTest {
     assertThat(res.get(1, TimeUnit.SECONDS), is(4));
   }
 
+  @Test
+  public void asyncTest() throws InterruptedException {
+    AVar<Integer> res = new AVar<>();
+
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .map(i -> i + 1)
+        .async()
+        .filter(i -> i > 1)
+        .map(i -> i * 2)
+        .consume(res::set),
+      1);
+
+    assertThat(res.get(1, TimeUnit.SECONDS), is(4));
+  }
+
   @Test
   public void statefulMapTest() throws InterruptedException {
     AVar<Integer> res = new AVar<>(3);
@@ -95,8 +127,9 @@ public abstract class AbstractPipeTest extends AbstractFirehoseTest {
     subscribeAndDispatch(
       Pipe.<Integer>build().debounce(1, TimeUnit.SECONDS)
                            .consume((v) -> {
-                             res.set(v);
+                             // Before the value is set, the test reads the time once it is
                              end.set(System.currentTimeMillis());
+                             res.set(v);
                            }),
       Arrays.asList(1, 2));
 
@@ -117,8 +150,9 @@ public abstract class AbstractPipeTest extends AbstractFirehoseTest {
     subscribeAndDispatch(
       Pipe.<Integer>build().throttle(1, TimeUnit.SECONDS)
                            .consume((v) -> {
-                             res.set(v);
+                             // Before the value is set, the test reads the time once it is
                              end.set(System.currentTimeMillis());
+                             res.set(v);
                            }),
       Arrays.asList(1, 2));
 
@@ -161,6 +195,28 @@ public abstract class AbstractPipeTest extends AbstractFirehoseTest {
     assertThat(res.get(1, TimeUnit.SECONDS), is(TreePVector.from(Arrays.asList(1, 2, 3, 4, 5))));
   }
 
+  @Test
+  public void bufferTest() throws InterruptedException {
+    List<List<Integer>> res = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(3);
+    long start = System.nanoTime();
+
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .consumeBatch(5, 100, TimeUnit.MILLISECONDS, (List<Integer> batch) -> {
+          res.add(batch);
+          latch.countDown();
+        }),
+      Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12));
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    // Full batches go right away, the rest once the delay has passed
+    assertThat(res, is(Arrays.asList(Arrays.asList(1, 2, 3, 4, 5),
+                                     Arrays.asList(6, 7, 8, 9, 10),
+                                     Arrays.asList(11, 12))));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+  }
+
   @Test
   public void testSlide() throws InterruptedException {
     AVar<List<Integer>> res = new AVar<>(6);
@@ -175,6 +231,488 @@ public abstract class AbstractPipeTest extends AbstractFirehoseTest {
     assertThat(res.get(1, TimeUnit.SECONDS), is(TreePVector.from(Arrays.asList(2, 3, 4, 5, 6))));
   }
 
+  @Test
+  public void slideCountTest() throws InterruptedException {
+    List<Integer> values = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+    List<List<Integer>> windows = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(values.size());
+
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .slide(3)
+        .consume((List<Integer> window) -> {
+          windows.add(window);
+          latch.countDown();
+        }),
+      values);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    // Windows emitted earlier are not affected by the later events
+    for (int i = 0; i < values.size(); i++) {
+      assertThat(windows.get(i), is(values.subList(Math.max(0, i - 2), i + 1)));
+    }
+  }
+
+  @Test
+  public void slidingAggregateTest() throws InterruptedException {
+    List<Integer> values = new ArrayList<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 200; i++) {
+      values.add(random.nextInt(100));
+    }
+    int size = 7;
+    List<Double> sums = new CopyOnWriteArrayList<>();
+    List<Long> counts = new CopyOnWriteArrayList<>();
+    List<Integer> mins = new CopyOnWriteArrayList<>();
+    List<Integer> maxs = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(values.size() * 4);
+
+    subscribe(
+      Pipe.<Integer>build()
+        .slidingSum(size, (Integer i) -> i)
+        .consume((Double v) -> {
+          sums.add(v);
+          latch.countDown();
+        }));
+    subscribe(
+      Pipe.<Integer>build()
+        .slidingCount(size, i -> i % 2 == 0)
+        .consume((Long v) -> {
+          counts.add(v);
+          latch.countDown();
+        }));
+    subscribe(
+      Pipe.<Integer>build()
+        .slidingMin(size, Comparator.<Integer>naturalOrder())
+        .consume((Integer v) -> {
+          mins.add(v);
+          latch.countDown();
+        }));
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .slidingMax(size, Comparator.<Integer>naturalOrder())
+        .consume((Integer v) -> {
+          maxs.add(v);
+          latch.countDown();
+        }),
+      values);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    for (int i = 0; i < values.size(); i++) {
+      List<Integer> window = values.subList(Math.max(0, i + 1 - size), i + 1);
+      assertThat(sums.get(i), is((double) window.stream().mapToInt(v -> v).sum()));
+      assertThat(counts.get(i), is(window.stream().filter(v -> v % 2 == 0).count()));
+      assertThat(mins.get(i), is(Collections.min(window)));
+      assertThat(maxs.get(i), is(Collections.max(window)));
+    }
+  }
+
+  @Test
+  public void sketchesTest() throws InterruptedException {
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      values.add(i % 3 == 0 ? 7 : i % 100);
+    }
+    List<Long> distinct = new CopyOnWriteArrayList<>();
+    List<List<Tuple2<Integer, Long>>> top = new CopyOnWriteArrayList<>();
+    List<double[]> quantiles = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(values.size() * 2 + values.size() / 100);
+
+    subscribe(
+      Pipe.<Integer>build()
+        .distinctCount(12)
+        .consume((Long v) -> {
+          distinct.add(v);
+          latch.countDown();
+        }));
+    subscribe(
+      Pipe.<Integer>build()
+        .topK(3, 0.001, 0.01, 100)
+        .consume((List<Tuple2<Integer, Long>> v) -> {
+          top.add(v);
+          latch.countDown();
+        }));
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .quantiles((Integer i) -> i, 100, 0, 0.5, 1)
+        .consume((double[] v) -> {
+          quantiles.add(v);
+          latch.countDown();
+        }),
+      values);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertTrue(Math.abs(distinct.get(values.size() - 1) - 100) <= 5);
+    assertThat(top.size(), is(values.size() / 100));
+    List<Tuple2<Integer, Long>> heaviest = top.get(top.size() - 1);
+    assertThat(heaviest.size(), is(3));
+    assertThat(heaviest.get(0).getT1(), is(7));
+    assertTrue(heaviest.get(0).getT2() >= values.stream().filter(v -> v == 7).count());
+    double[] last = quantiles.get(values.size() - 1);
+    assertThat(last[0], is(0.0));
+    assertThat(last[2], is(99.0));
+    assertTrue(Math.abs(last[1] - 25) <= 3);
+  }
+
+  @Test
+  public void digestTest() throws InterruptedException {
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      values.add(i);
+    }
+    List<TDigest> digests = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(values.size() / 100);
+
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .digest((Integer i) -> i, 100, 100)
+        .consume((TDigest v) -> {
+          digests.add(v);
+          latch.countDown();
+        }),
+      values);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    Thread.sleep(100);
+    assertThat(digests.size(), is(10));
+    TDigest last = digests.get(digests.size() - 1);
+    assertThat(last.totalWeight(), is(1000.0));
+
+    // Copies are independent of the stage and of each other, so they can be merged into
+    TDigest merged = digests.get(0).copy();
+    merged.merge(last);
+    assertThat(digests.get(0).totalWeight(), is(100.0));
+    assertThat(merged.totalWeight(), is(1100.0));
+    assertThat(merged.quantile(0), is(0.0));
+    assertThat(merged.quantile(1), is(999.0));
+  }
+
+  @Test
+  public void joinTest() throws InterruptedException {
+    List<String> joined = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(3);
+    Key other = Key.wrap("other");
+
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .join(other,
+              (Integer i) -> i % 10,
+              (String s) -> Integer.parseInt(s.split(":")[0]),
+              10,
+              TimeUnit.SECONDS,
+              100,
+              (Integer i, String s) -> i + "=" + s)
+        .consume((String s) -> {
+          joined.add(s);
+          latch.countDown();
+        }),
+      Arrays.asList(11, 12, 13));
+
+    // Matched pipes register the other side along with the first event
+    while (firehose.getConsumerRegistry().stream().noneMatch(r -> r.getSelector().equals(other))) {
+      Thread.sleep(10);
+    }
+    firehose.notify(other, "1:a");
+    firehose.notify(other, "2:b");
+    firehose.notify(other, "1:c");
+    firehose.notify(other, "4:d");
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    Thread.sleep(100);
+    assertThat(joined.size(), is(3));
+    assertTrue(joined.containsAll(Arrays.asList("11=1:a", "11=1:c", "12=2:b")));
+  }
+
+  @Test
+  public void mapAsyncTest() throws InterruptedException {
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      values.add(i);
+    }
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(8);
+    Random random = new Random(42);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    List<Integer> ordered = new CopyOnWriteArrayList<>();
+    List<Integer> unordered = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(2 * (values.size() - 1));
+
+    Function<Integer, CompletionStage<Integer>> lookup = i -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      CompletableFuture<Integer> future = new CompletableFuture<>();
+      executor.schedule(() -> {
+        inFlight.decrementAndGet();
+        if (i == 13) {
+          future.completeExceptionally(new RuntimeException("lookup failed"));
+        } else {
+          future.complete(i * 10);
+        }
+      }, random.nextInt(20), TimeUnit.MILLISECONDS);
+      return future;
+    };
+
+    subscribe(
+      Pipe.<Integer>build()
+        .mapAsync(lookup, 4, false)
+        .consume((Integer v) -> {
+          unordered.add(v);
+          latch.countDown();
+        }));
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .mapAsync(lookup, 4, true)
+        .consume((Integer v) -> {
+          ordered.add(v);
+          latch.countDown();
+        }),
+      values);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    executor.shutdown();
+    // Failed lookup is skipped
+    List<Integer> expected = new ArrayList<>();
+    for (Integer i : values) {
+      if (i != 13) {
+        expected.add(i * 10);
+      }
+    }
+    assertThat(ordered, is(expected));
+    assertThat(new HashSet<>(unordered), is(new HashSet<>(expected)));
+    // Two stages, four calls in flight each
+    assertTrue(maxInFlight.get() <= 8);
+  }
+
+  @Test
+  public void mapAsyncCompletedBacklogTest() throws InterruptedException {
+    int iterations = 20000;
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < iterations; i++) {
+      values.add(i);
+    }
+    CompletableFuture<Integer> orderedGate = new CompletableFuture<>();
+    CompletableFuture<Integer> unorderedGate = new CompletableFuture<>();
+    CountDownLatch accepted = new CountDownLatch(2 * iterations);
+    List<Integer> ordered = new CopyOnWriteArrayList<>();
+    AtomicInteger unordered = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(2 * iterations);
+
+    // The first call holds the others back, they complete synchronously once started
+    subscribe(
+      Pipe.<Integer>build()
+        .map(i -> {
+          accepted.countDown();
+          return i;
+        })
+        .mapAsync(i -> i == 0 ? unorderedGate : CompletableFuture.completedFuture(i), 1, false)
+        .consume((Integer v) -> {
+          unordered.incrementAndGet();
+          latch.countDown();
+        }));
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .map(i -> {
+          accepted.countDown();
+          return i;
+        })
+        .mapAsync(i -> i == 0 ? orderedGate : CompletableFuture.completedFuture(i), 4, true)
+        .consume((Integer v) -> {
+          ordered.add(v);
+          latch.countDown();
+        }),
+      values);
+
+    assertTrue(accepted.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    unorderedGate.complete(0);
+    orderedGate.complete(0);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(ordered, is(values));
+    assertThat(unordered.get(), is(iterations));
+  }
+
+  @Test
+  public void parallelTest() throws InterruptedException {
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      values.add(i);
+    }
+    List<Integer> ordered = new CopyOnWriteArrayList<>();
+    List<Integer> unordered = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(2 * 66);
+
+    subscribe(
+      Pipe.<Integer>build()
+        .parallel(4)
+        .filter(i -> i % 3 != 0)
+        .map(i -> i * 10)
+        .sequential()
+        .consume((Integer v) -> {
+          unordered.add(v);
+          latch.countDown();
+        }));
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .parallel(4)
+        .filter(i -> i % 3 != 0)
+        .map(i -> i * 10)
+        .sequential(true)
+        .consume((Integer v) -> {
+          ordered.add(v);
+          latch.countDown();
+        }),
+      values);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    // Filtered events don't hold back the ones that follow
+    List<Integer> expected = new ArrayList<>();
+    for (Integer i : values) {
+      if (i % 3 != 0) {
+        expected.add(i * 10);
+      }
+    }
+    assertThat(ordered, is(expected));
+    assertThat(new HashSet<>(unordered), is(new HashSet<>(expected)));
+  }
+
+  @Test
+  public void tumblingWindowTest() throws InterruptedException {
+    AtomicLong total = new AtomicLong();
+    AtomicLong windows = new AtomicLong();
+
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .window(100, TimeUnit.MILLISECONDS, 0L, (Long acc, Integer i) -> acc + i)
+        .consume((Long sum) -> {
+          windows.incrementAndGet();
+          total.addAndGet(sum);
+        }),
+      Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+
+    awaitTotal(total, 55);
+    // Events may fall on both sides of a window boundary
+    assertTrue(windows.get() >= 1 && windows.get() <= 2);
+  }
+
+  @Test
+  public void hoppingWindowTest() throws InterruptedException {
+    AtomicLong folded = new AtomicLong();
+    AtomicLong combined = new AtomicLong();
+
+    subscribe(
+      Pipe.<Integer>build()
+        .window(200, 100, TimeUnit.MILLISECONDS, 0L, (Long acc, Integer i) -> acc + i)
+        .consume((Long sum) -> folded.addAndGet(sum)));
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .window(200, 100, TimeUnit.MILLISECONDS, 0L, (Long acc, Integer i) -> acc + i, Long::sum)
+        .consume((Long sum) -> combined.addAndGet(sum)),
+      Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+
+    // Each event belongs to two of the overlapping windows
+    awaitTotal(folded, 110);
+    awaitTotal(combined, 110);
+  }
+
+  @Test
+  public void sessionTest() throws InterruptedException {
+    List<Long> sessions = new CopyOnWriteArrayList<>();
+    CountDownLatch first = new CountDownLatch(1);
+    CountDownLatch second = new CountDownLatch(2);
+
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .session(100, TimeUnit.MILLISECONDS, (Long acc, Integer i) -> acc + i, 0L)
+        .consume((Long sum) -> {
+          sessions.add(sum);
+          first.countDown();
+          second.countDown();
+        }),
+      Arrays.asList(1, 2, 3));
+
+    // Events within the gap extend the session
+    for (int i = 4; i <= 6; i++) {
+      Thread.sleep(50);
+      firehose.notify(Key.wrap("source", "first"), i);
+    }
+    assertTrue(first.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(sessions, is(Collections.singletonList(21L)));
+
+    firehose.notify(Key.wrap("source", "first"), 10);
+    assertTrue(second.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(sessions, is(Arrays.asList(21L, 10L)));
+  }
+
+  @Test
+  public void eventTimeWindowTest() throws InterruptedException {
+    EventTime<Integer> eventTime = EventTime.<Integer>of(i -> i)
+                                            .maxOutOfOrderness(5, TimeUnit.MILLISECONDS)
+                                            .allowedLateness(10, TimeUnit.MILLISECONDS);
+    List<Long> counts = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(3);
+
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .window(eventTime, 10, TimeUnit.MILLISECONDS, 0L, (Long acc, Integer i) -> acc + 1)
+        .consume((Long count) -> {
+          counts.add(count);
+          latch.countDown();
+        }),
+      // 2 is out of order, 16 fires [0, 10), 4 is late and fires it again, 35 fires [10, 20)
+      // and purges [0, 10), so that 5 is dropped
+      Arrays.asList(1, 3, 12, 2, 16, 4, 35, 5));
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(counts, is(Arrays.asList(3L, 4L, 2L)));
+    long deadline = System.currentTimeMillis() + 1000;
+    while (eventTime.getDroppedLateEvents() < 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(eventTime.getDroppedLateEvents(), is(1L));
+  }
+
+  @Test
+  public void groupByTest() throws InterruptedException {
+    Map<Integer, Integer> sums = new ConcurrentHashMap<>();
+    Map<Integer, Integer> maxs = new ConcurrentHashMap<>();
+    CountDownLatch latch = new CountDownLatch(18);
+
+    subscribe(
+      Pipe.<Integer>build()
+        .groupBy(i -> i % 3)
+        .aggregate((Integer acc, Integer i) -> acc + i, 0)
+        .consume((Tuple2<Integer, Integer> t) -> {
+          sums.put(t.getT1(), t.getT2());
+          latch.countDown();
+        }));
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .groupBy(i -> i % 3)
+        .reduce(Math::max)
+        .consume((Tuple2<Integer, Integer> t) -> {
+          maxs.put(t.getT1(), t.getT2());
+          latch.countDown();
+        }),
+      Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9));
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(sums.get(0), is(18));
+    assertThat(sums.get(1), is(12));
+    assertThat(sums.get(2), is(15));
+    assertThat(maxs.get(0), is(9));
+    assertThat(maxs.get(1), is(7));
+    assertThat(maxs.get(2), is(8));
+  }
+
+  private static void awaitTotal(AtomicLong total, long expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + LATCH_TIME_UNIT.toMillis(LATCH_TIMEOUT);
+    while (total.get() < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    // No window is emitted twice
+    Thread.sleep(300);
+    assertThat(total.get(), is(expected));
+  }
+
   @Test
   public void testConsume() throws InterruptedException {
     AVar<Integer> resValue = new AVar<>();
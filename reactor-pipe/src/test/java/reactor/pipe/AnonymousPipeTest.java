@@ -4,6 +4,7 @@ import org.junit.Test;
 import org.pcollections.TreePVector;
 import reactor.core.processor.RingBufferWorkProcessor;
 import reactor.fn.Consumer;
+import reactor.fn.tuple.Tuple2;
 import reactor.pipe.concurrent.AVar;
 import reactor.pipe.concurrent.Atom;
 import reactor.pipe.key.Key;
@@ -11,12 +12,14 @@ import reactor.pipe.registry.ConcurrentRegistry;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertTrue;
 
 public class AnonymousPipeTest extends AbstractPipeTest {
 
@@ -44,6 +47,116 @@ public class AnonymousPipeTest extends AbstractPipeTest {
     firehose.notify(Key.wrap("source", "first"), value);
   }
 
+  @Test
+  public void fusionTest() throws InterruptedException {
+    AVar<Key> res = new AVar<>();
+    Key source = Key.wrap("source", "first");
+
+    Pipe.<Integer>build()
+      .map(i -> i + 1)
+      .filter(i -> i > 1)
+      .map(i -> i * 2)
+      .consume((Key k, Integer v) -> res.set(k))
+      .subscribe(source, firehose);
+
+    // All the stateless stages are fused with the consumer
+    assertThat(firehose.getConsumerRegistry().stream().count(), is(1L));
+
+    firehose.notify(source, 1);
+    // Consumer still gets the key of its own stage, derived once per stage
+    Key key = res.get(1, TimeUnit.SECONDS);
+    assertThat(key.getPart(0), is("source"));
+    assertThat(key.getObjects().length, is(5));
+  }
+
+  @Test
+  public void fusionBoundaryTest() throws InterruptedException {
+    AVar<Integer> res = new AVar<>(3);
+
+    subscribeAndDispatch(
+      Pipe.<Integer>build()
+        .map(i -> i + 1)
+        .scan((Integer acc, Integer i) -> acc + i, 0)
+        .map(i -> i * 2)
+        .async()
+        .consume(res::set),
+      Arrays.asList(1, 2, 3));
+
+    // Registered are the first map and the stages following the scan and the async boundary,
+    // which notify through the firehose
+    assertThat(firehose.getConsumerRegistry().stream().count(), is(3L));
+    assertThat(res.get(LATCH_TIMEOUT, LATCH_TIME_UNIT), is(18));
+  }
+
+  @Test
+  public void groupByEvictionTest() throws InterruptedException {
+    List<Integer> aggregates = new CopyOnWriteArrayList<>();
+    CountDownLatch first = new CountDownLatch(1);
+    CountDownLatch second = new CountDownLatch(2);
+    Key source = Key.wrap("source", "first");
+
+    Pipe.<Integer>build()
+      .groupBy(i -> "group")
+      .evictIdle(50, TimeUnit.MILLISECONDS)
+      .aggregate((Integer acc, Integer i) -> acc + i, 0)
+      .consume((Tuple2<String, Integer> t) -> {
+        aggregates.add(t.getT2());
+        first.countDown();
+        second.countDown();
+      })
+      .subscribe(source, firehose);
+
+    // Groups are kept by the stage, and not registered one by one
+    assertThat(firehose.getConsumerRegistry().stream().count(), is(2L));
+
+    firehose.notify(source, 1);
+    assertTrue(first.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+
+    // Idle group is evicted and the aggregate starts over
+    Thread.sleep(300);
+    firehose.notify(source, 2);
+    assertTrue(second.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(aggregates, is(Arrays.asList(1, 2)));
+  }
+
+  @Test
+  public void joinExpiryTest() throws InterruptedException {
+    List<String> joined = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(1);
+    Key source = Key.wrap("source", "first");
+    Key other = Key.wrap("other");
+
+    Pipe.<Integer>build()
+      .join(other,
+            (Integer i) -> i % 10,
+            (String s) -> Integer.parseInt(s.split(":")[0]),
+            50,
+            TimeUnit.MILLISECONDS,
+            1,
+            (Integer i, String s) -> i + "=" + s)
+      .consume((String s) -> {
+        joined.add(s);
+        latch.countDown();
+      })
+      .subscribe(source, firehose);
+
+    // Expires before the other side arrives
+    firehose.notify(source, 2);
+    Thread.sleep(200);
+    firehose.notify(other, "2:a");
+
+    // Only the last event fits into the buffer
+    firehose.notify(source, 1);
+    Thread.sleep(10);
+    firehose.notify(source, 11);
+    Thread.sleep(10);
+    firehose.notify(other, "1:b");
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    Thread.sleep(100);
+    assertThat(joined, is(Arrays.asList("11=1:b")));
+  }
+
 //  @Test
 //  public void testUnregister() throws InterruptedException {
 //    NamedPipe<Integer> pipe = new NamedPipe<>(firehose);
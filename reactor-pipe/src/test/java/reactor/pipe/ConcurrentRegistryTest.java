@@ -1,17 +1,22 @@
 package reactor.pipe;
 
 import org.junit.Test;
+import reactor.pipe.consumer.KeyedConsumer;
 import reactor.pipe.key.Key;
 import reactor.pipe.registry.ConcurrentRegistry;
 import reactor.pipe.registry.Registration;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class ConcurrentRegistryTest {
 
@@ -44,4 +49,106 @@ public class ConcurrentRegistryTest {
     assertThat(latch1.getCount(), is(0L));
     assertThat(latch2.getCount(), is(0L));
   }
+
+  @Test
+  public void keyMissCacheTest() {
+    AtomicInteger matched = new AtomicInteger();
+    ConcurrentRegistry<Key> registry = new ConcurrentRegistry<>();
+    registry.addKeyMissMatcher((key) -> {
+                                 matched.incrementAndGet();
+                                 return key.getPart(0).equals("part");
+                               },
+                               key -> Collections.singletonMap(key,
+                                                               (key1, value) -> {
+                                                               }));
+
+    Key key = Key.wrap("other");
+    for (int i = 0; i < 10; i++) {
+      assertThat(registry.select(key).isEmpty(), is(true));
+    }
+    assertThat(matched.get(), is(1));
+
+    // Materialized registrations are looked up without matching
+    Key partKey = Key.wrap("part");
+    for (int i = 0; i < 10; i++) {
+      assertThat(registry.select(partKey).size(), is(1));
+    }
+    assertThat(matched.get(), is(2));
+
+    // Registered keys take precedence over the recorded misses
+    registry.register(key, (key1, value) -> {
+    });
+    assertThat(registry.select(key).size(), is(1));
+  }
+
+  @Test
+  public void keyMissCacheInvalidationTest() {
+    ConcurrentRegistry<Key> registry = new ConcurrentRegistry<>();
+    Key key = Key.wrap("part");
+
+    assertThat(registry.select(key).isEmpty(), is(true));
+
+    registry.addKeyMissMatcher((k) -> k.getPart(0).equals("part"),
+                               k -> Collections.singletonMap(k,
+                                                             (key1, value) -> {
+                                                             }));
+
+    assertThat(registry.select(key).size(), is(1));
+  }
+
+  @Test
+  public void maxMaterializedEvictionTest() {
+    ConcurrentRegistry<Key> registry = new ConcurrentRegistry<>(1024, 10, -1, TimeUnit.SECONDS);
+    registry.addKeyMissMatcher((key) -> key.getPart(0).equals("part"),
+                               key -> Collections.singletonMap(key,
+                                                               (key1, value) -> {
+                                                               }));
+
+    for (int i = 0; i < 20; i++) {
+      assertThat(registry.select(Key.wrap("part", i)).size(), is(1));
+    }
+
+    assertTrue(registry.getMaterializedCount() <= 10);
+    assertThat(registry.getEvictions(), is(20L - registry.getMaterializedCount()));
+    assertThat(registry.stream().count(), is((long) registry.getMaterializedCount()));
+    assertThat(registry.size(), is((long) registry.getMaterializedCount()));
+
+    // Least recently selected key was evicted, selecting it materializes it again
+    assertThat(registry.select(Key.wrap("part", 0)).size(), is(1));
+    assertThat(registry.getRematerializations(), is(1L));
+  }
+
+  @Test
+  public void idleEvictionTest() throws InterruptedException {
+    ConcurrentRegistry<Key> registry = new ConcurrentRegistry<>(1024, -1, 100, TimeUnit.MILLISECONDS);
+    AtomicInteger materialized = new AtomicInteger();
+    registry.addKeyMissMatcher((key) -> key.getPart(0).equals("part"),
+                               key -> {
+                                 materialized.incrementAndGet();
+                                 Map<Key, KeyedConsumer> consumers = new LinkedHashMap<>();
+                                 consumers.put(key, (key1, value) -> {
+                                 });
+                                 consumers.put(key.derive(), (key1, value) -> {
+                                 });
+                                 return consumers;
+                               });
+    Key explicitKey = Key.wrap("explicit");
+    registry.register(explicitKey, (key1, value) -> {
+    });
+
+    Key key = Key.wrap("part");
+    registry.select(key);
+    assertThat(registry.stream().count(), is(3L));
+
+    Thread.sleep(200);
+    assertThat(registry.evictIdle(), is(1));
+    assertThat(registry.getMaterializedCount(), is(0));
+    // Derived keys are evicted together with the materialized key, explicit registrations stay
+    assertThat(registry.stream().count(), is(1L));
+    assertThat(registry.select(explicitKey).size(), is(1));
+
+    assertThat(registry.select(key).size(), is(1));
+    assertThat(materialized.get(), is(2));
+    assertThat(registry.getRematerializations(), is(1L));
+  }
 }
@@ -0,0 +1,258 @@
+package reactor.pipe;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.pipe.key.Key;
+import reactor.pipe.registry.ConcurrentRegistry;
+import reactor.pipe.registry.DefaultingRegistry;
+import reactor.pipe.registry.LongRegistry;
+import reactor.pipe.registry.StripedRegistry;
+import reactor.pipe.stream.BackpressureStrategy;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FirehoseAllocationTest {
+
+  private static final int WARMUP_ITERATIONS  = 200000;
+  private static final int MEASURE_ITERATIONS = 200000;
+  private static final int CHANGE_EVERY       = 100;
+
+  @Test
+  public void steadyStateNotifyDoesNotAllocateTest() {
+    steadyStateNotifyDoesNotAllocate(new ConcurrentRegistry<>());
+  }
+
+  @Test
+  public void stripedRegistryDoesNotAllocateTest() {
+    steadyStateNotifyDoesNotAllocate(new StripedRegistry<>());
+  }
+
+  @Test
+  public void registrationChurnDoesNotAllocateTest() throws InterruptedException {
+    steadyStateNotifyDuringChurnDoesNotAllocate(new ConcurrentRegistry<>(1024, 100, -1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void stripedRegistrationChurnDoesNotAllocateTest() throws InterruptedException {
+    steadyStateNotifyDuringChurnDoesNotAllocate(new StripedRegistry<>());
+  }
+
+  /**
+   * Keeps registering, unregistering, materializing and evicting other keys on another
+   * thread, while the notified key is selected.
+   */
+  private void steadyStateNotifyDuringChurnDoesNotAllocate(DefaultingRegistry<Key> registry)
+    throws InterruptedException {
+    registry.addKeyMissMatcher(key -> key.getPart(0).equals("entity"),
+                               key -> Collections.singletonMap(key, (k, v) -> {
+                               }));
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicLong changes = new AtomicLong();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread churn = new Thread(() -> {
+      try {
+        for (int i = 0; running.get(); i++) {
+          Key key = Key.wrap("churn", i % 1024);
+          registry.register(key, (k, v) -> {
+          });
+          registry.unregister(key);
+          registry.select(Key.wrap("entity", i % 1024));
+          changes.incrementAndGet();
+        }
+      } catch (Throwable t) {
+        failure.set(t);
+        // Lets the measurement go on
+        running.set(false);
+      }
+    });
+    churn.start();
+    try {
+      steadyStateNotifyDoesNotAllocate(registry, changes, running);
+    } finally {
+      running.set(false);
+      churn.join();
+    }
+    assertNull(failure.get());
+    assertTrue(changes.get() >= MEASURE_ITERATIONS / CHANGE_EVERY);
+  }
+
+  private void steadyStateNotifyDoesNotAllocate(DefaultingRegistry<Key> registry) {
+    steadyStateNotifyDoesNotAllocate(registry, null, null);
+  }
+
+  /**
+   * @param changes number of changes to the registry made so far, when not null, the
+   *                measurement waits for another one every {@link #CHANGE_EVERY} events
+   *                for as long as the changes are {@code running}
+   */
+  private void steadyStateNotifyDoesNotAllocate(DefaultingRegistry<Key> registry,
+                                                AtomicLong changes,
+                                                AtomicBoolean running) {
+    com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+    Assume.assumeTrue(threadMXBean != null && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+    InlineProcessor processor = new InlineProcessor();
+    Firehose<Key> firehose = new Firehose<>(registry,
+                                            processor,
+                                            1,
+                                            throwable -> {
+                                            },
+                                            BackpressureStrategy.busySpin());
+    AtomicLong sum = new AtomicLong();
+    firehose.on(Key.wrap("key"), (Long l) -> sum.addAndGet(l));
+    processor.request(1);
+
+    Key key = Key.wrap("key");
+    Long ev = 1L;
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      firehose.notify(key, ev);
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+      firehose.notify(key, ev);
+      if (changes != null && i % CHANGE_EVERY == 0) {
+        long seen = changes.get();
+        while (changes.get() == seen && running.get()) {
+          // Waits, so that the selects keep running into the registrations changed in the meantime
+          Thread.yield();
+        }
+      }
+    }
+    long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertTrue(sum.get() == WARMUP_ITERATIONS + MEASURE_ITERATIONS);
+    // Leaves room for the bookkeeping of the measurement itself, but not for a single object per event
+    assertTrue("Allocated " + allocated + " bytes for " + MEASURE_ITERATIONS + " events",
+               allocated < MEASURE_ITERATIONS);
+  }
+
+  @Test
+  public void longFirehoseDoesNotAllocateTest() {
+    com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+    Assume.assumeTrue(threadMXBean != null && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+    InlineProcessor processor = new InlineProcessor();
+    LongFirehose firehose = new LongFirehose(new LongRegistry(),
+                                             processor,
+                                             1,
+                                             throwable -> {
+                                             },
+                                             BackpressureStrategy.busySpin());
+    AtomicLong sum = new AtomicLong();
+    firehose.on(42L, (Long l) -> sum.addAndGet(l));
+    processor.request(1);
+
+    Long ev = 1L;
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      firehose.notify(42L, ev);
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+      firehose.notify(42L, ev);
+    }
+    long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertTrue(sum.get() == WARMUP_ITERATIONS + MEASURE_ITERATIONS);
+    // Selecting a long key doesn't allocate either
+    assertTrue("Allocated " + allocated + " bytes for " + MEASURE_ITERATIONS + " events",
+               allocated < MEASURE_ITERATIONS);
+  }
+
+  @Test
+  public void primitivePipeDoesNotAllocateTest() {
+    com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+    Assume.assumeTrue(threadMXBean != null && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+    InlineProcessor processor = new InlineProcessor();
+    Firehose<Key> firehose = new Firehose<>(new ConcurrentRegistry<>(),
+                                            processor,
+                                            1,
+                                            throwable -> {
+                                            },
+                                            BackpressureStrategy.busySpin());
+    Key key = Key.wrap("key");
+    double[] last = new double[1];
+    DoublePipe.build()
+      .map(d -> d * 2)
+      .filter(d -> d > 0)
+      .scan((acc, d) -> acc + d, 0)
+      .slidingMax(100)
+      .consume(d -> last[0] = d)
+      .subscribe(key, firehose);
+    processor.request(1);
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      firehose.notifyDouble(key, 1.0);
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+      firehose.notifyDouble(key, 1.0);
+    }
+    long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertTrue(last[0] == 2.0 * (WARMUP_ITERATIONS + MEASURE_ITERATIONS));
+    // Neither the events nor the values passed between the stages are boxed
+    assertTrue("Allocated " + allocated + " bytes for " + MEASURE_ITERATIONS + " events",
+               allocated < MEASURE_ITERATIONS);
+  }
+
+  private static com.sun.management.ThreadMXBean threadMXBean() {
+    try {
+      return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    } catch (ClassCastException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Processor that runs the events in place on the notifying thread, so that both producer
+   * and worker side of the dispatch can be measured, and requests one more after each event.
+   */
+  private static class InlineProcessor implements Processor<Runnable, Runnable> {
+    private volatile Subscription subscription;
+
+    public void request(long n) {
+      subscription.request(n);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Runnable> subscriber) {
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(Runnable runnable) {
+      runnable.run();
+      subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+    }
+
+    @Override
+    public void onComplete() {
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package reactor.pipe;
+
+import org.junit.Test;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.processor.RingBufferWorkProcessor;
+import reactor.pipe.concurrent.AVar;
+import reactor.pipe.key.Key;
+import reactor.pipe.registry.ConcurrentRegistry;
+import reactor.pipe.stream.BackpressureStrategy;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FirehoseBackpressureTest {
+
+  private static final int RING_BUFFER_SIZE = 16;
+  private static final int ITERATIONS       = 20000;
+
+  @Test
+  public void busySpinLatencyTest() throws InterruptedException {
+    saturatedLatencyTest("busySpin", BackpressureStrategy.busySpin());
+  }
+
+  @Test
+  public void yieldingLatencyTest() throws InterruptedException {
+    saturatedLatencyTest("yielding", BackpressureStrategy.yielding());
+  }
+
+  @Test
+  public void parkingLatencyTest() throws InterruptedException {
+    saturatedLatencyTest("parking", BackpressureStrategy.parking(1000, TimeUnit.MILLISECONDS.toNanos(1)));
+  }
+
+  @Test
+  public void blockingLatencyTest() throws InterruptedException {
+    saturatedLatencyTest("blocking", BackpressureStrategy.blocking());
+  }
+
+  @Test
+  public void tryNotifyTest() throws InterruptedException {
+    ManualProcessor processor = new ManualProcessor();
+    Firehose<Key> firehose = firehose(processor, BackpressureStrategy.blocking());
+    AVar<Integer> res = new AVar<>();
+    firehose.on(Key.wrap("key"), res::set);
+
+    assertThat(firehose.tryNotify(Key.wrap("key"), 1), is(false));
+
+    long start = System.nanoTime();
+    assertThat(firehose.notify(Key.wrap("key"), 1, 100, TimeUnit.MILLISECONDS), is(false));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+    processor.request(1);
+    assertThat(firehose.tryNotify(Key.wrap("key"), 2), is(true));
+    assertThat(res.get(1, TimeUnit.SECONDS), is(2));
+    assertThat(firehose.tryNotify(Key.wrap("key"), 3), is(false));
+  }
+
+  @Test
+  public void blockingWakeupTest() throws InterruptedException {
+    ManualProcessor processor = new ManualProcessor();
+    Firehose<Key> firehose = firehose(processor, BackpressureStrategy.blocking());
+    AVar<Integer> res = new AVar<>();
+    firehose.on(Key.wrap("key"), res::set);
+
+    AtomicLong requestedAt = new AtomicLong();
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    executor.schedule(() -> {
+      requestedAt.set(System.nanoTime());
+      processor.request(1);
+    }, 200, TimeUnit.MILLISECONDS);
+
+    // Without the signal of the freed slot, the producer would only wake up on the deadline
+    assertThat(firehose.notify(Key.wrap("key"), 1, 10, TimeUnit.SECONDS), is(true));
+    long wokenUpAfter = System.nanoTime() - requestedAt.get();
+
+    assertTrue(requestedAt.get() != 0);
+    assertThat(res.get(1, TimeUnit.SECONDS), is(1));
+    assertTrue(wokenUpAfter < TimeUnit.SECONDS.toNanos(5));
+    executor.shutdown();
+  }
+
+  private void saturatedLatencyTest(String name, BackpressureStrategy strategy) throws InterruptedException {
+    Firehose<Key> firehose = firehose(strategy);
+    CountDownLatch latch = new CountDownLatch(ITERATIONS);
+
+    firehose.on(Key.wrap("key"), (Integer i) -> {
+      // Slow consumer keeps the ring buffer saturated
+      LockSupport.parkNanos(10000);
+      latch.countDown();
+    });
+
+    long[] latencies = new long[ITERATIONS];
+    for (int i = 0; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      firehose.notify(Key.wrap("key"), i);
+      latencies[i] = System.nanoTime() - start;
+    }
+
+    assertTrue(latch.await(1, TimeUnit.MINUTES));
+    firehose.shutdown();
+
+    Arrays.sort(latencies);
+    long p50 = latencies[ITERATIONS / 2];
+    long p99 = latencies[(int) (ITERATIONS * 0.99)];
+    // The producer used to sleep for half a second whenever the ring buffer was full, which
+    // took a few percent of the notifications, none of them should take as long anymore
+    assertTrue(String.format("%s notify latency under saturation: p50=%dus p99=%dus max=%dus",
+                             name,
+                             TimeUnit.NANOSECONDS.toMicros(p50),
+                             TimeUnit.NANOSECONDS.toMicros(p99),
+                             TimeUnit.NANOSECONDS.toMicros(latencies[ITERATIONS - 1])),
+               p99 < TimeUnit.MILLISECONDS.toNanos(500));
+  }
+
+  private static Firehose<Key> firehose(BackpressureStrategy strategy) {
+    return firehose(RingBufferWorkProcessor.create(Executors.newFixedThreadPool(2),
+                                                   RING_BUFFER_SIZE),
+                    strategy);
+  }
+
+  private static Firehose<Key> firehose(Processor<Runnable, Runnable> processor,
+                                        BackpressureStrategy strategy) {
+    return new Firehose<>(new ConcurrentRegistry<>(),
+                          processor,
+                          2,
+                          throwable -> {
+                          },
+                          strategy);
+  }
+
+  /**
+   * Processor that runs the events in place and requests more only when told to.
+   */
+  private static class ManualProcessor implements Processor<Runnable, Runnable> {
+    private volatile Subscription subscription;
+
+    public void request(long n) {
+      subscription.request(n);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Runnable> subscriber) {
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(Runnable runnable) {
+      runnable.run();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+    }
+
+    @Override
+    public void onComplete() {
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package reactor.pipe;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+import reactor.pipe.key.Key;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FirehoseMetricsTest extends AbstractFirehoseTest {
+
+  @Test
+  public void metricsTest() throws InterruptedException {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    firehose.instrument(metricRegistry, "firehose", key -> key.getPart(0));
+
+    int iterations = 100;
+    CountDownLatch latch = new CountDownLatch(iterations + 2);
+    firehose.on(Key.wrap("key"), (Integer i) -> latch.countDown());
+    firehose.on(Key.wrap("failing"), (Integer i) -> {
+      latch.countDown();
+      throw new RuntimeException("Failing on purpose");
+    });
+
+    for (int i = 0; i < iterations; i++) {
+      firehose.notify(Key.wrap("key"), i);
+    }
+    firehose.notifyAll(Key.wrap("failing"), Arrays.asList(1, 2));
+    firehose.notify(Key.wrap("missing"), 1);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    // Latency is recorded once the consumers are done
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    while (metricRegistry.timer("firehose.dispatch").getCount() < iterations + 2 &&
+           System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertThat(metricRegistry.meter("firehose.notify").getCount(), is(iterations + 3L));
+    // Whole batch is dispatched at once
+    assertThat(metricRegistry.timer("firehose.dispatch").getCount(), is(iterations + 2L));
+    assertThat(metricRegistry.meter("firehose.keyMiss").getCount(), is(1L));
+    assertThat(metricRegistry.counter("firehose.errors").getCount(), is(2L));
+    assertThat(metricRegistry.counter("firehose.errors.failing").getCount(), is(2L));
+    assertThat(gauge(metricRegistry, "firehose.registry.size"), is(2L));
+    firehose.unregister(Key.wrap("failing"));
+    assertThat(gauge(metricRegistry, "firehose.registry.size"), is(1L));
+    assertTrue((Long) gauge(metricRegistry, "firehose.capacity") > 0);
+  }
+
+  @Test
+  public void errorsTest() throws InterruptedException {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    firehose.instrument(metricRegistry, "firehose");
+    // Instrumenting again replaces the gauges
+    firehose.instrument(metricRegistry, "firehose");
+
+    CountDownLatch latch = new CountDownLatch(10);
+    for (int i = 0; i < 10; i++) {
+      firehose.on(Key.wrap("failing", i), (Integer v) -> {
+        latch.countDown();
+        throw new RuntimeException("Failing on purpose");
+      });
+      firehose.notify(Key.wrap("failing", i), i);
+    }
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    while (metricRegistry.counter("firehose.errors").getCount() < 10 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+
+    // Without names, all the errors are counted by a single counter
+    assertThat(metricRegistry.counter("firehose.errors").getCount(), is(10L));
+    assertThat(metricRegistry.getCounters().size(), is(1));
+    assertThat(gauge(metricRegistry, "firehose.registry.size"), is(10L));
+  }
+
+  private static Object gauge(MetricRegistry metricRegistry, String name) {
+    Gauge gauge = metricRegistry.getGauges().get(name);
+    return gauge.getValue();
+  }
+}
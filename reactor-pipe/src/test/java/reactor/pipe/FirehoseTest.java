@@ -12,11 +12,18 @@ import reactor.fn.tuple.Tuple2;
 import reactor.pipe.concurrent.AVar;
 import reactor.pipe.key.Key;
 import reactor.pipe.registry.ConcurrentRegistry;
+import reactor.pipe.registry.Registration;
 import reactor.pipe.selector.Selectors;
+import reactor.pipe.state.SingleWriterStateProvider;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -76,6 +83,201 @@ public class FirehoseTest extends AbstractFirehoseTest {
                is(Tuple.of(Key.wrap("key1"), 1)));
   }
 
+  @Test
+  public void notifyAllTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(3);
+    List<Integer> received = new CopyOnWriteArrayList<>();
+
+    firehose.on(Key.wrap("key1"), (Integer i) -> {
+      received.add(i);
+      latch.countDown();
+    });
+
+    firehose.notifyAll(Key.wrap("key1"), Arrays.asList(1, 2, 3));
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    assertThat(received, is(Arrays.asList(1, 2, 3)));
+  }
+
+  @Test
+  public void notifyAllTuplesTest() throws InterruptedException {
+    AtomicInteger selects = new AtomicInteger();
+    Firehose<Key> countingFirehose = new Firehose<>(new ConcurrentRegistry<Key>() {
+      @Override
+      public List<Registration<Key>> select(Key key) {
+        selects.incrementAndGet();
+        return super.select(key);
+      }
+    },
+                                                    RingBufferWorkProcessor.create(Executors.newFixedThreadPool(1),
+                                                                                   256),
+                                                    1,
+                                                    throwable -> {
+                                                    });
+    CountDownLatch latch1 = new CountDownLatch(3);
+    CountDownLatch latch2 = new CountDownLatch(2);
+
+    countingFirehose.on(Key.wrap("key1"), (i_) -> latch1.countDown());
+    countingFirehose.on(Key.wrap("key2"), (i_) -> latch2.countDown());
+
+    countingFirehose.notifyAll(Arrays.asList(Tuple.of(Key.wrap("key1"), 1),
+                                             Tuple.of(Key.wrap("key2"), 2),
+                                             Tuple.of(Key.wrap("key1"), 3),
+                                             Tuple.of(Key.wrap("key2"), 4),
+                                             Tuple.of(Key.wrap("key1"), 5)));
+
+    assertTrue(latch1.await(10, TimeUnit.SECONDS));
+    assertTrue(latch2.await(10, TimeUnit.SECONDS));
+    assertThat(selects.get(), is(2));
+
+    countingFirehose.shutdown();
+  }
+
+  @Test
+  public void shardedOrderingTest() throws InterruptedException {
+    Firehose<Key> shardedFirehose = Firehose.sharded(4, 256);
+    int keys = 16;
+    int iterations = 1000;
+    CountDownLatch latch = new CountDownLatch(keys * iterations);
+    AtomicBoolean outOfOrder = new AtomicBoolean(false);
+    Map<Key, Set<Thread>> threads = new ConcurrentHashMap<>();
+
+    for (int k = 0; k < keys; k++) {
+      Key key = Key.wrap("key", k);
+      AtomicInteger last = new AtomicInteger(-1);
+      threads.put(key, ConcurrentHashMap.newKeySet());
+      shardedFirehose.on(key, (Integer i) -> {
+        if (last.getAndSet(i) != i - 1) {
+          outOfOrder.set(true);
+        }
+        threads.get(key).add(Thread.currentThread());
+        latch.countDown();
+      });
+    }
+
+    for (int i = 0; i < iterations; i++) {
+      for (int k = 0; k < keys; k++) {
+        shardedFirehose.notify(Key.wrap("key", k), i);
+      }
+    }
+
+    assertTrue(latch.await(1, TimeUnit.MINUTES));
+    assertThat(outOfOrder.get(), is(false));
+    for (Set<Thread> keyThreads : threads.values()) {
+      assertThat(keyThreads.size(), is(1));
+    }
+
+    shardedFirehose.shutdown();
+  }
+
+  @Test
+  public void shardedCrossLaneTest() throws InterruptedException {
+    Firehose<Key> shardedFirehose = Firehose.sharded(4, 256);
+    int iterations = 1000;
+    Map<Key, Set<Thread>> threads = new ConcurrentHashMap<>();
+    CountDownLatch registered = new CountDownLatch(16);
+
+    for (int k = 0; k < 16; k++) {
+      Key key = Key.wrap("key", k);
+      threads.put(key, ConcurrentHashMap.newKeySet());
+      shardedFirehose.on(key, (Integer i) -> {
+        threads.get(key).add(Thread.currentThread());
+        registered.countDown();
+      });
+      shardedFirehose.notify(key, -1);
+    }
+    assertTrue(registered.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+
+    // Two keys owned by different lanes
+    Key source = Key.wrap("key", 0);
+    Thread sourceThread = threads.get(source).iterator().next();
+    Key target = null;
+    for (int k = 1; k < 16 && target == null; k++) {
+      if (threads.get(Key.wrap("key", k)).iterator().next() != sourceThread) {
+        target = Key.wrap("key", k);
+      }
+    }
+    Thread targetThread = threads.get(target).iterator().next();
+
+    Key relayed = target;
+    CountDownLatch latch = new CountDownLatch(2 * iterations);
+    Set<Thread> targetThreads = ConcurrentHashMap.newKeySet();
+    shardedFirehose.unregister(source);
+    shardedFirehose.unregister(target);
+    shardedFirehose.on(source, (Integer i) -> shardedFirehose.notify(relayed, i));
+    shardedFirehose.on(target, (Integer i) -> {
+      targetThreads.add(Thread.currentThread());
+      latch.countDown();
+    });
+
+    for (int i = 0; i < iterations; i++) {
+      shardedFirehose.notify(source, i);
+      shardedFirehose.notify(target, i);
+    }
+
+    // Notified from a consumer on another lane, the key is still dispatched by its own lane
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(targetThreads, is(Collections.singleton(targetThread)));
+    shardedFirehose.shutdown();
+  }
+
+  @Test
+  public void shardedSingleWriterScanTest() throws InterruptedException {
+    Firehose<Key> shardedFirehose = Firehose.sharded(4, 256);
+    int iterations = 10000;
+    AVar<Integer> res = new AVar<>();
+
+    Pipe.<Integer>build(new SingleWriterStateProvider<>())
+      .scan((Integer acc, Integer i) -> acc + 1, 0)
+      .consume((Integer i) -> {
+        if (i == iterations) {
+          res.set(i);
+        }
+      })
+      .subscribe(Key.wrap("key"), shardedFirehose);
+
+    for (int i = 0; i < iterations; i++) {
+      shardedFirehose.notify(Key.wrap("key"), i);
+    }
+
+    assertThat(res.get(1, TimeUnit.MINUTES), is(iterations));
+    shardedFirehose.shutdown();
+  }
+
+  @Test
+  public void shardedParallelTest() throws InterruptedException {
+    Firehose<Key> shardedFirehose = Firehose.sharded(4, 256);
+    int iterations = 1000;
+    Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    List<Integer> res = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(iterations);
+
+    // A single key, spread across enough sub-keys to land on more than one lane
+    Pipe.<Integer>build()
+      .parallel(16)
+      .map(i -> {
+        threads.add(Thread.currentThread());
+        return i;
+      })
+      .sequential(true)
+      .consume((Integer i) -> {
+        res.add(i);
+        latch.countDown();
+      })
+      .subscribe(Key.wrap("key"), shardedFirehose);
+
+    for (int i = 0; i < iterations; i++) {
+      shardedFirehose.notify(Key.wrap("key"), i);
+    }
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertTrue(threads.size() > 1);
+    for (int i = 0; i < iterations; i++) {
+      assertThat(res.get(i), is(i));
+    }
+    shardedFirehose.shutdown();
+  }
+
   @Test
   public void keyMissTest() throws InterruptedException {
     AVar<Tuple2> val = new AVar<>();
@@ -92,6 +294,29 @@ public class FirehoseTest extends AbstractFirehoseTest {
     assertThat(val.get(10, TimeUnit.SECONDS), is(Tuple.of(Key.wrap("key1"), 1)));
   }
 
+  @Test
+  public void idleEvictionTest() throws InterruptedException {
+    ConcurrentRegistry<Key> registry = new ConcurrentRegistry<>(1024, -1, 100, TimeUnit.MILLISECONDS);
+    Firehose<Key> evictingFirehose = new Firehose<>(registry, throwable -> {
+    });
+    CountDownLatch latch = new CountDownLatch(1);
+
+    evictingFirehose.on(k -> true, (Integer i) -> latch.countDown());
+    evictingFirehose.notify(Key.wrap("key1"), 1);
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(registry.getMaterializedCount(), is(1));
+
+    // Evicted by the periodic sweep, without any other key being materialized. Evictions are
+    // counted once the key is gone, so the count is the one to wait for
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (registry.getEvictions() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(registry.getMaterializedCount(), is(0));
+    assertThat(registry.getEvictions(), is(1L));
+    evictingFirehose.shutdown();
+  }
+
   @Test
   public void unsubscribeTest() throws InterruptedException {
     Key k = Key.wrap("key1");
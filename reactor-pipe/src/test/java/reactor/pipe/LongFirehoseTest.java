@@ -0,0 +1,132 @@
+package reactor.pipe;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.processor.RingBufferWorkProcessor;
+import reactor.pipe.registry.LongRegistry;
+import reactor.pipe.stream.BackpressureStrategy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LongFirehoseTest {
+
+  public static final long     LATCH_TIMEOUT   = 10;
+  public static final TimeUnit LATCH_TIME_UNIT = TimeUnit.SECONDS;
+
+  private LongFirehose firehose;
+
+  @Before
+  public void setup() {
+    this.firehose = new LongFirehose(new LongRegistry(),
+                                     RingBufferWorkProcessor.create(Executors.newFixedThreadPool(4),
+                                                                    256),
+                                     1,
+                                     throwable -> {
+                                     },
+                                     BackpressureStrategy.parking(1000, TimeUnit.MILLISECONDS.toNanos(1)));
+  }
+
+  @After
+  public void teardown() {
+    firehose.shutdown();
+  }
+
+  @Test
+  public void notifyTest() throws InterruptedException {
+    int iterations = 1000;
+    CountDownLatch latch = new CountDownLatch(iterations);
+    AtomicLong keys = new AtomicLong();
+
+    firehose.on(42L, (long key, Integer i) -> {
+      keys.addAndGet(key);
+      latch.countDown();
+    });
+
+    for (int i = 0; i < iterations; i++) {
+      firehose.notify(42L, i);
+    }
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(keys.get(), is(42L * iterations));
+  }
+
+  @Test
+  public void notifyAllTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(3);
+    List<Integer> received = new CopyOnWriteArrayList<>();
+
+    firehose.on(0L, (Integer i) -> {
+      received.add(i);
+      latch.countDown();
+    });
+    firehose.notifyAll(0L, Arrays.asList(1, 2, 3));
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    // The batch is dispatched by a single task, in order
+    assertThat(received, is(Arrays.asList(1, 2, 3)));
+  }
+
+  @Test
+  public void unregisterTest() throws InterruptedException {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    firehose.instrument(metricRegistry, "firehose");
+    CountDownLatch latch = new CountDownLatch(1);
+
+    firehose.on(1L, (Integer i) -> {
+    });
+    firehose.on(2L, (Integer i) -> latch.countDown());
+    assertThat(firehose.unregister(1L), is(true));
+
+    firehose.notify(1L, 1);
+    firehose.notify(2L, 1);
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+
+    // Event of the unregistered key may be dispatched by another worker
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    while (metricRegistry.meter("firehose.keyMiss").getCount() < 1 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(metricRegistry.meter("firehose.keyMiss").getCount(), is(1L));
+  }
+
+  @Test
+  public void shardedOrderTest() throws InterruptedException {
+    LongFirehose sharded = LongFirehose.sharded(4, 1024);
+    int keys = 16;
+    int iterations = 1000;
+    CountDownLatch latch = new CountDownLatch(keys * iterations);
+    AtomicLong outOfOrder = new AtomicLong();
+
+    for (long key = 0; key < keys; key++) {
+      AtomicLong last = new AtomicLong(-1);
+      sharded.on(key, (Integer i) -> {
+        if (last.getAndSet(i) != i - 1) {
+          outOfOrder.incrementAndGet();
+        }
+        latch.countDown();
+      });
+    }
+
+    for (int i = 0; i < iterations; i++) {
+      for (long key = 0; key < keys; key++) {
+        sharded.notify(key, i);
+      }
+    }
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(outOfOrder.get(), is(0L));
+    sharded.shutdown();
+  }
+}
@@ -0,0 +1,120 @@
+package reactor.pipe;
+
+import org.junit.Test;
+import reactor.pipe.registry.LongRegistry;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LongRegistryTest {
+
+  @Test
+  public void registerUnregisterTest() {
+    LongRegistry registry = new LongRegistry(16);
+
+    registry.register(1L, (k, v) -> {
+    });
+    registry.register(1L, (k, v) -> {
+    });
+    registry.register(0L, (k, v) -> {
+    });
+    registry.register(-1L, (k, v) -> {
+    });
+
+    assertThat(registry.select(1L).length, is(2));
+    assertThat(registry.select(0L).length, is(1));
+    assertThat(registry.select(-1L).length, is(1));
+    assertThat(registry.select(2L).length, is(0));
+    assertThat(registry.size(), is(4));
+
+    assertThat(registry.unregister(1L), is(true));
+    assertThat(registry.unregister(1L), is(false));
+    assertThat(registry.unregister(0L), is(true));
+    assertThat(registry.select(1L).length, is(0));
+    assertThat(registry.select(0L).length, is(0));
+    assertThat(registry.size(), is(1));
+
+    registry.register(1L, (k, v) -> {
+    });
+    assertThat(registry.select(1L).length, is(1));
+  }
+
+  @Test
+  public void growTest() {
+    LongRegistry registry = new LongRegistry(16);
+    int keys = 1000000;
+    for (long i = 1; i <= keys; i++) {
+      registry.register(i * 31, (k, v) -> {
+      });
+    }
+
+    assertThat(registry.size(), is(keys));
+    for (long i = 1; i <= keys; i++) {
+      assertThat(registry.select(i * 31).length, is(1));
+    }
+    assertThat(registry.select(30L).length, is(0));
+  }
+
+  @Test
+  public void churnTest() {
+    LongRegistry registry = new LongRegistry(16);
+    // Unregistered keys leave their slots behind, which have to be reclaimed
+    for (long i = 1; i <= 100000; i++) {
+      registry.register(i, (k, v) -> {
+      });
+      if (i > 10) {
+        assertThat(registry.unregister(i - 10), is(true));
+      }
+    }
+
+    assertThat(registry.size(), is(10));
+    for (long i = 100000 - 9; i <= 100000; i++) {
+      assertThat(registry.select(i).length, is(1));
+    }
+    assertThat(registry.select(1L).length, is(0));
+  }
+
+  @Test
+  public void concurrentSelectTest() throws InterruptedException {
+    LongRegistry registry = new LongRegistry(16);
+    int keys = 100000;
+    int readers = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(readers);
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicInteger failures = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(readers);
+
+    registry.register(Long.MAX_VALUE, (k, v) -> {
+    });
+    for (int t = 0; t < readers; t++) {
+      executor.submit(() -> {
+        // Key registered upfront has to stay visible while the table grows
+        while (!done.get()) {
+          if (registry.select(Long.MAX_VALUE).length != 1) {
+            failures.incrementAndGet();
+          }
+        }
+        latch.countDown();
+      });
+    }
+
+    for (long i = 1; i <= keys; i++) {
+      registry.register(i, (k, v) -> {
+      });
+    }
+    done.set(true);
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    executor.shutdown();
+    assertThat(failures.get(), is(0));
+    assertThat(registry.size(), is(keys + 1));
+  }
+}
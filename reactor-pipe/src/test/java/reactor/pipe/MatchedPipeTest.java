@@ -3,12 +3,17 @@ package reactor.pipe;
 import org.junit.Test;
 import reactor.pipe.concurrent.AVar;
 import reactor.pipe.key.Key;
+import reactor.pipe.registry.ConcurrentRegistry;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertTrue;
 
 public class MatchedPipeTest extends AbstractPipeTest {
 
@@ -30,6 +35,46 @@ public class MatchedPipeTest extends AbstractPipeTest {
     assertThat(res2.get(1, TimeUnit.SECONDS), is(100));
   }
 
+  @Test
+  public void joinRematerializationTest() throws InterruptedException {
+    ConcurrentRegistry<Key> registry = new ConcurrentRegistry<>(1024, 1, -1, TimeUnit.MILLISECONDS);
+    Firehose<Key> evictingFirehose = new Firehose<>(registry, throwable -> {
+    });
+    List<String> joined = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(1);
+    Key other = Key.wrap("other");
+
+    Pipe.<Integer>build()
+      .join(other,
+            (Integer i) -> i,
+            (Integer i) -> i,
+            10,
+            TimeUnit.SECONDS,
+            100,
+            (Integer l, Integer r) -> l + "=" + r)
+      .consume((String s) -> {
+        joined.add(s);
+        latch.countDown();
+      })
+      .subscribe(k -> k.getPart(0).equals("source"), evictingFirehose);
+
+    // Materializing the second source evicts the first one, which is then materialized again
+    registry.select(Key.wrap("source", "first"));
+    registry.select(Key.wrap("source", "second"));
+    registry.select(Key.wrap("source", "first"));
+    assertThat(registry.getEvictions(), is(2L));
+
+    // The other side of the evicted joins went away with them
+    assertThat(registry.select(other).size(), is(1));
+
+    evictingFirehose.notify(Key.wrap("source", "first"), 1);
+    evictingFirehose.notify(other, 1);
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    Thread.sleep(100);
+    assertThat(joined, is(Collections.singletonList("1=1")));
+    evictingFirehose.shutdown();
+  }
+
 
   @Override
   protected <T, O> void subscribe(IPipe.PipeEnd<T, O> pipe) {
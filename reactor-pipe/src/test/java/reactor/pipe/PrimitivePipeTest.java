@@ -0,0 +1,159 @@
+package reactor.pipe;
+
+import org.junit.Test;
+import reactor.pipe.key.Key;
+import reactor.pipe.operation.DoubleSlidingWindow;
+import reactor.pipe.operation.LongSlidingWindow;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitivePipeTest extends AbstractFirehoseTest {
+
+  @Test
+  public void doublePipeTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(3);
+    List<Double> res = new CopyOnWriteArrayList<>();
+    Key key = Key.wrap("source", "first");
+
+    DoublePipe.build()
+      .map(d -> d * 2)
+      .filter(d -> d > 2)
+      .scan((acc, d) -> acc + d, 0)
+      .consume(d -> {
+        res.add(d);
+        latch.countDown();
+      })
+      .subscribe(key, firehose);
+
+    // All the stages are fused into a single registration
+    assertThat(firehose.getConsumerRegistry().stream().count(), is(1L));
+
+    for (int i = 1; i <= 4; i++) {
+      firehose.notifyDouble(key, i);
+    }
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(Collections.max(res), is(18.0));
+  }
+
+  @Test
+  public void longPipeSlidingSumTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(10);
+    List<Long> res = new CopyOnWriteArrayList<>();
+    Key key = Key.wrap("source", "first");
+
+    LongPipe.build()
+      .slidingSum(3)
+      .consume(l -> {
+        res.add(l);
+        latch.countDown();
+      })
+      .subscribe(key, firehose);
+
+    for (int i = 0; i < 10; i++) {
+      firehose.notifyLong(key, 1);
+    }
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(Collections.max(res), is(3L));
+  }
+
+  @Test
+  public void intPipeTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(3);
+    List<Double> res = new CopyOnWriteArrayList<>();
+    Key key = Key.wrap("source", "first");
+
+    IntPipe.build()
+      .map(i -> i + 1)
+      .mapToDouble(i -> i / 2.0)
+      .consume(d -> {
+        res.add(d);
+        latch.countDown();
+      })
+      .subscribe(key, firehose);
+
+    for (int i = 0; i < 3; i++) {
+      firehose.notifyLong(key, i);
+    }
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(res, containsInAnyOrder(0.5, 1.0, 1.5));
+  }
+
+  @Test
+  public void boxedEventsTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(2);
+    List<Object> res = new CopyOnWriteArrayList<>();
+    Key key = Key.wrap("source", "first");
+
+    // Primitive pipe gets the boxed events, regular consumers get the primitive events boxed
+    DoublePipe.build()
+      .consume(d -> {
+        res.add(d);
+        latch.countDown();
+      })
+      .subscribe(key, firehose);
+    firehose.on(Key.wrap("source", "second"), (Object o) -> {
+      res.add(o);
+      latch.countDown();
+    });
+
+    firehose.notify(key, 5);
+    firehose.notifyDouble(Key.wrap("source", "second"), 1.5);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(res, containsInAnyOrder((Object) 5.0, (Object) 1.5));
+  }
+
+  @Test
+  public void matchedTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(4);
+    Map<Key, Long> res = new ConcurrentHashMap<>();
+
+    LongPipe.build()
+      .scan((acc, l) -> acc + l, 0)
+      .consume((k, l) -> {
+        res.merge(k, l, Math::max);
+        latch.countDown();
+      })
+      .subscribe(k -> k.getPart(0).equals("source"), firehose);
+
+    firehose.notifyLong(Key.wrap("source", "first"), 1);
+    firehose.notifyLong(Key.wrap("source", "first"), 2);
+    firehose.notifyLong(Key.wrap("source", "second"), 10);
+    firehose.notifyLong(Key.wrap("source", "second"), 20);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    // Each of the matched keys keeps its own state
+    assertThat(res.get(Key.wrap("source", "first")), is(3L));
+    assertThat(res.get(Key.wrap("source", "second")), is(30L));
+  }
+
+  @Test
+  public void slidingWindowsTest() {
+    double[] values = {3, 1, 4, 1, 5, 9, 2, 6};
+    double[] sums = {3, 4, 8, 6, 10, 15, 16, 17};
+    double[] mins = {3, 1, 1, 1, 1, 1, 2, 2};
+    double[] maxs = {3, 3, 4, 4, 5, 9, 9, 9};
+
+    DoubleSlidingWindow sum = DoubleSlidingWindow.sum(3);
+    DoubleSlidingWindow min = DoubleSlidingWindow.min(3);
+    LongSlidingWindow max = LongSlidingWindow.max(3);
+    for (int i = 0; i < values.length; i++) {
+      assertThat(sum.add(values[i]), is(sums[i]));
+      assertThat(min.add(values[i]), is(mins[i]));
+      assertThat(max.add((long) values[i]), is((long) maxs[i]));
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package reactor.pipe;
+
+import org.junit.Test;
+import reactor.pipe.selector.Selector;
+import reactor.pipe.selector.SelectorIndex;
+import reactor.pipe.selector.Selectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("unchecked")
+public class SelectorIndexTest {
+
+  @Test
+  public void objectSelectorTest() {
+    SelectorIndex<Object, Integer> index = new SelectorIndex<>();
+    for (int i = 0; i < 10000; i++) {
+      index.add(Selectors.object("key" + i), i);
+    }
+
+    assertThat(index.match("key42"), is(Collections.singletonList(42)));
+    assertThat(index.match("key10000").isEmpty(), is(true));
+  }
+
+  @Test
+  public void uriPathSelectorTest() {
+    SelectorIndex<Object, String> index = new SelectorIndex<>();
+    index.add(Selectors.uri("/users/{id}"), "user");
+    index.add(Selectors.uri("/users/{id}/posts"), "posts");
+    index.add(Selectors.uri("/users/list"), "list");
+    index.add(Selectors.uri("/files/**"), "files");
+    index.add(Selectors.uri("/files/{name}.json"), "json");
+    for (int i = 0; i < 1000; i++) {
+      index.add(Selectors.uri("/other" + i + "/{id}"), "other");
+    }
+
+    assertThat(index.match("/users/1"), is(Collections.singletonList("user")));
+    assertThat(index.match("/users/1/posts"), is(Collections.singletonList("posts")));
+    assertThat(index.match("/users/list"), is(Arrays.asList("user", "list")));
+    assertThat(index.match("/files/a/b/c"), is(Collections.singletonList("files")));
+    assertThat(index.match("/files/a.json"), is(Arrays.asList("files", "json")));
+    assertThat(index.match("/users"), is(Collections.<String>emptyList()));
+    assertThat(index.match("/users/1/comments"), is(Collections.<String>emptyList()));
+    assertThat(index.match("/other42/1"), is(Collections.singletonList("other")));
+  }
+
+  @Test
+  public void uriPathSelectorLinearTest() {
+    // Templates the trie could take for other ones, next to the plain ones
+    List<String> templates = Arrays.asList("/a", "/a/*", "/a*", "/a/{id}", "/a/{id}/b", "/a/x{id}",
+                                           "/a.b", "/a/{id}.json", "/a/**", "/a**", "/**/b",
+                                           "/a/{rest}**", "/a/*{id}*", "/a|/b", "/a/b?", "/a/(b|c)",
+                                           "/a/[bc]", "/a/b+", "/", "/{id}");
+    List<String> keys = Arrays.asList("", "/", "/a", "/a/", "/a//", "/b", "/ab", "/a/b", "/a/c",
+                                      "/a/x", "/a/x1", "/a/1/b", "/a/1.json", "/a/1/json",
+                                      "/a/bb", "/a/b/c", "/x/b", "/a.b", "/a/b.c");
+
+    SelectorIndex<Object, String> index = new SelectorIndex<>();
+    List<Selector> selectors = new ArrayList<>();
+    for (String template : templates) {
+      Selector selector = Selectors.uri(template);
+      selectors.add(selector);
+      index.add(selector, template);
+    }
+
+    for (String key : keys) {
+      List<String> linear = new ArrayList<>();
+      for (int i = 0; i < selectors.size(); i++) {
+        if (selectors.get(i).test(key)) {
+          linear.add(templates.get(i));
+        }
+      }
+      assertThat(key, index.match(key), is(linear));
+    }
+  }
+
+  @Test
+  public void classSelectorTest() {
+    SelectorIndex<Object, String> index = new SelectorIndex<>();
+    index.add(Selectors.type(Number.class), "number");
+
+    assertThat(index.match(1), is(Collections.singletonList("number")));
+    assertThat(index.match("string").isEmpty(), is(true));
+    assertThat(index.match(Integer.class), is(Collections.singletonList("number")));
+
+    // Cached matches for Integer have to pick up the new selector
+    index.add(Selectors.type(Integer.class), "integer");
+    assertThat(index.match(1), is(Arrays.asList("number", "integer")));
+    assertThat(index.match(1L), is(Collections.singletonList("number")));
+  }
+
+  @Test
+  public void setMembershipSelectorTest() {
+    SelectorIndex<Object, String> index = new SelectorIndex<>();
+    index.add(Selectors.setMembership(new HashSet<>(Arrays.asList("a", "b"))), "ab");
+    index.add(Selectors.setMembership(new HashSet<>(Arrays.asList("b", "c"))), "bc");
+
+    assertThat(index.match("a"), is(Collections.singletonList("ab")));
+    assertThat(index.match("b"), is(Arrays.asList("ab", "bc")));
+    assertThat(index.match("d").isEmpty(), is(true));
+  }
+
+  @Test
+  public void registrationOrderTest() {
+    SelectorIndex<Object, String> index = new SelectorIndex<>();
+    index.add(Selectors.matchAll(), "all");
+    index.add(key -> key.toString().startsWith("/"), "predicate");
+    index.add(Selectors.uri("/a"), "uri");
+    index.add(Selectors.object("/a"), "object");
+    index.add(Selectors.type(String.class), "class");
+    index.add(Selectors.regex("/.*"), "regex");
+    index.add(Selectors.setMembership(Collections.singleton("/a")), "set");
+
+    assertThat(index.match("/a"),
+               is(Arrays.asList("all", "predicate", "uri", "object", "class", "regex", "set")));
+    assertThat(index.match("b"),
+               is(Arrays.asList("all", "class")));
+  }
+
+  @Test
+  public void concurrentAddTest() throws InterruptedException {
+    SelectorIndex<Object, Integer> index = new SelectorIndex<>();
+    int threads = 4;
+    int perThread = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch latch = new CountDownLatch(threads);
+    AtomicInteger failures = new AtomicInteger();
+
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      executor.submit(() -> {
+        for (int i = 0; i < perThread; i++) {
+          index.add(Selectors.object("key"), thread * perThread + i);
+          index.add(Selectors.uri("/key/" + thread + "/{id}"), i);
+          if (index.match("key").isEmpty()) {
+            failures.incrementAndGet();
+          }
+        }
+        latch.countDown();
+      });
+    }
+
+    assertTrue(latch.await(1, TimeUnit.MINUTES));
+    executor.shutdown();
+
+    List<Integer> matched = new ArrayList<>(index.match("key"));
+    assertThat(failures.get(), is(0));
+    assertThat(matched.size(), is(threads * perThread));
+    for (int t = 0; t < threads; t++) {
+      assertThat(index.match("/key/" + t + "/1").size(), is(perThread));
+    }
+  }
+}
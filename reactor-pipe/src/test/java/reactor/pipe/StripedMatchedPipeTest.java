@@ -0,0 +1,13 @@
+package reactor.pipe;
+
+import reactor.pipe.key.Key;
+import reactor.pipe.registry.DefaultingRegistry;
+import reactor.pipe.registry.StripedRegistry;
+
+public class StripedMatchedPipeTest extends MatchedPipeTest {
+
+  @Override
+  protected DefaultingRegistry<Key> createRegistry() {
+    return new StripedRegistry<>();
+  }
+}
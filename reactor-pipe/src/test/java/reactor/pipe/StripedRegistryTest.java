@@ -0,0 +1,136 @@
+package reactor.pipe;
+
+import org.junit.Test;
+import reactor.pipe.consumer.KeyedConsumer;
+import reactor.pipe.key.Key;
+import reactor.pipe.registry.StripedRegistry;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class StripedRegistryTest {
+
+  @Test
+  public void registerUnregisterTest() {
+    StripedRegistry<Key> registry = new StripedRegistry<>();
+    Key key = Key.wrap("key");
+
+    registry.register(key, (k, v) -> {
+    });
+    registry.register(key, (k, v) -> {
+    });
+    registry.register(Key.wrap("other"), (k, v) -> {
+    });
+
+    assertThat(registry.select(key).size(), is(2));
+    assertThat(registry.stream().count(), is(3L));
+    assertThat(registry.size(), is(3L));
+
+    assertThat(registry.unregister(key), is(true));
+    assertThat(registry.unregister(key), is(false));
+    assertThat(registry.select(key).isEmpty(), is(true));
+
+    assertThat(registry.unregister(k -> k.getPart(0).equals("other")), is(true));
+    assertThat(registry.stream().count(), is(0L));
+    assertThat(registry.size(), is(0L));
+  }
+
+  @Test
+  public void keyMissMatcherTest() {
+    StripedRegistry<Key> registry = new StripedRegistry<>();
+    AtomicInteger matched = new AtomicInteger();
+    registry.addKeyMissMatcher((key) -> {
+                                 matched.incrementAndGet();
+                                 return key.getPart(0).equals("part");
+                               },
+                               key -> Collections.singletonMap(key,
+                                                               (key1, value) -> {
+                                                               }));
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(registry.select(Key.wrap("part")).size(), is(1));
+      assertThat(registry.select(Key.wrap("other")).isEmpty(), is(true));
+    }
+    assertThat(matched.get(), is(2));
+  }
+
+  @Test
+  public void concurrentMaterializationTest() throws InterruptedException {
+    StripedRegistry<Key> registry = new StripedRegistry<>();
+    AtomicInteger materialized = new AtomicInteger();
+    registry.addKeyMissMatcher((key) -> key.getPart(0).equals("part"),
+                               key -> {
+                                 materialized.incrementAndGet();
+                                 Map<Key, KeyedConsumer> consumers = new LinkedHashMap<>();
+                                 consumers.put(key, (key1, value) -> {
+                                 });
+                                 consumers.put(key.derive(), (key1, value) -> {
+                                 });
+                                 return consumers;
+                               });
+
+    int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CyclicBarrier barrier = new CyclicBarrier(threads);
+    CountDownLatch latch = new CountDownLatch(threads);
+    AtomicInteger failures = new AtomicInteger();
+    for (int i = 0; i < threads; i++) {
+      executor.submit(() -> {
+        try {
+          barrier.await();
+          if (registry.select(Key.wrap("part")).size() != 1) {
+            failures.incrementAndGet();
+          }
+        } catch (Exception e) {
+          failures.incrementAndGet();
+        }
+        latch.countDown();
+      });
+    }
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    executor.shutdown();
+
+    assertThat(failures.get(), is(0));
+    assertTrue(materialized.get() >= 1);
+    // Only a single key and its derived key remain, no matter how many times it was materialized
+    assertThat(registry.stream().count(), is(2L));
+    assertThat(registry.size(), is(2L));
+  }
+
+  @Test
+  public void concurrentRegisterTest() throws InterruptedException {
+    StripedRegistry<Key> registry = new StripedRegistry<>();
+    int threads = 8;
+    int perThread = 10000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch latch = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.submit(() -> {
+        for (int i = 0; i < perThread; i++) {
+          registry.register(Key.wrap("key", i), (k, v) -> {
+          });
+        }
+        latch.countDown();
+      });
+    }
+
+    assertTrue(latch.await(1, TimeUnit.MINUTES));
+    executor.shutdown();
+
+    assertThat(registry.stream().count(), is((long) threads * perThread));
+    assertThat(registry.size(), is((long) threads * perThread));
+    assertThat(registry.select(Key.wrap("key", 42)).size(), is(threads));
+  }
+}
@@ -33,4 +33,31 @@ public class KeyTest {
     assertThat(Key.wrap("key").equals(Key.wrap("other")), is(false));
     assertThat(Key.wrap("key").equals(Key.wrap("key").derive()), is(false));
   }
+
+  @Test
+  public void deriveTest() {
+    Key k = Key.wrap("key");
+
+    assertThat(k.derive().equals(k.derive()), is(false));
+    assertThat(k.derive().getObjects().length, is(2));
+    assertThat(k.derive().derive().isDerivedFrom(k), is(true));
+  }
+
+  @Test
+  public void cloneTest() {
+    Key k = Key.wrap("key").derive();
+
+    // Nothing to change, so the key is shared
+    assertThat(k.clone(Key.wrap("event")) == k, is(true));
+
+    Key event = Key.wrap("event").withMetadata("metadata");
+    Key clone = k.clone(event);
+    assertThat(clone == k, is(false));
+    assertThat(clone.equals(k), is(true));
+    assertThat(clone.hashCode(), is(k.hashCode()));
+    assertThat(clone.isDerived(), is(true));
+    assertThat(clone.getMetadata(), is("metadata"));
+    assertThat(k.getMetadata() == null, is(true));
+    assertThat(event.clone().getMetadata() == null, is(true));
+  }
 }
@@ -0,0 +1,49 @@
+package reactor.pipe.sketch;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class HyperLogLogTest {
+
+  @Test
+  public void estimateTest() {
+    for (int distinct : new int[]{10, 1000, 100000, 1000000}) {
+      HyperLogLog hll = new HyperLogLog(14);
+      for (int i = 0; i < distinct; i++) {
+        // Every value twice, duplicates don't count
+        hll.add((long) i);
+        hll.add((long) i);
+      }
+      // Standard error is below 1% at this precision, 3% leaves room for the odd outlier
+      assertTrue(Math.abs(hll.estimate() - distinct) <= Math.max(1, distinct * 0.03));
+    }
+  }
+
+  @Test
+  public void mergeTest() {
+    HyperLogLog left = new HyperLogLog(12);
+    HyperLogLog right = new HyperLogLog(12);
+    for (int i = 0; i < 60000; i++) {
+      left.add("value-" + i);
+    }
+    for (int i = 40000; i < 100000; i++) {
+      right.add("value-" + i);
+    }
+
+    HyperLogLog merged = left.copy();
+    merged.merge(right);
+    assertTrue(Math.abs(merged.estimate() - 100000) <= 100000 * 0.06);
+    // Merging is idempotent
+    long estimate = merged.estimate();
+    merged.merge(right);
+    assertThat(merged.estimate(), is(estimate));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void mergeDifferentPrecisionTest() {
+    new HyperLogLog(12).merge(new HyperLogLog(14));
+  }
+}
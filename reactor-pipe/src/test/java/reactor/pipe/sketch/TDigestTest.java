@@ -0,0 +1,58 @@
+package reactor.pipe.sketch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TDigestTest {
+
+  @Test
+  public void quantileTest() {
+    TDigest digest = new TDigest(100);
+    Random random = new Random(42);
+    double[] values = new double[100000];
+    for (int i = 0; i < values.length; i++) {
+      // Long-tailed, like latencies
+      values[i] = Math.exp(random.nextGaussian());
+      digest.add(values[i]);
+    }
+    Arrays.sort(values);
+
+    for (double q : new double[]{0.01, 0.1, 0.5, 0.9, 0.99, 0.999}) {
+      double expected = values[(int) (q * values.length)];
+      double estimate = digest.quantile(q);
+      // Compare the ranks, which is what the digest bounds
+      double rank = (double) Math.abs(Arrays.binarySearch(values, estimate)) / values.length;
+      assertTrue("quantile " + q + " estimated as " + estimate + " for " + expected,
+                 Math.abs(rank - q) < 0.01);
+    }
+    assertThat(digest.quantile(0), is(values[0]));
+    assertThat(digest.quantile(1), is(values[values.length - 1]));
+  }
+
+  @Test
+  public void mergeTest() {
+    TDigest merged = new TDigest(100);
+    for (int shard = 0; shard < 4; shard++) {
+      TDigest digest = new TDigest(100);
+      for (int i = shard; i < 10000; i += 4) {
+        digest.add(i);
+      }
+      merged.merge(digest);
+    }
+
+    assertThat(merged.totalWeight(), is(10000.0));
+    assertTrue(Math.abs(merged.quantile(0.5) - 5000) < 100);
+    assertTrue(Math.abs(merged.quantile(0.99) - 9900) < 20);
+  }
+
+  @Test
+  public void emptyTest() {
+    assertTrue(Double.isNaN(new TDigest(100).quantile(0.5)));
+  }
+}
@@ -0,0 +1,72 @@
+package reactor.pipe.sketch;
+
+import org.junit.Test;
+import reactor.fn.tuple.Tuple2;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TopKTest {
+
+  @Test
+  public void countMinTest() {
+    CountMinSketch sketch = CountMinSketch.withError(0.001, 0.01);
+    int[] counts = new int[1000];
+    Random random = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      int value = random.nextInt(counts.length);
+      counts[value]++;
+      sketch.add(value, 1);
+    }
+
+    for (int value = 0; value < counts.length; value++) {
+      long estimate = sketch.estimate(value);
+      // Never undercounts, overcounts by at most epsilon times the total
+      assertTrue(estimate >= counts[value]);
+      assertTrue(estimate <= counts[value] + 0.001 * sketch.total());
+    }
+  }
+
+  @Test
+  public void heavyHittersTest() {
+    TopK<String> topK = new TopK<>(3, CountMinSketch.withError(0.001, 0.01));
+    Random random = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      int r = random.nextInt(100);
+      // Three heavy hitters among a long tail
+      topK.add(r < 30 ? "a" : r < 50 ? "b" : r < 60 ? "c" : "tail-" + random.nextInt(10000));
+    }
+
+    assertThat(topK.total(), is(100000L));
+    List<Tuple2<String, Long>> top = topK.top();
+    assertThat(top.size(), is(3));
+    assertThat(top.get(0).getT1(), is("a"));
+    assertThat(top.get(1).getT1(), is("b"));
+    assertThat(top.get(2).getT1(), is("c"));
+  }
+
+  @Test
+  public void mergeTest() {
+    TopK<String> left = new TopK<>(2, new CountMinSketch(1024, 4));
+    TopK<String> right = new TopK<>(2, new CountMinSketch(1024, 4));
+    for (int i = 0; i < 100; i++) {
+      left.add("a");
+      right.add("b");
+    }
+    for (int i = 0; i < 60; i++) {
+      left.add("c");
+      right.add("c");
+    }
+
+    // Neither shard alone has "c" on top
+    left.merge(right);
+    List<Tuple2<String, Long>> top = left.top();
+    assertThat(top.get(0).getT1(), is("c"));
+    assertThat(top.get(0).getT2(), is(120L));
+    assertThat(top.get(1).getT2(), is(100L));
+  }
+}
@@ -0,0 +1,157 @@
+package reactor.pipe.timer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+  public static final long     LATCH_TIMEOUT   = 10;
+  public static final TimeUnit LATCH_TIME_UNIT = TimeUnit.SECONDS;
+
+  private TimingWheel timingWheel;
+
+  @Before
+  public void setup() {
+    // Small wheel, so that the timeouts of a few hundred milliseconds go through all levels
+    this.timingWheel = new TimingWheel(1, TimeUnit.MILLISECONDS, 4).start();
+  }
+
+  @After
+  public void teardown() {
+    timingWheel.shutdown();
+  }
+
+  @Test
+  public void scheduleTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    AtomicLong fired = new AtomicLong();
+
+    Timeout timeout = timingWheel.schedule(now -> {
+      fired.set(System.nanoTime());
+      latch.countDown();
+    }, 50, TimeUnit.MILLISECONDS);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    // A whole tick past the deadline
+    assertThat(fired.get() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(51)));
+    assertFalse(timeout.isPending());
+    assertFalse(timeout.reschedule(50, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void longDelayTest() throws InterruptedException {
+    // Beyond the span of the four levels of four buckets
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    AtomicLong fired = new AtomicLong();
+
+    timingWheel.schedule(now -> {
+      fired.set(System.nanoTime());
+      latch.countDown();
+    }, 300, TimeUnit.MILLISECONDS);
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(fired.get() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(300)));
+    assertThat(fired.get() - start, lessThan(TimeUnit.MILLISECONDS.toNanos(1000)));
+  }
+
+  @Test
+  public void cancelTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    AtomicInteger fired = new AtomicInteger();
+
+    Timeout cancelled = timingWheel.schedule(now -> fired.incrementAndGet(), 20, TimeUnit.MILLISECONDS);
+    timingWheel.schedule(now -> latch.countDown(), 100, TimeUnit.MILLISECONDS);
+
+    assertTrue(cancelled.cancel());
+    assertFalse(cancelled.isPending());
+    assertFalse(cancelled.reschedule(10, TimeUnit.MILLISECONDS));
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(fired.get(), is(0));
+  }
+
+  @Test
+  public void rescheduleLaterTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    AtomicLong fired = new AtomicLong();
+    AtomicInteger runs = new AtomicInteger();
+
+    Timeout timeout = timingWheel.schedule(now -> {
+      runs.incrementAndGet();
+      fired.set(System.nanoTime());
+      latch.countDown();
+    }, 50, TimeUnit.MILLISECONDS);
+
+    for (int i = 0; i < 10; i++) {
+      Thread.sleep(20);
+      assertTrue(timeout.reschedule(50, TimeUnit.MILLISECONDS));
+    }
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(fired.get() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(250)));
+    Thread.sleep(100);
+    assertThat(runs.get(), is(1));
+  }
+
+  @Test
+  public void rescheduleEarlierTest() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    AtomicLong fired = new AtomicLong();
+
+    Timeout timeout = timingWheel.schedule(now -> {
+      fired.set(System.nanoTime());
+      latch.countDown();
+    }, 10, TimeUnit.SECONDS);
+
+    assertTrue(timeout.reschedule(50, TimeUnit.MILLISECONDS));
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    assertThat(fired.get() - start, lessThan(TimeUnit.SECONDS.toNanos(5)));
+  }
+
+  @Test
+  public void manyTimeoutsTest() throws InterruptedException {
+    int timeouts = 100000;
+    CountDownLatch latch = new CountDownLatch(timeouts);
+
+    for (int i = 0; i < timeouts; i++) {
+      timingWheel.schedule(now -> latch.countDown(), i % 500, TimeUnit.MILLISECONDS);
+    }
+
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+  }
+
+  @Test
+  public void errorHandlerTest() throws InterruptedException {
+    TimingWheel wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, 8, "test-wheel",
+                                        throwable -> {
+                                        }).start();
+    CountDownLatch latch = new CountDownLatch(1);
+
+    wheel.schedule(now -> {
+      throw new RuntimeException("task failed");
+    }, 10, TimeUnit.MILLISECONDS);
+    wheel.schedule(now -> latch.countDown(), 20, TimeUnit.MILLISECONDS);
+
+    // Timer thread survives the failed task
+    assertTrue(latch.await(LATCH_TIMEOUT, LATCH_TIME_UNIT));
+    wheel.shutdown();
+  }
+}